@@ -17,17 +17,18 @@ package org.bananarama;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bananarama.annotation.Banana;
 import org.bananarama.annotation.BananaRamaAdapter;
-import org.bananarama.concurrency.StripedLock;
+import org.bananarama.concurrency.Striped;
 import org.bananarama.crud.Adapter;
 import org.bananarama.crud.CreateOperation;
 import org.bananarama.crud.DeleteOperation;
 import org.bananarama.crud.ReadOperation;
 import org.bananarama.crud.UpdateOperation;
+import org.bananarama.crud.UpsertOperation;
 import java.util.concurrent.locks.Lock;
 
 /**
@@ -37,7 +38,7 @@ import java.util.concurrent.locks.Lock;
 @SuppressWarnings({"unchecked", "rawtypes"})
 public class BananaRama implements Adapter<Object>{
     
-    private final StripedLock slock;
+    private final Striped<Lock> slock;
     private final Map<Class<?>, Adapter<?>> adapters;
     
     public BananaRama(){
@@ -45,8 +46,8 @@ public class BananaRama implements Adapter<Object>{
     }
     
     public BananaRama(int concurrencyLevel){
-        slock = new StripedLock(concurrencyLevel);
-        adapters = new HashMap<>();
+        slock = Striped.lock(concurrencyLevel);
+        adapters = new ConcurrentHashMap<>();
         init();//Avoids leaking this in constructor
     }
    
@@ -64,14 +65,21 @@ public class BananaRama implements Adapter<Object>{
     }
     
     private <T extends Adapter> T getAdapter(Class<T> adapterClass){
+        //Fast path, the map is thread safe on its own
+        //and loaded adapters need no locking at all
+        T adapter = (T) adapters.get(adapterClass);
+        
+        if(adapter != null)
+            return adapter;
+        
         //Acquire lock on class, this will block arriving calls for a specific
         //adapter, while the adapter is loading
-        Lock lock = slock.getLock(adapterClass);
+        final Lock lock = slock.get(adapterClass);
         lock.lock();
         
         try{
     
-            T adapter = (T) adapters.get(adapterClass);
+            adapter = (T) adapters.get(adapterClass);
             
             if(adapter == null){
                 //First time that we need the adapter
@@ -143,4 +151,9 @@ public class BananaRama implements Adapter<Object>{
         return getAdapterForClass(clazz).delete(clazz);
     }
     
+    @Override
+    public <T> UpsertOperation<T> upsert(Class<T> clazz){
+        return getAdapterForClass(clazz).upsert(clazz);
+    }
+    
 }
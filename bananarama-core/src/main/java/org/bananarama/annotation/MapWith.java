@@ -18,6 +18,7 @@ package org.bananarama.annotation;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 
+import org.bananarama.crud.magic.AutoMapper;
 import org.bananarama.crud.magic.ObjToDto;
 
 /**
@@ -32,6 +33,14 @@ public @interface MapWith {
      * 
      * @return the type that extends {@link ObjToDto} whose instance
      * will be used to map DTO to Objects and vice versa.
+     * If not given, an {@link AutoMapper} towards {@link #dto()} is used
      */
-    Class<? extends ObjToDto> value();
+    Class<? extends ObjToDto> value() default ObjToDto.class;
+    
+    /**
+     * 
+     * @return the DTO type, required only when no 
+     * mapper is given through {@link #value()}
+     */
+    Class<?> dto() default Void.class;
 }
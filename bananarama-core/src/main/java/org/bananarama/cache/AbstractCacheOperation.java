@@ -16,8 +16,20 @@
 package org.bananarama.cache;
 
 import com.googlecode.cqengine.IndexedCollection;
+import com.googlecode.cqengine.attribute.SimpleAttribute;
+import static com.googlecode.cqengine.query.QueryFactory.equal;
+import com.googlecode.cqengine.query.option.QueryOptions;
+import com.googlecode.cqengine.resultset.ResultSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
 import org.bananarama.BananaRama;
 import org.bananarama.cache.annotation.BufferedOnIndexedCollection;
+import org.bananarama.cache.annotation.PrimaryKey;
+import org.bananarama.concurrency.Striped;
 import org.bananarama.crud.Adapter;
 
 /**
@@ -53,4 +65,57 @@ public class AbstractCacheOperation<T> {
     protected <T> Adapter<? super T> getBackingAdapter(Class<T> clazz){
         return getBackingAdapter(clazz, root);
     }
+    
+    /**
+     * Replaces the given elements in the collection and then writes them
+     * on the underlying layer. If the type declares a {@link PrimaryKey}, 
+     * the replaced elements are looked up by key and concurrent writes 
+     * of the same keys are serialized, while writes of unrelated keys 
+     * proceed in parallel. Otherwise elements are replaced by equality.
+     * @param buf the new elements
+     * @param options
+     * @param keyLocks locks guarding the primary keys of the type
+     * @param backingWrite the write on the underlying layer
+     */
+    protected void replace(List<T> buf,QueryOptions options,Striped<Lock> keyLocks,Runnable backingWrite){
+        final SimpleAttribute<T,?> primaryKey = AttributeFields.getPrimaryKey(clazz);
+        
+        if(primaryKey == null){
+            coll.update(buf, buf, options);
+            backingWrite.run();
+            return;
+        }
+        
+        final List<Lock> locks = keyLocks.bulkGet(buf.stream()
+                .map(obj -> primaryKey.getValue(obj, options))
+                .collect(Collectors.toList()));
+        
+        //Locks are sorted, no deadlock can arise
+        locks.forEach(Lock::lock);
+        
+        try{
+            //Old and new elements are swapped with a single
+            //update, so that indexes are kept consistent
+            coll.update(retrieveByKey(primaryKey, buf, options), buf, options);
+            backingWrite.run();
+        }
+        finally{
+            for(ListIterator<Lock> it = locks.listIterator(locks.size());it.hasPrevious();)
+                it.previous().unlock();
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <A extends Comparable<A>> Set<T> retrieveByKey(SimpleAttribute<T,?> primaryKey,List<T> objs,QueryOptions options){
+        final SimpleAttribute<T,A> key = (SimpleAttribute<T,A>)primaryKey;
+        final Set<T> found = new LinkedHashSet<>();
+        
+        for(T obj : objs){
+            try(ResultSet<T> rs = coll.retrieve(equal(key, key.getValue(obj, options)))){
+                rs.forEach(found::add);
+            }
+        }
+        
+        return found;
+    }
 }
@@ -0,0 +1,109 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.cache;
+
+import com.googlecode.cqengine.attribute.Attribute;
+import com.googlecode.cqengine.attribute.SimpleAttribute;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import org.bananarama.cache.annotation.BufferedOnIndexedCollection;
+import org.bananarama.cache.annotation.PrimaryKey;
+import org.bananarama.util.accessor.FieldAccessor;
+
+/**
+ * Utility methods to scan types buffered with {@link BufferedOnIndexedCollection}
+ * for CQEngine attributes
+ */
+public final class AttributeFields {
+    
+    private static final int ATTRIBUTE_MODIFIERS =  Modifier.PUBLIC
+            | Modifier.FINAL
+            | Modifier.STATIC;
+    
+    private static final Map<Class<?>,Optional<SimpleAttribute<?,?>>> PRIMARY_KEYS = new ConcurrentHashMap<>();
+    
+    private AttributeFields(){
+        
+    }
+    
+    /**
+     * Finds all the public static final {@link Attribute} fields
+     * of the given type which are annotated with the given annotation.
+     * Super classes are scanned only if {@link BufferedOnIndexedCollection#inheritFields()}
+     * is set.
+     * @param clazz
+     * @param annotation
+     * @return the annotated fields
+     */
+    public static Collection<Field> getAnnotatedAttributeFields(Class<?> clazz,Class<? extends Annotation> annotation){
+        final BufferedOnIndexedCollection typeAnno = clazz.getAnnotation(BufferedOnIndexedCollection.class);
+        final Predicate<Field> fieldFilter = field -> 
+                        (field.getModifiers() & ATTRIBUTE_MODIFIERS) == ATTRIBUTE_MODIFIERS
+                                && field.isAnnotationPresent(annotation)
+                                && Attribute.class.isAssignableFrom(field.getType());
+        
+        if(typeAnno != null && typeAnno.inheritFields())
+            return FieldAccessor.getAttributeFieldsRecursive(clazz,fieldFilter).values();
+        
+        return FieldAccessor.getAttributeFieldsForClass(clazz,fieldFilter).values();
+    }
+    
+    /**
+     * Finds the attribute annotated with {@link PrimaryKey}.
+     * Types are scanned only once, the outcome is kept for later lookups
+     * @param <T>
+     * @param <A>
+     * @param clazz
+     * @return the primary key attribute, or null if the type does not declare one
+     */
+    @SuppressWarnings("unchecked")
+    public static <T,A extends Comparable<A>> SimpleAttribute<T,A> getPrimaryKey(Class<T> clazz){
+        return (SimpleAttribute<T,A>)PRIMARY_KEYS
+                .computeIfAbsent(clazz, AttributeFields::findPrimaryKey)
+                .orElse(null);
+    }
+    
+    private static Optional<SimpleAttribute<?,?>> findPrimaryKey(Class<?> clazz){
+        final Collection<Field> fields = getAnnotatedAttributeFields(clazz, PrimaryKey.class);
+        
+        if(fields.isEmpty())
+            return Optional.empty();
+        
+        if(fields.size() > 1)
+            throw new IllegalArgumentException(clazz.getName() + " declares more than one " + PrimaryKey.class.getName());
+        
+        final Field field = fields.iterator().next();
+        
+        try{
+            final Object attr = field.get(null);
+            
+            if(attr instanceof SimpleAttribute)
+                return Optional.of((SimpleAttribute<?,?>)attr);
+        }
+        catch(IllegalAccessException ex){
+            throw new IllegalArgumentException("Can't access primary key " + field.getName() + " of " + clazz.getName(), ex);
+        }
+        
+        throw new IllegalArgumentException(field.getName() + " must be an instance of " 
+                + SimpleAttribute.class.getName() + " in order to be used as primary key");
+    }
+}
@@ -16,15 +16,37 @@
 package org.bananarama.cache;
 
 import com.googlecode.cqengine.IndexedCollection;
+import com.googlecode.cqengine.attribute.Attribute;
+import com.googlecode.cqengine.index.Index;
+import com.googlecode.cqengine.index.support.CloseableIterator;
+import com.googlecode.cqengine.index.support.KeyStatistics;
+import com.googlecode.cqengine.index.support.KeyStatisticsAttributeIndex;
+import com.googlecode.cqengine.index.support.KeyStatisticsIndex;
+import com.googlecode.cqengine.index.support.PartialIndex;
+import com.googlecode.cqengine.index.support.SortedKeyStatisticsIndex;
 import com.googlecode.cqengine.query.Query;
+import com.googlecode.cqengine.query.QueryFactory;
+import static com.googlecode.cqengine.query.QueryFactory.*;
+import com.googlecode.cqengine.query.option.EngineThresholds;
+import com.googlecode.cqengine.query.option.OrderByOption;
 import com.googlecode.cqengine.query.option.QueryOptions;
 import com.googlecode.cqengine.resultset.ResultSet;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import org.bananarama.BananaRama;
+import org.bananarama.cache.collection.ShardedIndexedCollection;
+import org.bananarama.crud.Aggregates;
+import org.bananarama.crud.Page;
+import org.bananarama.crud.Projection;
 import org.bananarama.crud.ReadOperation;
 
 /**
@@ -119,6 +141,209 @@ public class CacheReadOperation<T>  extends AbstractCacheOperation<T> implements
         throw new UnsupportedOperationException("Not supported yet.");
     }
     
+    /**
+     * Reads the page from the internal collection, asking it to
+     * walk the index on the ordering attribute (a NavigableIndex should be
+     * built on it) starting right after the given token, so that only the
+     * objects of the page are visited regardless of its depth
+     * @param <A>
+     * @param query
+     * @param orderBy
+     * @param pageSize
+     * @param after
+     * @param options
+     * @return the {@link Page} of data
+     */
+    @Override
+    public <A extends Comparable<A>> Page<T,A> page(Query<T> query,Attribute<T,A> orderBy,int pageSize,A after,QueryOptions options) {
+        Page.checkSize(pageSize);
+        
+        Query<T> pageQuery = query == null ? QueryFactory.all(clazz) : query;
+        
+        if(after != null)
+            pageQuery = query == null ? greaterThan(orderBy, after) : and(query, greaterThan(orderBy, after));
+        
+        final List<T> items = new ArrayList<>(pageSize);
+        //The given options are kept, the ordering is the one of the page
+        final QueryOptions pageOptions = new QueryOptions(options == null ? new HashMap<>() : new HashMap<>(options.getOptions()));
+        pageOptions.put(OrderByOption.class, orderBy(ascending(orderBy)));
+        pageOptions.put(EngineThresholds.class, applyThresholds(threshold(EngineThresholds.INDEX_ORDERING_SELECTIVITY, 1.0)));
+        
+        try(ResultSet<T> rs = coll.retrieve(pageQuery, pageOptions)){
+            
+            Iterator<T> iter = rs.iterator();
+            
+            while(items.size() < pageSize && iter.hasNext())
+                items.add(iter.next());
+        }
+        
+        return Page.of(items, orderBy, pageSize);
+    }
+    
+    /**
+     * Wraps the buffered objects in views, since they are 
+     * already in memory no field is left out
+     * @param <P>
+     * @param view
+     * @param query
+     * @param options
+     * @return the {@link Stream} of views
+     */
+    @Override
+    public <P> Stream<P> project(Class<P> view, Query<T> query, QueryOptions options) {
+        Projection.of(view);//Validates the view
+        
+        return (query == null ? all() : where(query, options))
+                .map(Projection.<T,P>viewAs(view));
+    }
+    
+    private Stream<T> select(Query<T> query){
+        return query == null ? coll.stream() : where(query);
+    }
+    
+    /**
+     * Partial indexes cover only some objects and quantized
+     * indexes hold approximate keys, neither of them is used
+     * @param <A>
+     * @param attr
+     * @return the index holding exact statistics on all
+     * the values of the given attribute, if any
+     */
+    @SuppressWarnings("unchecked")
+    private <A> KeyStatisticsIndex<A,T> statisticsOn(Attribute<T,A> attr){
+        //Sharded collections expose the indexes of their first shard only
+        if(coll instanceof ShardedIndexedCollection)
+            return null;
+        
+        for(Index<T> index : coll.getIndexes())
+            if(index instanceof KeyStatisticsAttributeIndex 
+                    && !(index instanceof PartialIndex)
+                    && !index.isQuantized()
+                    && ((KeyStatisticsAttributeIndex<?,T>)index).getAttribute().equals(attr))
+                return (KeyStatisticsIndex<A,T>)index;
+        
+        return null;
+    }
+    
+    private static <A> Optional<A> first(CloseableIterator<A> iter){
+        try{
+            return iter.hasNext() ? Optional.of(iter.next()) : Optional.empty();
+        }
+        finally{
+            iter.close();
+        }
+    }
+    
+    /**
+     * Counts the matching objects on the internal collection, 
+     * using the size of the index buckets when the query allows it
+     * @param query
+     * @param options
+     * @return the number of matching objects
+     */
+    @Override
+    public long count(Query<T> query, QueryOptions options) {
+        if(query == null)
+            return coll.size();
+        
+        try(ResultSet<T> rs = coll.retrieve(query)){
+            return rs.size();
+        }
+    }
+    
+    @Override
+    public boolean exists(Query<T> query, QueryOptions options) {
+        if(query == null)
+            return !coll.isEmpty();
+        
+        try(ResultSet<T> rs = coll.retrieve(query)){
+            return rs.isNotEmpty();
+        }
+    }
+    
+    /**
+     * Reads the lowest key of the NavigableIndex on the attribute
+     * when the whole collection is considered, otherwise scans the
+     * matching objects
+     * @param <A>
+     * @param attr
+     * @param query
+     * @param options
+     * @return the lowest value
+     */
+    @Override
+    public <A extends Comparable<A>> Optional<A> min(Attribute<T,A> attr, Query<T> query, QueryOptions options) {
+        final KeyStatisticsIndex<A,T> index = query == null ? statisticsOn(attr) : null;
+        
+        if(index instanceof SortedKeyStatisticsIndex)
+            return first(((SortedKeyStatisticsIndex<A,T>)index).getDistinctKeys(noQueryOptions()).iterator());
+        
+        return Aggregates.min(attr, select(query));
+    }
+    
+    /**
+     * Reads the highest key of the NavigableIndex on the attribute
+     * when the whole collection is considered, otherwise scans the
+     * matching objects
+     * @param <A>
+     * @param attr
+     * @param query
+     * @param options
+     * @return the highest value
+     */
+    @Override
+    public <A extends Comparable<A>> Optional<A> max(Attribute<T,A> attr, Query<T> query, QueryOptions options) {
+        final KeyStatisticsIndex<A,T> index = query == null ? statisticsOn(attr) : null;
+        
+        if(index instanceof SortedKeyStatisticsIndex)
+            return first(((SortedKeyStatisticsIndex<A,T>)index).getDistinctKeysDescending(noQueryOptions()).iterator());
+        
+        return Aggregates.max(attr, select(query));
+    }
+    
+    @Override
+    public double sum(Attribute<T,? extends Number> attr, Query<T> query, QueryOptions options) {
+        return Aggregates.sum(attr, select(query));
+    }
+    
+    @Override
+    public OptionalDouble avg(Attribute<T,? extends Number> attr, Query<T> query, QueryOptions options) {
+        return Aggregates.avg(attr, select(query));
+    }
+    
+    /**
+     * Reads the bucket sizes of the index on the attribute
+     * when the whole collection is considered, otherwise 
+     * groups the matching objects
+     * @param <A>
+     * @param attr
+     * @param query
+     * @param options
+     * @return the number of objects for each value of the attribute
+     */
+    @Override
+    public <A> Map<A,Long> countBy(Attribute<T,A> attr, Query<T> query, QueryOptions options) {
+        final KeyStatisticsIndex<A,T> index = query == null ? statisticsOn(attr) : null;
+        
+        if(index == null)
+            return Aggregates.countBy(attr, select(query));
+        
+        final Map<A,Long> counts = new HashMap<>();
+        final CloseableIterator<KeyStatistics<A>> iter = index.getStatisticsForDistinctKeys(noQueryOptions()).iterator();
+        
+        try{
+            while(iter.hasNext()){
+                KeyStatistics<A> stats = iter.next();
+                counts.put(stats.getKey(), stats.getCount().longValue());
+            }
+        }
+        finally{
+            iter.close();
+        }
+        
+        return counts;
+    }
+    
     @Override
     public void close() throws IOException {
         
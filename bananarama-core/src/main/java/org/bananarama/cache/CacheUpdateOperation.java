@@ -19,11 +19,13 @@ import com.googlecode.cqengine.IndexedCollection;
 import static com.googlecode.cqengine.query.QueryFactory.noQueryOptions;
 import com.googlecode.cqengine.query.option.QueryOptions;
 import java.io.IOException;
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.bananarama.BananaRama;
+import org.bananarama.cache.annotation.PrimaryKey;
+import org.bananarama.concurrency.Striped;
 import org.bananarama.crud.UpdateOperation;
 
 /**
@@ -32,13 +34,30 @@ import org.bananarama.crud.UpdateOperation;
  */
 public class CacheUpdateOperation<T> extends AbstractCacheOperation<T> implements UpdateOperation<T>{
     
+    private final Striped<Lock> keyLocks;
+    
     public CacheUpdateOperation(IndexedCollection<T>coll,Class<T> clazz,BananaRama root){
+        this(coll, clazz, root, Striped.lock(1));
+    }
+    
+    /**
+     * @param coll
+     * @param clazz
+     * @param root
+     * @param keyLocks locks guarding the primary keys of the given type,
+     * they must be shared by all the update operations on the same type
+     */
+    public CacheUpdateOperation(IndexedCollection<T>coll,Class<T> clazz,BananaRama root,Striped<Lock> keyLocks){
         super(coll, clazz,root);
+        this.keyLocks = keyLocks;
     }
     /**
      * Replaces all the elements in the {@link Stream} in the
      * internal collection and updates them also
-     * on the underlying layer
+     * on the underlying layer. If the type declares a
+     * {@link PrimaryKey}, the replaced elements are looked up
+     * by key and concurrent updates of the same keys are serialized,
+     * while updates of unrelated keys proceed in parallel.
      * @param data
      * @return
      */
@@ -54,21 +73,21 @@ public class CacheUpdateOperation<T> extends AbstractCacheOperation<T> implement
      * @param options
      * @return
      */
-    @SuppressWarnings("unchecked")
     @Override
     public UpdateOperation<T> from(Stream<T> data, QueryOptions options) {
-        List<T> buf = data.collect(Collectors.toList());
-        //Update elements in collection
-        coll.removeAll(buf);
-        coll.update(Collections.EMPTY_LIST, buf, options);
+        final List<T> buf = data.collect(Collectors.toList());
+        
+        replace(buf, options, keyLocks, () -> updateBackingLayer(buf, options));
         
+        return this;
+    }
+    
+    private void updateBackingLayer(List<T> buf,QueryOptions options){
         //Update elements on underlying layer
         if(options != null)
             getBackingAdapter(clazz).update(clazz).from(buf.stream(),options);
         else
             getBackingAdapter(clazz).update(clazz).from(buf.stream());
-        
-        return this;
     }
     
     @Override
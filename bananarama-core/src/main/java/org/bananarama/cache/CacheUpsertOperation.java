@@ -0,0 +1,88 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.cache;
+
+import com.googlecode.cqengine.IndexedCollection;
+import static com.googlecode.cqengine.query.QueryFactory.noQueryOptions;
+import com.googlecode.cqengine.query.option.QueryOptions;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.bananarama.BananaRama;
+import org.bananarama.cache.annotation.PrimaryKey;
+import org.bananarama.concurrency.Striped;
+import org.bananarama.crud.UpsertOperation;
+
+public class CacheUpsertOperation<T> extends AbstractCacheOperation<T> implements UpsertOperation<T>{
+    
+    private final Striped<Lock> keyLocks;
+    
+    /**
+     * @param coll
+     * @param clazz
+     * @param root
+     * @param keyLocks locks guarding the primary keys of the given type,
+     * they must be shared with the update operations on the same type
+     */
+    public CacheUpsertOperation(IndexedCollection<T>coll,Class<T> clazz,BananaRama root,Striped<Lock> keyLocks){
+        super(coll, clazz,root);
+        this.keyLocks = keyLocks;
+    }
+    
+    /**
+     * Adds all the elements in the {@link Stream} to the internal
+     * collection, replacing those with the same {@link PrimaryKey} (or
+     * the equal ones, if the type has no primary key), and upserts
+     * them on the underlying layer
+     * @param data
+     * @return
+     */
+    @Override
+    public UpsertOperation<T> from(Stream<T> data) {
+        return from(data,noQueryOptions());
+    }
+    
+    /**
+     * Same as {@link #from(java.util.stream.Stream) but passes
+     * the given {@link QueryOptions} to the underlying layer
+     * @param data
+     * @param options
+     * @return
+     */
+    @Override
+    public UpsertOperation<T> from(Stream<T> data, QueryOptions options) {
+        final List<T> buf = data.collect(Collectors.toList());
+        
+        replace(buf, options, keyLocks, () -> upsertBackingLayer(buf, options));
+        
+        return this;
+    }
+    
+    private void upsertBackingLayer(List<T> buf,QueryOptions options){
+        //Upsert elements on underlying layer
+        if(options != null)
+            getBackingAdapter(clazz).upsert(clazz).from(buf.stream(),options);
+        else
+            getBackingAdapter(clazz).upsert(clazz).from(buf.stream());
+    }
+    
+    @Override
+    public void close() throws IOException {
+        
+    }
+}
@@ -21,30 +21,36 @@ import java.util.stream.Collectors;
 
 import com.googlecode.cqengine.IndexedCollection;
 import com.googlecode.cqengine.attribute.Attribute;
-import com.googlecode.cqengine.index.Index;
+import com.googlecode.cqengine.attribute.SimpleAttribute;
+import com.googlecode.cqengine.index.hash.HashIndex;
 import org.bananarama.BananaRama;
-import org.bananarama.concurrency.StripedLock;
+import org.bananarama.concurrency.Striped;
 import org.bananarama.crud.CreateOperation;
 import org.bananarama.crud.DeleteOperation;
 import org.bananarama.crud.ReadOperation;
 import org.bananarama.crud.UpdateOperation;
+import org.bananarama.crud.UpsertOperation;
 import org.bananarama.crud.Adapter;
 
 
 import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
+import java.lang.reflect.InvocationTargetException;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
-import java.util.function.Predicate;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
 import net.sf.ehcache.config.Configuration;
 import net.sf.ehcache.config.ConfigurationFactory;
 import net.sf.ehcache.config.PersistenceConfiguration;
+import net.sf.ehcache.event.CacheEventListenerAdapter;
 import org.bananarama.annotation.BananaRamaAdapter;
 import org.bananarama.cache.providers.collection.IndexedCollectionProvider;
-import org.bananarama.util.accessor.FieldAccessor;
+import org.bananarama.cache.providers.index.IndexProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,10 +65,8 @@ public final class IndexedCollectionAdapter implements Adapter<Object> {
     private final CacheManager cacheManager;
     private final Ehcache cache;
     private final static Logger log = LoggerFactory.getLogger(IndexedCollectionAdapter.class);
-    private final StripedLock slock = new StripedLock(64);
-    private static final int ATTRIBUTE_MODIFIERS =  Modifier.PUBLIC
-            | Modifier.FINAL
-            | Modifier.STATIC;
+    private final Striped<Lock> slock = Striped.lock(64);
+    private final Map<Class<?>,Striped<Lock>> keyLocks = new ConcurrentHashMap<>();
     private final BananaRama parent;
     
     public IndexedCollectionAdapter(BananaRama parent){
@@ -76,31 +80,86 @@ public final class IndexedCollectionAdapter implements Adapter<Object> {
         
         cacheManager =  CacheManager.newInstance(conf);
         cache = cacheManager.addCacheIfAbsent(CACHE_NAME);
+        //Buffers may hold resources outside of the heap
+        //which must be released as soon as they're dropped
+        cache.getCacheEventNotificationService().registerListener(new CacheEventListenerAdapter(){
+            @Override
+            public void notifyElementEvicted(Ehcache ehcache, Element element) {
+                ((Buffer<?>)element.getObjectValue()).close();
+            }
+
+            @Override
+            public void notifyElementExpired(Ehcache ehcache, Element element) {
+                ((Buffer<?>)element.getObjectValue()).close();
+            }
+
+            @Override
+            public void notifyElementRemoved(Ehcache ehcache, Element element) {
+                ((Buffer<?>)element.getObjectValue()).close();
+            }
+        });
         this.parent = parent;
     }
     
+    /**
+     * Buffered collection along with the provider which built it
+     */
+    private static final class Buffer<T>{
+        private final IndexedCollection<T> collection;
+        private final IndexedCollectionProvider<T> provider;
+
+        private Buffer(IndexedCollection<T> collection, IndexedCollectionProvider<T> provider) {
+            this.collection = collection;
+            this.provider = provider;
+        }
+        
+        private void close(){
+            provider.close(collection);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <T> IndexedCollectionProvider<T> newProvider(Class<? extends IndexedCollectionProvider> providerClass,Class<T> clazz){
+        try{
+            try{
+                //Providers which need the buffered type
+                return providerClass.getConstructor(Class.class).newInstance(clazz);
+            }
+            catch(NoSuchMethodException ex){
+                return providerClass.newInstance();
+            }
+        }
+        catch(IllegalAccessException | InstantiationException | InvocationTargetException ex){
+            throw new IllegalArgumentException("Can't instantiate " + providerClass.getName(), ex);
+        }
+    }
+    
 
     
     @SuppressWarnings("unchecked")
     private <T> IndexedCollection<T> getCollection(Class<T> clazz){
-        Lock lock = slock.getLock(clazz);
-        lock.lock();
+        //Fast path, the cache is thread safe on its own
+        //and loaded buffers need no locking at all
         Element value = cache.get(clazz);
+        
+        if(value != null)
+            return ((Buffer<T>)value.getObjectValue()).collection;
+        
+        //Only the loading thread and those waiting
+        //for the same buffer get past this point
+        Lock lock = slock.get(clazz);
+        lock.lock();
         try{
+            value = cache.get(clazz);
             
             if(value == null){
                 final BufferedOnIndexedCollection typeAnno = clazz.getAnnotation(BufferedOnIndexedCollection.class);
                 log.info("Starting buffering of " + clazz.getName());
                 final IndexedCollection<T> tmpColl;
-                final IndexedCollectionProvider<?> collectionProvider;
+                final IndexedCollectionProvider<T> collectionProvider;
                 //Retrieve collection provider from annotation
-                try{
-                    collectionProvider = typeAnno.provider().newInstance();
-                    tmpColl = typeAnno.provider().newInstance().buildCollection();
-                }
-                catch(IllegalAccessException | InstantiationException ex){
-                    throw new IllegalArgumentException(ex);
-                }
+                collectionProvider = newProvider(typeAnno.provider(), clazz);
+                tmpColl = collectionProvider.buildCollection();
                 
                 /*
                 Load elements from the backingAdapter
@@ -116,16 +175,8 @@ public final class IndexedCollectionAdapter implements Adapter<Object> {
                 
                 log.debug("Building indexes for " + clazz.getName());
                 
-                final Collection<Field> fields;
-                final Predicate<Field> fieldFilter = field -> 
-                        (field.getModifiers() & ATTRIBUTE_MODIFIERS) == ATTRIBUTE_MODIFIERS
-                                && field.isAnnotationPresent(Indexed.class)
-                                && Attribute.class.isAssignableFrom(field.getType());
-                
-                if(typeAnno.inheritFields())
-                  fields = FieldAccessor.getAttributeFieldsRecursive(clazz,fieldFilter).values();
-                else
-                    fields = FieldAccessor.getAttributeFieldsForClass(clazz,fieldFilter).values();
+                final Collection<Field> fields = AttributeFields.getAnnotatedAttributeFields(clazz, Indexed.class);
+                final Set<Attribute<T,?>> indexed = new HashSet<>();
                 
                 //Find all attributes on which we need to build indexes
                 for(Field field :fields){
@@ -133,18 +184,31 @@ public final class IndexedCollectionAdapter implements Adapter<Object> {
                         //Build the index on the attribute
                         Indexed anno = field.getAnnotation(Indexed.class);
                         Attribute<T,?> attr = (Attribute<T,?>)field.get(null);
-                        Index<T> index = anno.value().newInstance().getIndex(attr);
+                        IndexProvider<T> indexProvider = anno.value().newInstance();
                         log.debug(
-                                index.getClass().getName()
+                                "Index from " + indexProvider.getClass().getName()
                                         + " will be added on attribute " + attr.getAttributeName()
                                         + " for class " +clazz.getName());
-                        tmpColl.addIndex(index);
+                        
+                        //The collection provider decides how many index instances are needed
+                        collectionProvider.addIndex(tmpColl, () -> indexProvider.getIndex(attr));
+                        indexed.add(attr);
                         
                     } catch (IllegalArgumentException | IllegalAccessException | InstantiationException ex) {
                         log.warn("Can't add index on attribute " + field.getName(), ex);
                     }
                 }
                 
+                //Updates look objects up by primary key,
+                //which must not require a full scan
+                final SimpleAttribute<T,?> primaryKey = AttributeFields.getPrimaryKey(clazz);
+                
+                if(primaryKey != null && !indexed.contains(primaryKey) && !collectionProvider.indexesPrimaryKey()){
+                    log.debug("Index will be added on primary key " + primaryKey.getAttributeName()
+                            + " for class " + clazz.getName());
+                    collectionProvider.addIndex(tmpColl, () -> HashIndex.onAttribute(primaryKey));
+                }
+                
                 final int timeToLive = collectionProvider.timeToLive();
                 final int timeToIdle = collectionProvider.timeToIdle();
                 
@@ -152,9 +216,9 @@ public final class IndexedCollectionAdapter implements Adapter<Object> {
                 //TTL and TTI through the annotation 
                 //or the element is eternal
                 if(timeToLive >= 0 && timeToIdle >= 0)
-                    value = new Element(clazz,tmpColl, timeToIdle, timeToLive);
+                    value = new Element(clazz,new Buffer<>(tmpColl,collectionProvider), timeToIdle, timeToLive);
                 else
-                    value = new Element(clazz, tmpColl, true);
+                    value = new Element(clazz, new Buffer<>(tmpColl,collectionProvider), true);
                 
                 this.cache.put(value);
                 
@@ -166,7 +230,7 @@ public final class IndexedCollectionAdapter implements Adapter<Object> {
             lock.unlock();
         }
         
-        return (IndexedCollection < T >)value.getObjectValue();
+        return ((Buffer<T>)value.getObjectValue()).collection;
     }
     
     
@@ -178,8 +242,11 @@ public final class IndexedCollectionAdapter implements Adapter<Object> {
         cache.getAll(cache.getKeys())
                 .values()
                 .stream()
-                .map(elem -> (IndexedCollection<?>)elem.getObjectValue())
-                .forEach(IndexedCollection::clear);
+                .map(elem -> (Buffer<?>)elem.getObjectValue())
+                .forEach(buffer -> {
+                    buffer.collection.clear();
+                    buffer.close();
+                });
         //Dispose the cache
         cache.dispose();
     }
@@ -196,7 +263,8 @@ public final class IndexedCollectionAdapter implements Adapter<Object> {
     
     @Override
     public <T> UpdateOperation<T> update(Class<T> clazz) {
-        return new CacheUpdateOperation<>(getCollection(clazz),clazz,parent);
+        return new CacheUpdateOperation<>(getCollection(clazz),clazz,parent,
+                keyLocks.computeIfAbsent(clazz, c -> Striped.lock(64)));
     }
     
     @Override
@@ -204,4 +272,10 @@ public final class IndexedCollectionAdapter implements Adapter<Object> {
         return new CacheDeleteOperation<>(getCollection(clazz),clazz,parent);
     }
     
+    @Override
+    public <T> UpsertOperation<T> upsert(Class<T> clazz) {
+        return new CacheUpsertOperation<>(getCollection(clazz),clazz,parent,
+                keyLocks.computeIfAbsent(clazz, c -> Striped.lock(64)));
+    }
+    
 }
@@ -0,0 +1,51 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.cache.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import org.bananarama.cache.providers.collection.DiskIndexedCollectionProvider;
+import org.bananarama.cache.providers.collection.OffHeapIndexedCollectionProvider;
+
+/**
+ * Configures the persistence of a type buffered on an off-heap 
+ * or disk collection, see {@link OffHeapIndexedCollectionProvider}
+ * and {@link DiskIndexedCollectionProvider}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface PersistenceOptions {
+    
+    /**
+     * The file where the buffer will be persisted, only used
+     * by disk persistence. If empty a temporary file is created.
+     */
+    String file() default "";
+    
+    /**
+     * The page size in bytes of the underlying storage,
+     * 0 keeps the default one.
+     */
+    int pageSize() default 0;
+    
+    /**
+     * If true the storage cache will be shared among all
+     * connections to the same persistence.
+     */
+    boolean sharedCache() default false;
+}
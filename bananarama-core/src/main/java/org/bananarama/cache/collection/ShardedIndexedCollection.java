@@ -0,0 +1,509 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.cache.collection;
+
+import com.googlecode.cqengine.IndexedCollection;
+import com.googlecode.cqengine.attribute.Attribute;
+import com.googlecode.cqengine.index.AttributeIndex;
+import com.googlecode.cqengine.index.Index;
+import com.googlecode.cqengine.query.Query;
+import static com.googlecode.cqengine.query.QueryFactory.noQueryOptions;
+import com.googlecode.cqengine.query.option.OrderByOption;
+import com.googlecode.cqengine.query.option.QueryOptions;
+import com.googlecode.cqengine.resultset.ResultSet;
+import com.googlecode.cqengine.resultset.order.AttributeOrdersComparator;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.bananarama.concurrency.SharedExecutors;
+
+/**
+ * {@link IndexedCollection} which hash-partitions its elements
+ * across a fixed number of independent shards, each one with its own
+ * set of indexes. Writes on different shards never contend with each other
+ * and queries are executed on every shard in parallel, lazily merging the results
+ * (preserving the ordering requested by an {@link OrderByOption}). Each shard 
+ * retrieves its results and reads, or sorts, its first ones on its own task, 
+ * by default on {@link SharedExecutors#io()}.
+ * <p>
+ * Since an {@link Index} instance cannot be shared among collections,
+ * indexes should be added through {@link #addIndex(java.util.function.Supplier)}.
+ */
+public class ShardedIndexedCollection<O> extends AbstractSet<O> implements IndexedCollection<O>{
+
+    private final List<IndexedCollection<O>> shards;
+    private final ExecutorService executor;
+
+    public ShardedIndexedCollection(int shards,Supplier<? extends IndexedCollection<O>> shardFactory){
+        this(shards, shardFactory, SharedExecutors.io());
+    }
+    
+    /**
+     * @param shards the number of shards
+     * @param shardFactory builds each shard
+     * @param executor the executor on which shards are queried
+     */
+    public ShardedIndexedCollection(int shards,Supplier<? extends IndexedCollection<O>> shardFactory,ExecutorService executor){
+        if(shards < 1)
+            throw new IllegalArgumentException("At least one shard is required, got " + shards);
+        
+        this.executor = executor;
+
+        this.shards = Collections.unmodifiableList(IntStream.range(0, shards)
+                .mapToObj(i -> (IndexedCollection<O>)shardFactory.get())
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * @return the number of shards of this collection
+     */
+    public int getShardCount(){
+        return shards.size();
+    }
+
+    private int shardIndexFor(Object obj){
+        int h = obj.hashCode();
+        //Spread higher bits, weak hashes would
+        //otherwise end up in few shards
+        h ^= (h >>> 16);
+        return Math.floorMod(h, shards.size());
+    }
+
+    private IndexedCollection<O> shardFor(Object obj){
+        return shards.get(shardIndexFor(obj));
+    }
+
+    private List<List<O>> partition(Iterable<? extends O> objs){
+        final List<List<O>> partitions = new ArrayList<>(shards.size());
+
+        for(int i=0;i<shards.size();i++)
+            partitions.add(new ArrayList<>());
+
+        for(O obj : objs)
+            partitions.get(shardIndexFor(obj)).add(obj);
+
+        return partitions;
+    }
+
+    /**
+     * Adds the index built by the given factory on every shard.
+     * The factory is invoked once per shard.
+     * @param indexFactory
+     */
+    public void addIndex(Supplier<? extends Index<O>> indexFactory){
+        addIndex(indexFactory, noQueryOptions());
+    }
+
+    /**
+     * Same as {@link #addIndex(java.util.function.Supplier)} but
+     * passes the given {@link QueryOptions} to each shard
+     * @param indexFactory
+     * @param queryOptions
+     */
+    public void addIndex(Supplier<? extends Index<O>> indexFactory,QueryOptions queryOptions){
+        shards.parallelStream()
+                .forEach(shard -> shard.addIndex(indexFactory.get(),queryOptions));
+    }
+
+    @Override
+    public void addIndex(Index<O> index) {
+        addIndex(index,noQueryOptions());
+    }
+
+    /**
+     * Adds the given index on the first shard and an equivalent
+     * index, built by the <code>onAttribute</code> factory method of its class,
+     * on every other shard. Indexes which can't be rebuilt that way
+     * (e.g. compound or quantized indexes) must be added through
+     * {@link #addIndex(java.util.function.Supplier, com.googlecode.cqengine.query.option.QueryOptions)}.
+     * @param index
+     * @param queryOptions
+     */
+    @Override
+    public void addIndex(Index<O> index, QueryOptions queryOptions) {
+        final Supplier<Index<O>> replicas = replicasOf(index);
+        
+        shards.get(0).addIndex(index, queryOptions);
+        shards.subList(1, shards.size())
+                .parallelStream()
+                .forEach(shard -> shard.addIndex(replicas.get(),queryOptions));
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <O> Supplier<Index<O>> replicasOf(Index<O> index){
+        if(index instanceof AttributeIndex){
+            final Attribute<O,?> attr = ((AttributeIndex<?,O>)index).getAttribute();
+            
+            for(Method method : index.getClass().getMethods()){
+                if(method.getName().equals("onAttribute")
+                        && Modifier.isStatic(method.getModifiers())
+                        && method.getParameterCount() == 1
+                        && method.getParameterTypes()[0].isInstance(attr)
+                        && index.getClass().isAssignableFrom(method.getReturnType())){
+                    return () -> {
+                        try{
+                            return (Index<O>)method.invoke(null, attr);
+                        }
+                        catch(IllegalAccessException | InvocationTargetException ex){
+                            throw new IllegalStateException("Can't replicate " + index.getClass().getName(), ex);
+                        }
+                    };
+                }
+            }
+        }
+        
+        throw new IllegalArgumentException(index.getClass().getName() 
+                + " can't be replicated on every shard, use addIndex(Supplier<Index>) instead");
+    }
+
+    /**
+     * @return the indexes of the first shard, every shard holds
+     * an equivalent set of indexes
+     */
+    @Override
+    public Iterable<Index<O>> getIndexes() {
+        return shards.get(0).getIndexes();
+    }
+
+    @Override
+    public ResultSet<O> retrieve(Query<O> query) {
+        return retrieve(query,noQueryOptions());
+    }
+
+    @Override @SuppressWarnings({"unchecked","rawtypes"})
+    public ResultSet<O> retrieve(Query<O> query, QueryOptions queryOptions) {
+        //Shard result sets are lazy, objects are read upon iteration
+        final List<ResultSet<O>> partials = onShards(shards, shard -> shard.retrieve(query, queryOptions));
+        
+        final OrderByOption<O> orderBy = queryOptions.get(OrderByOption.class);
+        final Comparator<O> comparator = orderBy == null ? null 
+                : new AttributeOrdersComparator(orderBy.getAttributeOrders(), queryOptions);
+        
+        return new ShardedResultSet(partials, comparator, query, queryOptions);
+    }
+
+    /**
+     * Runs the given task on each element concurrently, 
+     * the calling thread waits for all of them
+     * @param <E>
+     * @param <R>
+     * @param elements
+     * @param task
+     * @return the results, in the order of the elements
+     */
+    private <E,R> List<R> onShards(List<E> elements,Function<E,R> task){
+        if(elements.size() == 1)
+            return Collections.singletonList(task.apply(elements.get(0)));
+        
+        final List<Future<R>> futures = elements.stream()
+                .map(element -> executor.submit(() -> task.apply(element)))
+                .collect(Collectors.toList());
+        final List<R> results = new ArrayList<>(futures.size());
+        
+        try{
+            for(Future<R> future : futures)
+                results.add(future.get());
+        }
+        catch(ExecutionException ex){
+            if(ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException)ex.getCause();
+            
+            throw new IllegalStateException(ex.getCause());
+        }
+        catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+        finally{
+            futures.forEach(future -> future.cancel(true));
+        }
+        
+        return results;
+    }
+
+    /**
+     * Merges the sorted iterators of the shards, each shard
+     * is consumed only as far as the merged output requires
+     */
+    private static class MergingIterator<O> implements Iterator<O>{
+        private final PriorityQueue<PeekingIterator<O>> heads;
+        
+        private MergingIterator(List<PeekingIterator<O>> iters,Comparator<O> comparator){
+            heads = new PriorityQueue<>(
+                Math.max(1,iters.size()),
+                (a,b) -> comparator.compare(a.peek(), b.peek()));
+            
+            for(PeekingIterator<O> iter : iters)
+                if(iter.hasNext())
+                    heads.add(iter);
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+        
+        @Override
+        public O next() {
+            PeekingIterator<O> head = heads.poll();
+            
+            if(head == null)
+                throw new NoSuchElementException();
+            
+            O obj = head.next();
+            
+            if(head.hasNext())
+                heads.add(head);
+            
+            return obj;
+        }
+    }
+
+    @Override
+    public boolean update(Iterable<O> objectsToRemove, Iterable<O> objectsToAdd) {
+        return update(objectsToRemove,objectsToAdd,noQueryOptions());
+    }
+
+    @Override
+    public boolean update(Iterable<O> objectsToRemove, Iterable<O> objectsToAdd, QueryOptions queryOptions) {
+        final List<List<O>> toRemove = partition(objectsToRemove);
+        final List<List<O>> toAdd = partition(objectsToAdd);
+
+        return IntStream.range(0, shards.size())
+                .parallel()
+                .filter(i -> !toRemove.get(i).isEmpty() || !toAdd.get(i).isEmpty())
+                .mapToObj(i -> shards.get(i).update(toRemove.get(i), toAdd.get(i), queryOptions))
+                .reduce(false, Boolean::logicalOr);
+    }
+
+    @Override
+    public int size() {
+        return shards.stream()
+                .mapToInt(IndexedCollection::size)
+                .sum();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return shards.stream()
+                .allMatch(IndexedCollection::isEmpty);
+    }
+
+    @Override
+    public boolean contains(Object obj) {
+        return shardFor(obj).contains(obj);
+    }
+
+    @Override
+    public Iterator<O> iterator() {
+        return shards.stream()
+                .flatMap(IndexedCollection::stream)
+                .iterator();
+    }
+
+    @Override
+    public boolean add(O obj) {
+        return shardFor(obj).add(obj);
+    }
+
+    @Override
+    public boolean remove(Object obj) {
+        return shardFor(obj).remove(obj);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends O> objs) {
+        final List<List<O>> partitions = partition(objs);
+
+        return IntStream.range(0, shards.size())
+                .parallel()
+                .filter(i -> !partitions.get(i).isEmpty())
+                .mapToObj(i -> shards.get(i).addAll(partitions.get(i)))
+                .reduce(false, Boolean::logicalOr);
+    }
+
+    @Override @SuppressWarnings("unchecked")
+    public boolean removeAll(Collection<?> objs) {
+        final List<List<Object>> partitions = new ArrayList<>(shards.size());
+
+        for(int i=0;i<shards.size();i++)
+            partitions.add(new ArrayList<>());
+
+        for(Object obj : objs)
+            partitions.get(shardIndexFor(obj)).add(obj);
+
+        return IntStream.range(0, shards.size())
+                .parallel()
+                .filter(i -> !partitions.get(i).isEmpty())
+                .mapToObj(i -> shards.get(i).removeAll(partitions.get(i)))
+                .reduce(false, Boolean::logicalOr);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> objs) {
+        return shards.parallelStream()
+                .map(shard -> shard.retainAll(objs))
+                .reduce(false, Boolean::logicalOr);
+    }
+
+    @Override
+    public void clear() {
+        shards.parallelStream()
+                .forEach(IndexedCollection::clear);
+    }
+
+    private static class PeekingIterator<O> implements Iterator<O>{
+        private final Iterator<O> iter;
+        private O next;
+        private boolean peeked;
+
+        private PeekingIterator(Iterator<O> iter){
+            this.iter = iter;
+        }
+
+        private O peek(){
+            if(!peeked){
+                next = iter.next();
+                peeked = true;
+            }
+            return next;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return peeked || iter.hasNext();
+        }
+
+        @Override
+        public O next() {
+            if(!hasNext())
+                throw new NoSuchElementException();
+
+            O obj = peek();
+            peeked = false;
+            next = null;
+            return obj;
+        }
+    }
+
+    /**
+     * {@link ResultSet} over the merged results of all shards
+     */
+    private class ShardedResultSet extends ResultSet<O>{
+        private final List<ResultSet<O>> partials;
+        private final Comparator<O> comparator;
+        private final Query<O> query;
+        private final QueryOptions queryOptions;
+
+        private ShardedResultSet(List<ResultSet<O>> partials,Comparator<O> comparator,Query<O> query,QueryOptions queryOptions){
+            this.partials = partials;
+            this.comparator = comparator;
+            this.query = query;
+            this.queryOptions = queryOptions;
+        }
+
+        @Override
+        public Iterator<O> iterator() {
+            //Sorting or finding the first result is the expensive part
+            final List<PeekingIterator<O>> iters = onShards(partials, partial -> {
+                final PeekingIterator<O> iter = new PeekingIterator<>(partial.iterator());
+                iter.hasNext();
+                return iter;
+            });
+            
+            if(comparator != null)
+                return new MergingIterator<>(iters, comparator);
+            
+            return new Iterator<O>(){
+                private int current;
+                
+                @Override
+                public boolean hasNext() {
+                    for(;current < iters.size();current++)
+                        if(iters.get(current).hasNext())
+                            return true;
+                    
+                    return false;
+                }
+
+                @Override
+                public O next() {
+                    if(!hasNext())
+                        throw new NoSuchElementException();
+                    
+                    return iters.get(current).next();
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(O object) {
+            //Objects are partitioned, only their shard may hold them
+            return partials.get(shardIndexFor(object)).contains(object);
+        }
+
+        @Override
+        public boolean matches(O object) {
+            return query.matches(object, queryOptions);
+        }
+
+        @Override
+        public Query<O> getQuery() {
+            return query;
+        }
+
+        @Override
+        public QueryOptions getQueryOptions() {
+            return queryOptions;
+        }
+
+        @Override
+        public int getRetrievalCost() {
+            return partials.stream().mapToInt(ResultSet::getRetrievalCost).max().orElse(0);
+        }
+
+        @Override
+        public int getMergeCost() {
+            return partials.stream().mapToInt(ResultSet::getMergeCost).sum();
+        }
+
+        @Override
+        public int size() {
+            return partials.stream().mapToInt(ResultSet::size).sum();
+        }
+
+        @Override
+        public void close() {
+            partials.forEach(ResultSet::close);
+        }
+    }
+}
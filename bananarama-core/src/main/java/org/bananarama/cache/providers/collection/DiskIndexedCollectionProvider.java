@@ -0,0 +1,61 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.cache.providers.collection;
+
+import com.googlecode.cqengine.attribute.SimpleAttribute;
+import com.googlecode.cqengine.persistence.Persistence;
+import com.googlecode.cqengine.persistence.disk.DiskPersistence;
+import java.io.File;
+import java.util.Properties;
+import org.bananarama.cache.annotation.PersistenceOptions;
+
+/**
+ * Stores buffered objects in serialized form in a file on disk.
+ * The file is set with {@link PersistenceOptions#file()}, otherwise
+ * a temporary file is used, which is deleted once the buffer is released.
+ */
+public class DiskIndexedCollectionProvider<O> extends PersistentIndexedCollectionProvider<O>{
+
+    public DiskIndexedCollectionProvider(Class<O> type) {
+        super(type);
+    }
+
+    /**
+     * 
+     * @return an instance of {@link DiskPersistence}
+     */
+    @Override
+    protected <A extends Comparable<A>> Persistence<O, A> buildPersistence(
+            SimpleAttribute<O, A> primaryKey,
+            PersistenceOptions options,
+            Properties properties) {
+        final File file = options != null && !options.file().isEmpty() 
+                ? new File(options.file()) 
+                : DiskPersistence.createTempFile();
+        
+        return DiskPersistence.onPrimaryKeyInFileWithProperties(primaryKey, file, properties);
+    }
+
+    @Override
+    protected void release(Persistence<O, ?> persistence) {
+        final PersistenceOptions options = getType().getAnnotation(PersistenceOptions.class);
+        
+        //Files set by the user are kept
+        if(options == null || options.file().isEmpty())
+            ((DiskPersistence<O,?>)persistence).getFile().delete();
+    }
+    
+}
@@ -16,9 +16,13 @@
 package org.bananarama.cache.providers.collection;
 
 import com.googlecode.cqengine.IndexedCollection;
+import com.googlecode.cqengine.index.Index;
+import java.util.function.Supplier;
 /**
  * Helper Class used in {@link BufferedOnIndexedCollection} to set 
- * custom properties for the buffer.
+ * custom properties for the buffer. Providers are instantiated once per
+ * buffered type, through a public constructor taking the buffered type
+ * if present, otherwise through the no-arg one.
  * @author Guglielmo De Concini
  */
 public interface IndexedCollectionProvider<O> {
@@ -46,4 +50,36 @@ public interface IndexedCollectionProvider<O> {
      * @return A instance of {@link IndexedCollection}
      */
     IndexedCollection<O> buildCollection();
+    
+    
+    /**
+     * Releases the resources held by a collection built by this provider,
+     * invoked once the buffer is evicted or the adapter is cleared.
+     * Does nothing by default.
+     * @param collection a collection built by this provider
+     */
+    default void close(IndexedCollection<O> collection){
+    }
+    
+    /**
+     * Adds an index to a collection built by this provider.
+     * The factory is invoked once per index instance the collection
+     * requires, by default just once.
+     * @param collection a collection built by this provider
+     * @param indexFactory builds the index to add
+     */
+    default void addIndex(IndexedCollection<O> collection,Supplier<? extends Index<O>> indexFactory){
+        collection.addIndex(indexFactory.get());
+    }
+    
+    /**
+     * Collections which don't index the {@link org.bananarama.cache.annotation.PrimaryKey}
+     * of the buffered type are given an additional index on it,
+     * so that objects can be looked up by key without scanning the collection.
+     * @return true if the collections built by this provider already index 
+     * the primary key of the buffered type, false by default
+     */
+    default boolean indexesPrimaryKey(){
+        return false;
+    }
 }
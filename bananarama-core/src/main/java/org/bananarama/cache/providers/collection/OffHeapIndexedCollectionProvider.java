@@ -0,0 +1,51 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.cache.providers.collection;
+
+import com.googlecode.cqengine.attribute.SimpleAttribute;
+import com.googlecode.cqengine.persistence.Persistence;
+import com.googlecode.cqengine.persistence.offheap.OffHeapPersistence;
+import java.util.Properties;
+import org.bananarama.cache.annotation.PersistenceOptions;
+
+/**
+ * Stores buffered objects in serialized form outside of the 
+ * Java heap, so that they are not subject to garbage collection.
+ */
+public class OffHeapIndexedCollectionProvider<O> extends PersistentIndexedCollectionProvider<O>{
+
+    public OffHeapIndexedCollectionProvider(Class<O> type) {
+        super(type);
+    }
+
+    /**
+     * 
+     * @return an instance of {@link OffHeapPersistence}
+     */
+    @Override
+    protected <A extends Comparable<A>> Persistence<O, A> buildPersistence(
+            SimpleAttribute<O, A> primaryKey,
+            PersistenceOptions options,
+            Properties properties) {
+        return OffHeapPersistence.onPrimaryKeyWithProperties(primaryKey, properties);
+    }
+
+    @Override
+    protected void release(Persistence<O, ?> persistence) {
+        ((OffHeapPersistence<O,?>)persistence).close();
+    }
+    
+}
@@ -0,0 +1,129 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.cache.providers.collection;
+
+import com.googlecode.cqengine.ConcurrentIndexedCollection;
+import com.googlecode.cqengine.IndexedCollection;
+import com.googlecode.cqengine.attribute.SimpleAttribute;
+import com.googlecode.cqengine.persistence.Persistence;
+import java.util.Properties;
+import org.bananarama.cache.AttributeFields;
+import org.bananarama.cache.annotation.PersistenceOptions;
+import org.bananarama.cache.annotation.PrimaryKey;
+
+/**
+ * Base class for providers of collections whose objects are 
+ * stored outside of the Java heap. The buffered type must declare
+ * a {@link PrimaryKey} attribute and may be configured through 
+ * {@link PersistenceOptions}.
+ */
+public abstract class PersistentIndexedCollectionProvider<O> implements IndexedCollectionProvider<O>{
+    
+    private static final String PAGE_SIZE = "page_size";
+    private static final String SHARED_CACHE = "shared_cache";
+    
+    private final Class<O> type;
+    
+    /**
+     * 
+     * @param type the type of the buffered entities
+     */
+    protected PersistentIndexedCollectionProvider(Class<O> type){
+        this.type = type;
+    }
+    
+    /**
+     * @return the type of the buffered entities
+     */
+    protected Class<O> getType(){
+        return type;
+    }
+    
+    @Override
+    public IndexedCollection<O> buildCollection() {
+        return buildOnPrimaryKey(type);
+    }
+    
+    /**
+     * 
+     * @return true, persistence keeps an identity index on the primary key
+     */
+    @Override
+    public boolean indexesPrimaryKey() {
+        return true;
+    }
+    
+    @Override @SuppressWarnings("unchecked")
+    public void close(IndexedCollection<O> collection) {
+        release(((PersistentIndexedCollection<O>)collection).getPersistence());
+    }
+    
+    private <A extends Comparable<A>> IndexedCollection<O> buildOnPrimaryKey(Class<O> clazz){
+        final SimpleAttribute<O,A> primaryKey = AttributeFields.getPrimaryKey(clazz);
+        
+        if(primaryKey == null)
+            throw new IllegalArgumentException(clazz.getName() + " must declare an attribute annotated with " 
+                    + PrimaryKey.class.getName() + " in order to be persisted by " + getClass().getName());
+        
+        final PersistenceOptions options = clazz.getAnnotation(PersistenceOptions.class);
+        
+        return new PersistentIndexedCollection<>(buildPersistence(primaryKey, options, toProperties(options)));
+    }
+    
+    private static Properties toProperties(PersistenceOptions options){
+        final Properties props = new Properties();
+        
+        if(options != null){
+            if(options.pageSize() > 0)
+                props.setProperty(PAGE_SIZE, String.valueOf(options.pageSize()));
+            if(options.sharedCache())
+                props.setProperty(SHARED_CACHE, String.valueOf(true));
+        }
+        
+        return props;
+    }
+    
+    /**
+     * 
+     * @param <A>
+     * @param primaryKey the primary key of the buffered type
+     * @param options the options declared by the buffered type, null if absent
+     * @param properties the storage properties derived from the options
+     * @return the {@link Persistence} backing the collection
+     */
+    protected abstract <A extends Comparable<A>> Persistence<O,A> buildPersistence(
+            SimpleAttribute<O,A> primaryKey,
+            PersistenceOptions options,
+            Properties properties);
+    
+    /**
+     * Releases the storage of a collection built by this provider
+     * @param persistence the {@link Persistence} returned by 
+     * {@link #buildPersistence(com.googlecode.cqengine.attribute.SimpleAttribute, org.bananarama.cache.annotation.PersistenceOptions, java.util.Properties)}
+     */
+    protected abstract void release(Persistence<O,?> persistence);
+    
+    private static class PersistentIndexedCollection<O> extends ConcurrentIndexedCollection<O>{
+        
+        private PersistentIndexedCollection(Persistence<O,?> persistence){
+            super(persistence);
+        }
+        
+        private Persistence<O,?> getPersistence(){
+            return persistence;
+        }
+    }
+}
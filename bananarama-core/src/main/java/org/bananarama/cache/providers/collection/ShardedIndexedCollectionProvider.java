@@ -0,0 +1,67 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.cache.providers.collection;
+
+import com.googlecode.cqengine.ConcurrentIndexedCollection;
+import com.googlecode.cqengine.IndexedCollection;
+import com.googlecode.cqengine.index.Index;
+import java.util.function.Supplier;
+import org.bananarama.cache.collection.ShardedIndexedCollection;
+
+/**
+ * Provides a {@link ShardedIndexedCollection}, useful when
+ * the buffer is subject to heavy concurrent writes. Extend this
+ * class in order to change the number of shards or the
+ * implementation of each shard.
+ */
+public class ShardedIndexedCollectionProvider<O> implements IndexedCollectionProvider<O>{
+
+    /**
+     *
+     * @return an instance of {@link ShardedIndexedCollection}
+     */
+    @Override
+    public IndexedCollection<O> buildCollection() {
+        return new ShardedIndexedCollection<>(shards(),this::buildShard);
+    }
+
+    /**
+     * Adds a distinct index instance on every shard
+     * @param collection
+     * @param indexFactory
+     */
+    @Override
+    public void addIndex(IndexedCollection<O> collection, Supplier<? extends Index<O>> indexFactory) {
+        ((ShardedIndexedCollection<O>)collection).addIndex(indexFactory);
+    }
+
+    /**
+     * @return the number of shards, by default
+     * the number of available processors
+     */
+    protected int shards(){
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return a new shard, by default an instance
+     * of {@link ConcurrentIndexedCollection}
+     */
+    protected IndexedCollection<O> buildShard(){
+        return new ConcurrentIndexedCollection<>();
+    }
+
+}
@@ -0,0 +1,63 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.concurrency;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors shared by the adapters of BananaRama
+ */
+public final class SharedExecutors {
+    
+    private static final String IO_THREAD_PREFIX = "bananarama-io-";
+    
+    private SharedExecutors(){
+        
+    }
+    
+    private static class IOHolder{
+        //Lazily created upon first use
+        private static final ExecutorService IO = Executors.newCachedThreadPool(new DaemonThreadFactory(IO_THREAD_PREFIX));
+    }
+    
+    /**
+     * @return the executor for blocking I/O tasks, such as
+     * calls to other adapters. Threads are created on demand,
+     * reused and never prevent the JVM from shutting down
+     */
+    public static ExecutorService io(){
+        return IOHolder.IO;
+    }
+    
+    private static class DaemonThreadFactory implements ThreadFactory{
+        private final AtomicInteger count = new AtomicInteger();
+        private final String prefix;
+        
+        private DaemonThreadFactory(String prefix){
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            final Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
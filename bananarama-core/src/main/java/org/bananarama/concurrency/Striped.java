@@ -0,0 +1,144 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.concurrency;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Fixed set of locks (stripes), each object is guarded
+ * by the stripe its hash code maps to. The number of stripes
+ * is always a power of two and hash codes are spread before
+ * being masked, so that weak hashes do not pile up on few stripes.
+ * @param <L> the type of the stripes
+ */
+public class Striped<L> {
+    
+    private static final int MAX_STRIPES = 1 << 16;
+    
+    private final Object stripes[];
+    private final int mask;
+    
+    protected Striped(int concurrencyLevel,Supplier<? extends L> supplier){
+        if(concurrencyLevel < 1)
+            throw new IllegalArgumentException("Concurrency level must be positive, got " + concurrencyLevel);
+        
+        final int size = ceilToPowerOfTwo(Math.min(concurrencyLevel, MAX_STRIPES));
+        
+        this.stripes = new Object[size];
+        this.mask = size - 1;
+        
+        for(int i=0;i<size;i++)
+            stripes[i] = supplier.get();
+    }
+    
+    /**
+     * @param concurrencyLevel minimum number of stripes
+     * @return stripes of {@link ReentrantLock}
+     */
+    public static Striped<Lock> lock(int concurrencyLevel){
+        return new Striped<>(concurrencyLevel, ReentrantLock::new);
+    }
+    
+    /**
+     * @param concurrencyLevel minimum number of stripes
+     * @return stripes of {@link ReentrantReadWriteLock}, readers
+     * of the same stripe do not block each other
+     */
+    public static Striped<ReadWriteLock> readWriteLock(int concurrencyLevel){
+        return new Striped<>(concurrencyLevel, ReentrantReadWriteLock::new);
+    }
+    
+    /**
+     * @param concurrencyLevel minimum number of stripes
+     * @return stripes of {@link StampedLock}, which allow
+     * optimistic reads. Beware that {@link StampedLock} is not reentrant
+     */
+    public static Striped<StampedLock> stampedLock(int concurrencyLevel){
+        return new Striped<>(concurrencyLevel, StampedLock::new);
+    }
+    
+    private static int ceilToPowerOfTwo(int n){
+        return n == 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+    
+    private static int spread(int h){
+        //Same bit smearing used by java.util.HashMap before Java 8,
+        //higher bits would otherwise be lost by masking
+        h ^= (h >>> 20) ^ (h >>> 12);
+        return h ^ (h >>> 7) ^ (h >>> 4);
+    }
+    
+    /**
+     * @param obj
+     * @return the index of the stripe which guards the given object
+     */
+    public int indexFor(Object obj){
+        return spread(obj.hashCode()) & mask;
+    }
+    
+    /**
+     * @param obj
+     * @return the stripe which guards the given object
+     */
+    @SuppressWarnings("unchecked")
+    public L get(Object obj){
+        return (L)stripes[indexFor(obj)];
+    }
+    
+    /**
+     * @param index
+     * @return the stripe at the given index
+     */
+    @SuppressWarnings("unchecked")
+    public L getAt(int index){
+        return (L)stripes[index];
+    }
+    
+    /**
+     * Returns the stripes guarding all the given objects, without
+     * duplicates and sorted by stripe index. Acquiring them
+     * in the returned order never leads to deadlocks among threads
+     * doing the same.
+     * @param objs
+     * @return the stripes for the given objects
+     */
+    public List<L> bulkGet(Iterable<?> objs){
+        final TreeMap<Integer,L> sorted = new TreeMap<>();
+        
+        for(Object obj : objs){
+            final int index = indexFor(obj);
+            sorted.putIfAbsent(index, getAt(index));
+        }
+        
+        return Collections.unmodifiableList(new ArrayList<>(sorted.values()));
+    }
+    
+    /**
+     * @return the number of stripes
+     */
+    public int size(){
+        return stripes.length;
+    }
+}
@@ -18,28 +18,18 @@ package org.bananarama.concurrency;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * 
+ * Stripes of exclusive {@link ReentrantLock}, see
+ * {@link Striped} for lock kinds which allow concurrent readers
  * @author Guglielmo De Concini
  */
-public class StripedLock{
-    
-    //Provides simple, somewhat
-    //fine-grained control
-    //on concurrent access to objects
-    private final ReentrantLock locks[];
-    private final int concurrencyLevel;
+public class StripedLock extends Striped<ReentrantLock>{
     
     public StripedLock(int concurrencyLevel) {
-        this.locks = new ReentrantLock[concurrencyLevel];
-        this.concurrencyLevel = concurrencyLevel;
-        
-        for(int i=0;i<concurrencyLevel;i++)
-            locks[i] = new ReentrantLock();
-        
+        super(concurrencyLevel, ReentrantLock::new);
     }
     
    public ReentrantLock getLock(Object obj){
-       return locks[obj.hashCode() % concurrencyLevel];
+       return get(obj);
    }
     
 }
@@ -15,6 +15,8 @@
  */
 package org.bananarama.crud;
 
+import org.bananarama.crud.util.ReplacingUpsertOperation;
+
 /**
  *
  * @author Guglielmo De Concini
@@ -29,4 +31,15 @@ public interface Adapter<S> {
     
     public <T extends S> DeleteOperation<T> delete(Class<T> clazz);
     
+    /**
+     * By default objects are deleted and created anew, adapters
+     * which support native upserts should override this method
+     * @param <T>
+     * @param clazz
+     * @return the {@link UpsertOperation} for the given type
+     */
+    default <T extends S> UpsertOperation<T> upsert(Class<T> clazz){
+        return new ReplacingUpsertOperation<>(this, clazz);
+    }
+    
 }
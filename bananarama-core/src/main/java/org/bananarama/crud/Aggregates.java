@@ -0,0 +1,71 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.crud;
+
+import com.googlecode.cqengine.attribute.Attribute;
+import static com.googlecode.cqengine.query.QueryFactory.noQueryOptions;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * In-memory implementation of the aggregates of {@link ReadOperation},
+ * used by adapters which cannot compute them on the underlying layer.
+ * Every value of multi-valued attributes is taken into account,
+ * null values are ignored.
+ */
+public final class Aggregates {
+    
+    private Aggregates(){}
+    
+    /**
+     * @param <T>
+     * @param <A>
+     * @param attr
+     * @param objs
+     * @return the non-null values of the attribute on the given objects
+     */
+    public static <T,A> Stream<A> values(Attribute<T,A> attr,Stream<T> objs){
+        return objs.flatMap(obj -> StreamSupport.stream(attr.getValues(obj, noQueryOptions()).spliterator(), false))
+                .filter(Objects::nonNull);
+    }
+    
+    public static <T,A extends Comparable<A>> Optional<A> min(Attribute<T,A> attr,Stream<T> objs){
+        return values(attr, objs).min(Comparator.naturalOrder());
+    }
+    
+    public static <T,A extends Comparable<A>> Optional<A> max(Attribute<T,A> attr,Stream<T> objs){
+        return values(attr, objs).max(Comparator.naturalOrder());
+    }
+    
+    public static <T> double sum(Attribute<T,? extends Number> attr,Stream<T> objs){
+        return values(attr, objs).mapToDouble(Number::doubleValue).sum();
+    }
+    
+    public static <T> OptionalDouble avg(Attribute<T,? extends Number> attr,Stream<T> objs){
+        return values(attr, objs).mapToDouble(Number::doubleValue).average();
+    }
+    
+    public static <T,A> Map<A,Long> countBy(Attribute<T,A> attr,Stream<T> objs){
+        return values(attr, objs).collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+    }
+}
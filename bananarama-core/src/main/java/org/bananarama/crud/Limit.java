@@ -0,0 +1,50 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.crud;
+
+import com.googlecode.cqengine.query.option.QueryOptions;
+
+/**
+ * Option which caps the number of objects returned by a read, 
+ * implemented by the options of the adapters supporting it.
+ * Adapters combining the reads of several adapters, such as
+ * {@link org.bananarama.crud.util.ShardingAdapter}, apply the limit
+ * again to the combined results.
+ */
+public interface Limit {
+    
+    /**
+     * @return the maximum number of objects to read, null if unlimited
+     */
+    Integer getLimit();
+    
+    /**
+     * @param options
+     * @return the limit carried by an option within the given
+     * options, null if there's none
+     */
+    static Integer from(QueryOptions options){
+        if(options == null)
+            return null;
+        
+        //Options are keyed by their own class, which isn't known here
+        for(Object option : options.getOptions().values())
+            if(option instanceof Limit && ((Limit)option).getLimit() != null)
+                return ((Limit)option).getLimit();
+        
+        return null;
+    }
+}
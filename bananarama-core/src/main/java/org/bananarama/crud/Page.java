@@ -0,0 +1,131 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.crud;
+
+import com.googlecode.cqengine.attribute.Attribute;
+import static com.googlecode.cqengine.query.QueryFactory.noQueryOptions;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A page of results read through keyset pagination. The token
+ * of the next page is the value of the ordering attribute on the
+ * last object of this page: passing it back to
+ * {@link ReadOperation#page(com.googlecode.cqengine.query.Query, com.googlecode.cqengine.attribute.Attribute, int, java.lang.Comparable)}
+ * resumes right after it, no matter how deep the page is.
+ * @param <T> the type of the objects
+ * @param <A> the type of the ordering attribute
+ */
+public final class Page<T,A extends Comparable<A>> {
+    
+    private final List<T> items;
+    private final A nextToken;
+    
+    private Page(List<T> items,A nextToken){
+        this.items = Collections.unmodifiableList(items);
+        this.nextToken = nextToken;
+    }
+    
+    /**
+     * Builds the page holding the given objects, which must be sorted
+     * by the ordering attribute. A page shorter than the requested
+     * size is the last one.
+     * @param <T>
+     * @param <A>
+     * @param items
+     * @param orderBy
+     * @param pageSize
+     * @return the page
+     */
+    public static <T,A extends Comparable<A>> Page<T,A> of(List<T> items,Attribute<T,A> orderBy,int pageSize){
+        if(items.size() < pageSize || items.isEmpty())
+            return new Page<>(items,null);
+        
+        return new Page<>(items,valueOf(orderBy, items.get(items.size() - 1)));
+    }
+    
+    /**
+     * Builds the page out of the given objects, in any order, keeping
+     * the first ones coming after the token in the order of the attribute
+     * @param <T>
+     * @param <A>
+     * @param objs
+     * @param orderBy
+     * @param pageSize
+     * @param after the token, null for the first page
+     * @return the page
+     */
+    public static <T,A extends Comparable<A>> Page<T,A> of(Stream<T> objs,Attribute<T,A> orderBy,int pageSize,A after){
+        final List<T> items = objs
+                .filter(obj -> after == null || valueOf(orderBy, obj).compareTo(after) > 0)
+                .sorted(Comparator.comparing(obj -> valueOf(orderBy, obj)))
+                .limit(pageSize)
+                .collect(Collectors.toList());
+        
+        return of(items, orderBy, pageSize);
+    }
+    
+    /**
+     * @param <T>
+     * @param <A>
+     * @param attr
+     * @param obj
+     * @return the first value of the attribute on the given object
+     */
+    static <T,A extends Comparable<A>> A valueOf(Attribute<T,A> attr,T obj){
+        Iterator<A> values = attr.getValues(obj, noQueryOptions()).iterator();
+        
+        if(!values.hasNext())
+            throw new IllegalArgumentException("Attribute " + attr.getAttributeName() + " has no value, it can't be used for paging");
+        
+        return values.next();
+    }
+    
+    /**
+     * @param pageSize
+     * @throws IllegalArgumentException if the size is not positive
+     */
+    public static void checkSize(int pageSize){
+        if(pageSize < 1)
+            throw new IllegalArgumentException("Page size must be positive, got " + pageSize);
+    }
+    
+    /**
+     * @return the objects of this page
+     */
+    public List<T> getItems() {
+        return items;
+    }
+    
+    /**
+     * @return the token of the next page or null
+     * if this is the last one
+     */
+    public A getNextToken() {
+        return nextToken;
+    }
+    
+    /**
+     * @return true if another page may follow
+     */
+    public boolean hasNext(){
+        return nextToken != null;
+    }
+}
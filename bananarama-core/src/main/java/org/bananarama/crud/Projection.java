@@ -0,0 +1,171 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.crud;
+
+import com.googlecode.cqengine.query.option.QueryOptions;
+import java.beans.Introspector;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Option which restricts a read to the given fields of the
+ * objects, pass it within the {@link QueryOptions} of the operation.
+ * Adapters which fetch data from a remote layer read only the
+ * projected fields, leaving the others to their default values,
+ * while adapters which hold whole objects in memory may ignore it.
+ * <p>
+ * A projection can also be described by an interface whose getters
+ * (<code>getName()</code>, <code>isActive()</code>) are named after the fields,
+ * see {@link ReadOperation#project(java.lang.Class, com.googlecode.cqengine.query.Query, com.googlecode.cqengine.query.option.QueryOptions)}.
+ */
+public final class Projection {
+    
+    private final Set<String> fields;
+    
+    private Projection(Set<String> fields){
+        if(fields.isEmpty())
+            throw new IllegalArgumentException("A projection needs at least one field");
+        
+        this.fields = Collections.unmodifiableSet(fields);
+    }
+    
+    /**
+     * @param fields the names of the fields to read
+     * @return the projection on the given fields
+     */
+    public static Projection of(String... fields){
+        return new Projection(new LinkedHashSet<>(Arrays.asList(fields)));
+    }
+    
+    /**
+     * @param view an interface
+     * @return the projection on the fields named after
+     * the getters of the given interface
+     */
+    public static Projection of(Class<?> view){
+        if(!view.isInterface())
+            throw new IllegalArgumentException(view.getName() + " is not an interface, it can't be used as a view");
+        
+        final Set<String> fields = new LinkedHashSet<>();
+        
+        for(Method method : view.getMethods())
+            fields.add(fieldOf(method));
+        
+        return new Projection(fields);
+    }
+    
+    /**
+     * @param options
+     * @return the {@link Projection} within the given options
+     * or null if there's none
+     */
+    public static Projection from(QueryOptions options){
+        return options == null ? null : options.get(Projection.class);
+    }
+    
+    /**
+     * @param options
+     * @return a copy of the given options holding this projection
+     */
+    public QueryOptions addTo(QueryOptions options){
+        final Map<Object,Object> copy = options == null ? new HashMap<>() : new HashMap<>(options.getOptions());
+        copy.put(Projection.class, this);
+        return new QueryOptions(copy);
+    }
+    
+    /**
+     * @return the names of the projected fields
+     */
+    public Set<String> getFields() {
+        return fields;
+    }
+    
+    /**
+     * @param field
+     * @return true if the given field is projected
+     */
+    public boolean includes(String field){
+        return fields.contains(field);
+    }
+    
+    /**
+     * Builds a function which wraps objects in a view implementing the
+     * given interface, each getter being delegated to the method 
+     * with the same name on the wrapped object
+     * @param <T>
+     * @param <P>
+     * @param view an interface
+     * @return the function
+     */
+    public static <T,P> Function<T,P> viewAs(Class<P> view){
+        final Map<Class<?>,Map<Method,Method>> delegates = new ConcurrentHashMap<>();
+        final ClassLoader loader = view.getClassLoader();
+        final Class<?>[] interfaces = {view};
+        
+        return obj -> {
+            final Map<Method,Method> targets = delegates.computeIfAbsent(obj.getClass(), clazz -> resolve(view, clazz));
+            
+            return view.cast(Proxy.newProxyInstance(loader, interfaces, (proxy,method,args) -> {
+                Method target = targets.get(method);
+                
+                //Methods of Object are not part of the view
+                return target != null ? target.invoke(obj, args) : method.invoke(obj, args);
+            }));
+        };
+    }
+    
+    private static Map<Method,Method> resolve(Class<?> view,Class<?> clazz){
+        final Map<Method,Method> targets = new HashMap<>();
+        
+        for(Method method : view.getMethods()){
+            try{
+                targets.put(method, clazz.getMethod(method.getName()));
+            }
+            catch(NoSuchMethodException ex){
+                throw new IllegalArgumentException(clazz.getName() + " does not implement " 
+                        + method.getName() + "() of view " + view.getName(), ex);
+            }
+        }
+        
+        return targets;
+    }
+    
+    private static String fieldOf(Method getter){
+        final String name = getter.getName();
+        
+        if(getter.getParameterCount() == 0){
+            if(name.startsWith("get") && name.length() > 3)
+                return Introspector.decapitalize(name.substring(3));
+            if(name.startsWith("is") && name.length() > 2)
+                return Introspector.decapitalize(name.substring(2));
+        }
+        
+        throw new IllegalArgumentException(getter.getDeclaringClass().getName() + "." + name + " is not a getter");
+    }
+    
+    @Override
+    public String toString() {
+        return "Projection" + fields;
+    }
+}
@@ -15,8 +15,14 @@
  */
 package org.bananarama.crud;
 
+import com.googlecode.cqengine.attribute.Attribute;
+import com.googlecode.cqengine.query.Query;
+import static com.googlecode.cqengine.query.QueryFactory.noQueryOptions;
 import com.googlecode.cqengine.query.option.QueryOptions;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.stream.Stream;
 import org.bananarama.io.DataCollector;
 
@@ -39,7 +45,10 @@ public interface ReadOperation<T> extends BasicOperation{
      * @return the {@link ReadOperation}
      */
     default ReadOperation<T> all(DataCollector<T> collector){
-        collector.collect(all());
+        //Streams may hold resources until closed
+        try(Stream<T> data = all()){
+            collector.collect(data);
+        }
         return this;
     }
     
@@ -59,7 +68,9 @@ public interface ReadOperation<T> extends BasicOperation{
      * @return the {@link ReadOperation}
      */
     default ReadOperation<T> all(DataCollector<T> collector, QueryOptions options){
-        collector.collect(all(options));
+        try(Stream<T> data = all(options)){
+            collector.collect(data);
+        }
         return this;
     }
     
@@ -80,7 +91,9 @@ public interface ReadOperation<T> extends BasicOperation{
      * @return the {@link ReadOperation}
      */
     default <Q> ReadOperation<T> where(DataCollector<T> collector, Q whereClause){
-        collector.collect(where(whereClause));
+        try(Stream<T> data = where(whereClause)){
+            collector.collect(data);
+        }
         return this;
     }
     
@@ -101,7 +114,9 @@ public interface ReadOperation<T> extends BasicOperation{
      * @return the {@link ReadOperation}
      */
     default <Q> ReadOperation<T> where(DataCollector<T> collector, Q whereClause, QueryOptions options){
-        collector.collect(where(whereClause,options));
+        try(Stream<T> data = where(whereClause,options)){
+            collector.collect(data);
+        }
         return this;
     }
     
@@ -120,7 +135,9 @@ public interface ReadOperation<T> extends BasicOperation{
      * @return the {@link ReadOperation}
      */
     default <Q> ReadOperation<T> fromKeys(DataCollector<T> collector, List<?> keys){
-        collector.collect(fromKeys(keys));
+        try(Stream<T> data = fromKeys(keys)){
+            collector.collect(data);
+        }
         return this;
     }
     
@@ -141,7 +158,161 @@ public interface ReadOperation<T> extends BasicOperation{
      * @return the {@link ReadOperation}
      */
     default <Q> ReadOperation<T> fromKeys(DataCollector<T> collector, List<?> keys,QueryOptions options){
-        collector.collect(fromKeys(keys));
+        try(Stream<T> data = fromKeys(keys,options)){
+            collector.collect(data);
+        }
         return this;
     }
+    
+    /**
+     * Reads the page of data that match the given query (or all data
+     * if the query is null) coming right after the given token, in ascending
+     * order of the given attribute. The attribute must uniquely identify
+     * each object, otherwise objects sharing its value across two pages
+     * would be skipped.
+     * @param <A> the type of the ordering attribute
+     * @param query the query, may be null
+     * @param orderBy the ordering attribute
+     * @param pageSize the maximum number of objects in the page
+     * @param after the token returned by {@link Page#getNextToken()}, null for the first page
+     * @return the {@link Page} of data
+     */
+    default <A extends Comparable<A>> Page<T,A> page(Query<T> query,Attribute<T,A> orderBy,int pageSize,A after){
+        return page(query, orderBy, pageSize, after, noQueryOptions());
+    }
+    
+    /**
+     * Same as {@link #page(com.googlecode.cqengine.query.Query, com.googlecode.cqengine.attribute.Attribute, int, java.lang.Comparable)}
+     * but passes the given options to the underlying layer. The default
+     * implementation reads all matching data and sorts it in memory,
+     * adapters able to seek on the ordering attribute should override it
+     * so that every page costs the same.
+     * @param <A>
+     * @param query
+     * @param orderBy
+     * @param pageSize
+     * @param after
+     * @param options
+     * @return the {@link Page} of data
+     */
+    default <A extends Comparable<A>> Page<T,A> page(Query<T> query,Attribute<T,A> orderBy,int pageSize,A after,QueryOptions options){
+        Page.checkSize(pageSize);
+        
+        try(Stream<T> data = query == null ? all(options) : where(query, options)){
+            return Page.of(data, orderBy, pageSize, after);
+        }
+    }
+    
+    /**
+     * Reads the data that match the given query (or all data if the
+     * query is null) as views implementing the given interface, reading
+     * only the fields named after its getters, see {@link Projection}
+     * @param <P> the type of the view
+     * @param view an interface
+     * @param query the query, may be null
+     * @param options
+     * @return the {@link Stream} of views
+     */
+    default <P> Stream<P> project(Class<P> view,Query<T> query,QueryOptions options){
+        final QueryOptions projected = Projection.of(view).addTo(options);
+        
+        return (query == null ? all(projected) : where(query, projected))
+                .map(Projection.<T,P>viewAs(view));
+    }
+    
+    /**
+     * Counts the data that match the given query, or all data if the query
+     * is null. Like the other aggregates, the default implementation reads
+     * the matching data and computes the result in memory, adapters should
+     * override it to compute it on the underlying layer.
+     * @param query the query, may be null
+     * @param options
+     * @return the number of matching objects
+     */
+    default long count(Query<T> query,QueryOptions options){
+        try(Stream<T> data = query == null ? all(options) : where(query, options)){
+            return data.count();
+        }
+    }
+    
+    /**
+     * @param query the query, may be null
+     * @param options
+     * @return true if any object matches the given query
+     */
+    default boolean exists(Query<T> query,QueryOptions options){
+        //Streams may hold resources until closed
+        try(Stream<T> data = query == null ? all(options) : where(query, options)){
+            return data.findAny().isPresent();
+        }
+    }
+    
+    /**
+     * @param <A>
+     * @param attr
+     * @param query the query, may be null
+     * @param options
+     * @return the lowest value of the attribute among the
+     * matching objects, empty if there are none
+     */
+    default <A extends Comparable<A>> Optional<A> min(Attribute<T,A> attr,Query<T> query,QueryOptions options){
+        try(Stream<T> data = query == null ? all(options) : where(query, options)){
+            return Aggregates.min(attr, data);
+        }
+    }
+    
+    /**
+     * @param <A>
+     * @param attr
+     * @param query the query, may be null
+     * @param options
+     * @return the highest value of the attribute among the
+     * matching objects, empty if there are none
+     */
+    default <A extends Comparable<A>> Optional<A> max(Attribute<T,A> attr,Query<T> query,QueryOptions options){
+        try(Stream<T> data = query == null ? all(options) : where(query, options)){
+            return Aggregates.max(attr, data);
+        }
+    }
+    
+    /**
+     * @param attr
+     * @param query the query, may be null
+     * @param options
+     * @return the sum of the values of the attribute among
+     * the matching objects, 0 if there are none
+     */
+    default double sum(Attribute<T,? extends Number> attr,Query<T> query,QueryOptions options){
+        try(Stream<T> data = query == null ? all(options) : where(query, options)){
+            return Aggregates.sum(attr, data);
+        }
+    }
+    
+    /**
+     * @param attr
+     * @param query the query, may be null
+     * @param options
+     * @return the average of the values of the attribute among
+     * the matching objects, empty if there are none
+     */
+    default OptionalDouble avg(Attribute<T,? extends Number> attr,Query<T> query,QueryOptions options){
+        try(Stream<T> data = query == null ? all(options) : where(query, options)){
+            return Aggregates.avg(attr, data);
+        }
+    }
+    
+    /**
+     * Groups the matching objects by the value of the
+     * given attribute, null values are left out
+     * @param <A>
+     * @param attr
+     * @param query the query, may be null
+     * @param options
+     * @return the number of matching objects for each value of the attribute
+     */
+    default <A> Map<A,Long> countBy(Attribute<T,A> attr,Query<T> query,QueryOptions options){
+        try(Stream<T> data = query == null ? all(options) : where(query, options)){
+            return Aggregates.countBy(attr, data);
+        }
+    }
 }
@@ -0,0 +1,30 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.crud;
+
+import com.googlecode.cqengine.query.option.QueryOptions;
+import java.util.stream.Stream;
+
+/**
+ * Creates the given objects or replaces the existing ones
+ * with the same identity, in a single operation
+ */
+public interface UpsertOperation<T> extends BasicOperation{
+    
+    public UpsertOperation<T> from(Stream<T> data);
+    
+    public UpsertOperation<T> from(Stream<T> data,QueryOptions options);
+}
@@ -0,0 +1,180 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.crud.magic;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bananarama.util.accessor.FieldAccessor;
+
+/**
+ * {@link ObjToDto} derived at runtime, which copies every
+ * field of the object into the field of the DTO with the same
+ * name and type, and vice versa. Each pair of fields is copied
+ * through a {@link MethodHandle} resolved once, which keeps the exact
+ * field type so that primitives are never boxed, and a single instance
+ * is shared for each pair of types.
+ * @param <O> the object type
+ * @param <D> the DTO type
+ */
+public final class AutoMapper<O,D> implements ObjToDto<O,D>{
+    
+    private static final Map<List<Class<?>>,AutoMapper<?,?>> MAPPERS = new ConcurrentHashMap<>();
+    private static final MethodType COPIER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+    
+    private final Class<O> objType;
+    private final Class<D> dtoType;
+    private final Copier toDto;
+    private final Copier toObj;
+    
+    private AutoMapper(Class<O> objType,Class<D> dtoType){
+        this.objType = objType;
+        this.dtoType = dtoType;
+        
+        final Map<String,Field> objFields = FieldAccessor.getAttributeFieldsRecursive(objType, AutoMapper::isMappable);
+        final Map<String,Field> dtoFields = FieldAccessor.getAttributeFieldsRecursive(dtoType, AutoMapper::isMappable);
+        final List<Field> from = new ArrayList<>();
+        final List<Field> to = new ArrayList<>();
+        
+        objFields.forEach((name,field) -> {
+            final Field dtoField = dtoFields.get(name);
+            
+            if(dtoField != null && dtoField.getType().equals(field.getType())){
+                from.add(field);
+                to.add(dtoField);
+            }
+        });
+        
+        if(from.isEmpty())
+            throw new IllegalArgumentException(objType.getName() + " and " + dtoType.getName() 
+                    + " have no fields with the same name and type");
+        
+        this.toDto = new Copier(dtoType, from, to);
+        this.toObj = new Copier(objType, to, from);
+    }
+    
+    /**
+     * @param <O>
+     * @param <D>
+     * @param objType
+     * @param dtoType
+     * @return the mapper for the given pair of types, built upon
+     * the first request
+     */
+    @SuppressWarnings("unchecked")
+    public static <O,D> AutoMapper<O,D> of(Class<O> objType,Class<D> dtoType){
+        return (AutoMapper<O,D>)MAPPERS.computeIfAbsent(Arrays.asList(objType,dtoType),
+                types -> new AutoMapper<>(objType, dtoType));
+    }
+    
+    private static boolean isMappable(Field field){
+        return !Modifier.isStatic(field.getModifiers()) && !field.isSynthetic();
+    }
+    
+    @Override
+    public D toDto(O obj) {
+        return toDto.copy(obj);
+    }
+
+    @Override
+    public O toObj(D dto) {
+        return toObj.copy(dto);
+    }
+
+    @Override
+    public Class<D> dtoType() {
+        return dtoType;
+    }
+
+    @Override
+    public Class<O> objType() {
+        return objType;
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+    
+    /**
+     * Instantiates the target type and copies fields into it
+     */
+    private static class Copier{
+        private final MethodHandle constructor;
+        private final MethodHandle copiers[];
+        
+        private Copier(Class<?> target,List<Field> from,List<Field> to){
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            
+            try{
+                final Constructor<?> ctor = target.getDeclaredConstructor();
+                ctor.setAccessible(true);
+                
+                constructor = lookup.unreflectConstructor(ctor).asType(CONSTRUCTOR_TYPE);
+                copiers = new MethodHandle[from.size()];
+                
+                for(int i=0;i<copiers.length;i++){
+                    from.get(i).setAccessible(true);
+                    to.get(i).setAccessible(true);
+                    //(target,value) -> void filtered into (target,source) -> void,
+                    //the value flows with its own type from the getter to the setter
+                    //and only the receivers are adapted to Object
+                    copiers[i] = MethodHandles.filterArguments(
+                            lookup.unreflectSetter(to.get(i)), 
+                            1, 
+                            lookup.unreflectGetter(from.get(i)))
+                            .asType(COPIER_TYPE);
+                }
+            }
+            catch(NoSuchMethodException ex){
+                throw new IllegalArgumentException(target.getName() + " must have a no-arg constructor", ex);
+            }
+            catch(IllegalAccessException | SecurityException ex){
+                throw new IllegalArgumentException("Can't access fields of " + target.getName(), ex);
+            }
+        }
+        
+        @SuppressWarnings("unchecked")
+        private <T> T copy(Object source){
+            if(source == null)
+                return null;
+            
+            try{
+                final Object target = (Object)constructor.invokeExact();
+                
+                for(MethodHandle copier : copiers)
+                    copier.invokeExact(target, source);
+                
+                return (T)target;
+            }
+            catch(RuntimeException | Error ex){
+                throw ex;
+            }
+            catch(Throwable ex){
+                throw new IllegalStateException("Can't map " + source.getClass().getName(), ex);
+            }
+        }
+    }
+}
@@ -15,6 +15,8 @@
  */
 package org.bananarama.crud.magic;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.bananarama.BananaRama;
 import org.bananarama.annotation.BananaRamaAdapter;
 import org.bananarama.crud.Adapter;
@@ -29,17 +31,40 @@ import org.bananarama.annotation.MapWith;
 public class MagicAdapter implements Adapter<Object>{
     
     private final BananaRama parent;
+    //Thread safe mappers, by mapped type
+    private static final Map<Class<?>,ObjToDto<?,?>> MAPPERS = new ConcurrentHashMap<>();
     
     public MagicAdapter(BananaRama parent){
         this.parent = parent;
     }
     
     private static <O,D> ObjToDto<O,D> getMapper(Class<O> clazz){
+        ObjToDto<O,D> mapper = (ObjToDto<O,D>)MAPPERS.get(clazz);
+        
+        if(mapper == null){
+            mapper = newMapper(clazz);
+            
+            if(mapper.isThreadSafe())
+                MAPPERS.putIfAbsent(clazz, mapper);
+        }
+        
+        return mapper;
+    }
+    
+    private static <O,D> ObjToDto<O,D> newMapper(Class<O> clazz){
         if(!clazz.isAnnotationPresent(MapWith.class))
             throw new IllegalArgumentException(clazz.getName() + " is not annotated with " + MapWith.class.getName());
         
         MapWith magic = clazz.getAnnotation(MapWith.class);
         
+        //No mapper given, derive it from the fields
+        if(magic.value() == ObjToDto.class){
+            if(magic.dto() == Void.class)
+                throw new IllegalArgumentException(clazz.getName() + " must declare either a mapper or a DTO type in " + MapWith.class.getName());
+            
+            return AutoMapper.of(clazz, (Class<D>)magic.dto());
+        }
+        
         try {
             return magic.value().newInstance();
         }
@@ -101,7 +126,21 @@ public class MagicAdapter implements Adapter<Object>{
         ObjToDto<O,D> mapper = getMapper(clazz);
         
         if(mapper != null)
-            return new MagicDeleteOperation(mapper,parent.delete(mapper.dtoType()));
+            return new MagicDeleteOperation(mapper,parent.delete(mapper.dtoType()),parent.read(mapper.dtoType()));
+        
+        throw new IllegalArgumentException(clazz.getName() + " must be annotated with " + MapWith.class);
+    }
+    
+    @Override
+    public <T> MagicUpsertOperation<T,?,?> upsert(Class<T> clazz) throws IllegalArgumentException {
+        return upsertInternal(clazz);
+    }
+    
+    private <O,D> MagicUpsertOperation<O,D,?> upsertInternal(Class<O> clazz){
+        ObjToDto<O,D> mapper = getMapper(clazz);
+        
+        if(mapper != null)
+            return new MagicUpsertOperation(mapper,parent.upsert(mapper.dtoType()));
         
         throw new IllegalArgumentException(clazz.getName() + " must be annotated with " + MapWith.class);
     }
@@ -35,14 +35,14 @@ public class MagicCreateOperation<O,D,M extends ObjToDto<O,D>> implements Create
     
     @Override
     public CreateOperation<O> from(Stream<O> data) {
-        Stream<D> dtos = data.map(mapper::toDto);
+        Stream<D> dtos = MagicMapping.map(data, mapper::toDtos, mapper, null);
         createDto.from(dtos);
         return this;
     }
 
     @Override
     public CreateOperation<O> from(Stream<O> data, QueryOptions options) {
-        Stream<D> dtos = data.map(mapper::toDto);
+        Stream<D> dtos = MagicMapping.map(data, mapper::toDtos, mapper, options);
         createDto.from(dtos,options);
         return this;
     }
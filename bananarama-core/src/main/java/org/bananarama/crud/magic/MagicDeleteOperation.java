@@ -15,9 +15,16 @@
  */
 package org.bananarama.crud.magic;
 
+import com.googlecode.cqengine.query.Query;
+import static com.googlecode.cqengine.query.QueryFactory.noQueryOptions;
 import com.googlecode.cqengine.query.option.QueryOptions;
 import java.io.IOException;
 import org.bananarama.crud.DeleteOperation;
+import org.bananarama.crud.ReadOperation;
+import org.bananarama.util.StreamUtils;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
@@ -27,36 +34,108 @@ import java.util.stream.Stream;
 public class MagicDeleteOperation<O,D,M extends ObjToDto<O,D>> implements DeleteOperation<O>{
     private final M mapper;
     private final DeleteOperation<D> deleteDto;
+    private final ReadOperation<D> readDto;
     
     public MagicDeleteOperation(M mapper,DeleteOperation<D> deleteDto){
+        this(mapper, deleteDto, null);
+    }
+    
+    /**
+     * @param mapper
+     * @param deleteDto
+     * @param readDto used to find the DTOs to be deleted
+     * when a query can't be translated, see {@link #where(java.lang.Object)}
+     */
+    public MagicDeleteOperation(M mapper,DeleteOperation<D> deleteDto,ReadOperation<D> readDto){
         this.mapper = mapper;
         this.deleteDto = deleteDto;
+        this.readDto = readDto;
     }
 
-    @Override
+    /**
+     * Queries on the object are translated to queries on the DTO
+     * when the mapper declares an attribute mapping. If that's not
+     * possible, matching DTOs are found in memory and then deleted.
+     * Any other where clause is passed to the underlying layer as it is.
+     * @param <Q>
+     * @param whereClaus
+     * @return 
+     */
+    @Override @SuppressWarnings("unchecked")
     public <Q> DeleteOperation<O> where(Q whereClaus) {
+        if(whereClaus instanceof Query && !mapper.attributeMapping().isEmpty()){
+            final Query<O> query = (Query<O>)whereClaus;
+            final Query<D> translated = QueryTranslator.translate(query, mapper);
+            
+            if(translated != null)
+                deleteDto.where(translated);
+            else
+                deleteDto.from(matching(query, null));
+            
+            return this;
+        }
+        
         deleteDto.where(whereClaus);
         return this;
     }
+    
+    private Stream<D> matching(Query<O> query,QueryOptions options){
+        if(readDto == null)
+            throw new IllegalStateException(query + " can't be translated for " + mapper.dtoType().getName() 
+                    + " and no read operation is available to filter it in memory");
+        
+        final QueryOptions matchOptions = options == null ? noQueryOptions() : options;
+        final Stream<D> dtos = options == null ? readDto.all() : readDto.all(options);
+        
+        //Matches are collected, the underlying layer
+        //can't be read and modified at the same time
+        return StreamUtils.chunked(dtos, MagicMapping.getOptions(options).getChunkSize())
+                .flatMap(chunk -> {
+                    final List<O> objs = mapper.toObjs(chunk);
+                    return IntStream.range(0, chunk.size())
+                            .filter(i -> query.matches(objs.get(i), matchOptions))
+                            .mapToObj(chunk::get);
+                })
+                .collect(Collectors.toList())
+                .stream();
+    }
 
     @Override
     public DeleteOperation<O> from(Stream<O> data) {
-        Stream<D> dtos = data
-                .map(mapper::toDto);
+        Stream<D> dtos = MagicMapping.map(data, mapper::toDtos, mapper, null);
         deleteDto.from(dtos);
         return this;
     }
 
-    @Override
+    /**
+     * Same as {@link #where(java.lang.Object)} but passes
+     * the given {@link QueryOptions} to the underlying layer
+     * @param <Q>
+     * @param whereClaus
+     * @param options
+     * @return 
+     */
+    @Override @SuppressWarnings("unchecked")
     public <Q> DeleteOperation<O> where(Q whereClaus, QueryOptions options) {
+        if(whereClaus instanceof Query && !mapper.attributeMapping().isEmpty()){
+            final Query<O> query = (Query<O>)whereClaus;
+            final Query<D> translated = QueryTranslator.translate(query, mapper);
+            
+            if(translated != null)
+                deleteDto.where(translated,options);
+            else
+                deleteDto.from(matching(query, options),options);
+            
+            return this;
+        }
+        
         deleteDto.where(whereClaus,options);
         return this;
     }
 
     @Override
     public DeleteOperation<O> from(Stream<O> data, QueryOptions options) {
-        Stream<D> dtos = data
-                .map(mapper::toDto);
+        Stream<D> dtos = MagicMapping.map(data, mapper::toDtos, mapper, options);
         deleteDto.from(dtos,options);
         return this;
     }
@@ -0,0 +1,131 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.crud.magic;
+
+import com.googlecode.cqengine.query.option.QueryOptions;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.bananarama.util.StreamUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies the conversions of the magic operations,
+ * according to the given {@link MagicOperationOptions}
+ */
+final class MagicMapping {
+    
+    private final static Logger log = LoggerFactory.getLogger(MagicMapping.class);
+    
+    private MagicMapping(){
+        
+    }
+    
+    static MagicOperationOptions getOptions(QueryOptions options){
+        final MagicOperationOptions magicOpts = options == null ? null : options.get(MagicOperationOptions.class);
+        return magicOpts == null ? MagicOperationOptions.SEQUENTIAL : magicOpts;
+    }
+    
+    /**
+     * Maps the source through the given batch function, in chunks
+     * of {@link MagicOperationOptions#getChunkSize()} elements
+     * @param source
+     * @param batch the batch conversion, one of {@link ObjToDto#toDtos(java.util.List)}
+     * or {@link ObjToDto#toObjs(java.util.List)}
+     * @param mapper
+     * @param options may be null
+     * @return the mapped stream
+     */
+    static <A,B> Stream<B> map(Stream<A> source,Function<List<A>,List<B>> batch,ObjToDto<?,?> mapper,QueryOptions options){
+        final MagicOperationOptions magicOpts = getOptions(options);
+        final Function<List<A>,List<B>> checkedBatch = chunk -> {
+            final List<B> mapped = batch.apply(chunk);
+            
+            if(mapped.size() != chunk.size())
+                throw new IllegalStateException(mapper.getClass().getName() + " mapped " 
+                        + chunk.size() + " elements into " + mapped.size());
+            
+            return mapped;
+        };
+        
+        if(magicOpts.isParallel()){
+            if(mapper.isThreadSafe())
+                return mapInParallel(source, checkedBatch, magicOpts);
+            
+            log.warn(mapper.getClass().getName() + " is not thread safe, mapping sequentially");
+        }
+        
+        return StreamUtils.chunked(source, magicOpts.getChunkSize())
+                .flatMap(chunk -> checkedBatch.apply(chunk).stream());
+    }
+    
+    private static <A,B> Stream<B> mapInParallel(Stream<A> source,Function<List<A>,List<B>> fun,MagicOperationOptions magicOpts){
+        final Iterator<List<A>> chunks = StreamUtils.chunked(source, magicOpts.getChunkSize()).iterator();
+        final ForkJoinPool pool = magicOpts.getPool();
+        //Bounds the chunks held in memory
+        final int window = Math.max(2, 2*pool.getParallelism());
+        final boolean ordered = magicOpts.isOrdered();
+        
+        final Iterator<List<B>> results = new Iterator<List<B>>() {
+            private final Deque<ForkJoinTask<List<B>>> inFlight = new ArrayDeque<>(window);
+            
+            @Override
+            public boolean hasNext() {
+                while(inFlight.size() < window && chunks.hasNext()){
+                    final List<A> chunk = chunks.next();
+                    inFlight.add(pool.submit(() -> fun.apply(chunk)));
+                }
+                
+                return !inFlight.isEmpty();
+            }
+
+            @Override
+            public List<B> next() {
+                if(!hasNext())
+                    throw new NoSuchElementException();
+                
+                return (ordered ? inFlight.poll() : pollCompleted()).join();
+            }
+            
+            private ForkJoinTask<List<B>> pollCompleted(){
+                for(Iterator<ForkJoinTask<List<B>>> it = inFlight.iterator();it.hasNext();){
+                    final ForkJoinTask<List<B>> task = it.next();
+                    
+                    if(task.isDone()){
+                        it.remove();
+                        return task;
+                    }
+                }
+                
+                return inFlight.poll();
+            }
+        };
+        
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results, ordered ? Spliterator.ORDERED : 0), false)
+                .flatMap(List::stream)
+                .onClose(source::close);
+    }
+}
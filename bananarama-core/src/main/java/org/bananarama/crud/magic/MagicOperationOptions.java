@@ -0,0 +1,81 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.crud.magic;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Options for the operations of the {@link MagicAdapter}, 
+ * to be passed through the {@link com.googlecode.cqengine.query.option.QueryOptions}.
+ * In parallel mode chunks of objects are mapped concurrently on 
+ * the given {@link ForkJoinPool}, which is worth only for 
+ * expensive conversions. Parallel mode requires a mapper
+ * declaring itself thread safe through {@link ObjToDto#isThreadSafe()}.
+ * The chunk size is also the size of the batches passed to
+ * {@link ObjToDto#toDtos(java.util.List)} and {@link ObjToDto#toObjs(java.util.List)},
+ * either in parallel or sequential mode.
+ */
+public class MagicOperationOptions {
+    
+    private final boolean parallel;
+    private final boolean ordered;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+    
+    private static final boolean DEFAULT_PARALLEL = false;
+    private static final boolean DEFAULT_ORDERED = true;
+    private static final int DEFAULT_CHUNKSIZE = 256;
+    
+    public MagicOperationOptions(boolean parallel,boolean ordered,int chunkSize,ForkJoinPool pool){
+        if(chunkSize < 1)
+            throw new IllegalArgumentException("Chunk size must be positive, got " + chunkSize);
+        
+        this.parallel = parallel;
+        this.ordered = ordered;
+        this.chunkSize = chunkSize;
+        this.pool = pool == null ? ForkJoinPool.commonPool() : pool;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+    
+    //Util methods
+    public static final MagicOperationOptions SEQUENTIAL = new MagicOperationOptions(DEFAULT_PARALLEL, DEFAULT_ORDERED, DEFAULT_CHUNKSIZE, null);
+    public static final MagicOperationOptions PARALLEL = new MagicOperationOptions(true, DEFAULT_ORDERED, DEFAULT_CHUNKSIZE, null);
+    public static final MagicOperationOptions PARALLEL_UNORDERED = new MagicOperationOptions(true, false, DEFAULT_CHUNKSIZE, null);
+    public static MagicOperationOptions chunkSize(int chunkSize){
+        return new MagicOperationOptions(DEFAULT_PARALLEL, DEFAULT_ORDERED, chunkSize, null);
+    }
+    public static MagicOperationOptions parallel(int chunkSize){
+        return new MagicOperationOptions(true, DEFAULT_ORDERED, chunkSize, null);
+    }
+    public static MagicOperationOptions parallel(int chunkSize,ForkJoinPool pool){
+        return new MagicOperationOptions(true, DEFAULT_ORDERED, chunkSize, pool);
+    }
+}
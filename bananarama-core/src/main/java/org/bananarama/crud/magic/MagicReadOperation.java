@@ -15,10 +15,18 @@
  */
 package org.bananarama.crud.magic;
 
+import com.googlecode.cqengine.attribute.Attribute;
+import com.googlecode.cqengine.query.Query;
+import static com.googlecode.cqengine.query.QueryFactory.noQueryOptions;
 import com.googlecode.cqengine.query.option.QueryOptions;
 import java.io.IOException;
+import org.bananarama.crud.Page;
 import org.bananarama.crud.ReadOperation;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -36,38 +44,191 @@ public class MagicReadOperation<O,D,M extends ObjToDto<O,D>> implements ReadOper
     
     @Override
     public Stream<O> all() {
-        return readDto.all()
-                .map(mapper::toObj);
+        return MagicMapping.map(readDto.all(), mapper::toObjs, mapper, null);
     }
 
     @Override
     public Stream<O> all(QueryOptions options) {
-      return readDto.all(options).
-              map(mapper::toObj);
+      return MagicMapping.map(readDto.all(options), mapper::toObjs, mapper, options);
     }
     
-    @Override
+    /**
+     * Queries on the object are translated to queries on the DTO
+     * when the mapper declares an attribute mapping, and objects
+     * are filtered in memory if that's not possible. 
+     * Any other where clause is passed to the underlying layer as it is.
+     * @param <Q>
+     * @param whereClause
+     * @return the matching objects
+     */
+    @Override @SuppressWarnings("unchecked")
     public <Q> Stream<O> where(Q whereClause) {
-        return readDto.where(whereClause)
-                .map(mapper::toObj);
+        if(whereClause instanceof Query && !mapper.attributeMapping().isEmpty()){
+            final Query<D> translated = QueryTranslator.translate((Query<O>)whereClause, mapper);
+            
+            if(translated == null)
+                return filter(all(), (Query<O>)whereClause, noQueryOptions());
+            
+            return MagicMapping.map(readDto.where(translated), mapper::toObjs, mapper, null);
+        }
+        
+        return MagicMapping.map(readDto.where(whereClause), mapper::toObjs, mapper, null);
     }
 
-    @Override
+    /**
+     * Same as {@link #where(java.lang.Object)} but passes
+     * the given {@link QueryOptions} to the underlying layer
+     * @param <Q>
+     * @param whereClause
+     * @param options
+     * @return the matching objects
+     */
+    @Override @SuppressWarnings("unchecked")
     public <Q> Stream<O> where(Q whereClause, QueryOptions options) {
-        return readDto.where(whereClause, options)
-                .map(mapper::toObj);
+        if(whereClause instanceof Query && !mapper.attributeMapping().isEmpty()){
+            final Query<D> translated = QueryTranslator.translate((Query<O>)whereClause, mapper);
+            
+            if(translated == null)
+                return filter(all(options), (Query<O>)whereClause, options);
+            
+            return MagicMapping.map(readDto.where(translated, options), mapper::toObjs, mapper, options);
+        }
+        
+        return MagicMapping.map(readDto.where(whereClause, options), mapper::toObjs, mapper, options);
+    }
+    
+    private static <O> Stream<O> filter(Stream<O> objs,Query<O> query,QueryOptions options){
+        return objs.filter(obj -> query.matches(obj, options));
     }
 
     @Override
     public Stream<O> fromKeys(List<?> keys) {
-        return readDto.fromKeys(keys)
-                .map(mapper::toObj);
+        return MagicMapping.map(readDto.fromKeys(keys), mapper::toObjs, mapper, null);
     }
 
     @Override
     public Stream<O> fromKeys(List<?> keys,QueryOptions options) {
-        return readDto.fromKeys(keys, options)
-                .map(mapper::toObj);
+        return MagicMapping.map(readDto.fromKeys(keys, options), mapper::toObjs, mapper, options);
+    }
+
+    /**
+     * @param query the query on the object, may be null
+     * @return the equivalent query on the DTO, null if the given 
+     * query is null or can't be translated
+     */
+    private Query<D> translate(Query<O> query){
+        if(query == null || mapper.attributeMapping().isEmpty())
+            return null;
+        
+        return QueryTranslator.translate(query, mapper);
+    }
+    
+    /**
+     * @param <A>
+     * @param attr the attribute of the object
+     * @return the equivalent attribute of the DTO, null if not mapped
+     */
+    @SuppressWarnings("unchecked")
+    private <A> Attribute<D,A> translate(Attribute<O,A> attr){
+        return (Attribute<D,A>)mapper.attributeMapping().get(attr);
+    }
+    
+    /**
+     * Read through the DTO layer when the query can be translated,
+     * by reading and mapping all objects otherwise
+     */
+    @Override
+    public <A extends Comparable<A>> Page<O, A> page(Query<O> query, Attribute<O, A> orderBy, int pageSize, A after, QueryOptions options) {
+        final Query<D> dtoQuery = translate(query);
+        final Attribute<D,A> dtoOrderBy = translate(orderBy);
+        
+        if((query != null && dtoQuery == null) || dtoOrderBy == null)
+            return ReadOperation.super.page(query, orderBy, pageSize, after, options);
+        
+        final Page<D,A> dtos = readDto.page(dtoQuery, dtoOrderBy, pageSize, after, options);
+        final List<O> objs = MagicMapping.map(dtos.getItems().stream(), mapper::toObjs, mapper, options)
+                .collect(Collectors.toList());
+        
+        return Page.of(objs, orderBy, pageSize);
+    }
+    
+    /**
+     * Like the other aggregates, computed by the DTO layer when the
+     * query can be translated, in memory otherwise
+     */
+    @Override
+    public long count(Query<O> query, QueryOptions options) {
+        final Query<D> dtoQuery = translate(query);
+        
+        if(query != null && dtoQuery == null)
+            return ReadOperation.super.count(query, options);
+        
+        return readDto.count(dtoQuery, options);
+    }
+
+    @Override
+    public boolean exists(Query<O> query, QueryOptions options) {
+        final Query<D> dtoQuery = translate(query);
+        
+        if(query != null && dtoQuery == null)
+            return ReadOperation.super.exists(query, options);
+        
+        return readDto.exists(dtoQuery, options);
+    }
+
+    @Override
+    public <A extends Comparable<A>> Optional<A> min(Attribute<O, A> attr, Query<O> query, QueryOptions options) {
+        final Query<D> dtoQuery = translate(query);
+        final Attribute<D,A> dtoAttr = translate(attr);
+        
+        if((query != null && dtoQuery == null) || dtoAttr == null)
+            return ReadOperation.super.min(attr, query, options);
+        
+        return readDto.min(dtoAttr, dtoQuery, options);
+    }
+
+    @Override
+    public <A extends Comparable<A>> Optional<A> max(Attribute<O, A> attr, Query<O> query, QueryOptions options) {
+        final Query<D> dtoQuery = translate(query);
+        final Attribute<D,A> dtoAttr = translate(attr);
+        
+        if((query != null && dtoQuery == null) || dtoAttr == null)
+            return ReadOperation.super.max(attr, query, options);
+        
+        return readDto.max(dtoAttr, dtoQuery, options);
+    }
+
+    @Override
+    public double sum(Attribute<O, ? extends Number> attr, Query<O> query, QueryOptions options) {
+        final Query<D> dtoQuery = translate(query);
+        final Attribute<D,? extends Number> dtoAttr = translate(attr);
+        
+        if((query != null && dtoQuery == null) || dtoAttr == null)
+            return ReadOperation.super.sum(attr, query, options);
+        
+        return readDto.sum(dtoAttr, dtoQuery, options);
+    }
+
+    @Override
+    public OptionalDouble avg(Attribute<O, ? extends Number> attr, Query<O> query, QueryOptions options) {
+        final Query<D> dtoQuery = translate(query);
+        final Attribute<D,? extends Number> dtoAttr = translate(attr);
+        
+        if((query != null && dtoQuery == null) || dtoAttr == null)
+            return ReadOperation.super.avg(attr, query, options);
+        
+        return readDto.avg(dtoAttr, dtoQuery, options);
+    }
+
+    @Override
+    public <A> Map<A, Long> countBy(Attribute<O, A> attr, Query<O> query, QueryOptions options) {
+        final Query<D> dtoQuery = translate(query);
+        final Attribute<D,A> dtoAttr = translate(attr);
+        
+        if((query != null && dtoQuery == null) || dtoAttr == null)
+            return ReadOperation.super.countBy(attr, query, options);
+        
+        return readDto.countBy(dtoAttr, dtoQuery, options);
     }
 
     @Override
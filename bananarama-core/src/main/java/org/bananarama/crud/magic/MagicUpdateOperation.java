@@ -36,14 +36,14 @@ public class MagicUpdateOperation<O,D,M extends ObjToDto<O,D>> implements Update
 
     @Override
     public UpdateOperation<O> from(Stream<O> data) {
-        Stream<D> dtos = data.map(mapper::toDto);
+        Stream<D> dtos = MagicMapping.map(data, mapper::toDtos, mapper, null);
         updateDto.from(dtos);
         return this;
     }
 
     @Override
     public UpdateOperation<O> from(Stream<O> data, QueryOptions options) {
-        Stream<D> dtos = data.map(mapper::toDto);
+        Stream<D> dtos = MagicMapping.map(data, mapper::toDtos, mapper, options);
         updateDto.from(dtos,options);
         return this;
     }
@@ -0,0 +1,56 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.crud.magic;
+
+import com.googlecode.cqengine.query.option.QueryOptions;
+import java.io.IOException;
+import org.bananarama.crud.UpsertOperation;
+import java.util.stream.Stream;
+
+/**
+ * Maps objects to DTOs and upserts them through
+ * the adapter of the DTO type
+ */
+public class MagicUpsertOperation<O,D,M extends ObjToDto<O,D>> implements UpsertOperation<O> {
+
+    private final M mapper;
+    private final UpsertOperation<D> upsertDto;
+    
+    public MagicUpsertOperation(M mapper,UpsertOperation<D> upsertDto) {
+        this.mapper = mapper;
+        this.upsertDto = upsertDto;
+    }
+
+    @Override
+    public UpsertOperation<O> from(Stream<O> data) {
+        Stream<D> dtos = MagicMapping.map(data, mapper::toDtos, mapper, null);
+        upsertDto.from(dtos);
+        return this;
+    }
+
+    @Override
+    public UpsertOperation<O> from(Stream<O> data, QueryOptions options) {
+        Stream<D> dtos = MagicMapping.map(data, mapper::toDtos, mapper, options);
+        upsertDto.from(dtos,options);
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        upsertDto.close();
+    }
+    
+}
@@ -15,6 +15,12 @@
  */
 package org.bananarama.crud.magic;
 
+import com.googlecode.cqengine.attribute.Attribute;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 /**
  *
  * @author Guglielmo De Concini
@@ -34,6 +40,37 @@ public interface ObjToDto<O,D> {
      */
     O toObj(D dto);
     
+    /**
+     * Maps a chunk of objects at once, override it 
+     * when the mapping needs I/O which can be batched.
+     * The magic operations map objects through this method, in
+     * chunks whose size is set by {@link MagicOperationOptions}
+     * @param objs The objects to transform in DTOs
+     * @return the DTOs, in the same order
+     */
+    default List<D> toDtos(List<O> objs){
+        final List<D> dtos = new ArrayList<>(objs.size());
+        
+        for(O obj : objs)
+            dtos.add(toDto(obj));
+        
+        return dtos;
+    }
+    
+    /**
+     * Same as {@link #toDtos(java.util.List)}, from DTOs to objects
+     * @param dtos The DTOs to transform in objects
+     * @return the objects, in the same order
+     */
+    default List<O> toObjs(List<D> dtos){
+        final List<O> objs = new ArrayList<>(dtos.size());
+        
+        for(D dto : dtos)
+            objs.add(toObj(dto));
+        
+        return objs;
+    }
+    
     /**
      * Returns the .class for the DTO
      * @return the DTO type
@@ -45,4 +82,26 @@ public interface ObjToDto<O,D> {
      * @return the Object type
      */
     Class<O> objType();
+    
+    /**
+     * Thread safe mappers are instantiated only once
+     * by the {@link MagicAdapter} and may be used to map
+     * objects in parallel, see {@link MagicOperationOptions}
+     * @return true if the mapper can be shared among threads
+     */
+    default boolean isThreadSafe(){
+        return false;
+    }
+    
+    /**
+     * Maps the attributes of the object to the equivalent
+     * attributes of the DTO, holding values of the same type.
+     * When not empty, queries on the object are translated into
+     * queries on the DTO and executed by the underlying layer,
+     * see {@link QueryTranslator}
+     * @return the attribute mapping, empty by default
+     */
+    default Map<Attribute<O,?>,Attribute<D,?>> attributeMapping(){
+        return Collections.emptyMap();
+    }
 }
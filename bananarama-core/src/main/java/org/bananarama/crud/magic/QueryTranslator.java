@@ -0,0 +1,158 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.crud.magic;
+
+import com.googlecode.cqengine.attribute.Attribute;
+import com.googlecode.cqengine.query.Query;
+import com.googlecode.cqengine.query.logical.And;
+import com.googlecode.cqengine.query.logical.Not;
+import com.googlecode.cqengine.query.logical.Or;
+import com.googlecode.cqengine.query.simple.All;
+import com.googlecode.cqengine.query.simple.Between;
+import com.googlecode.cqengine.query.simple.Equal;
+import com.googlecode.cqengine.query.simple.GreaterThan;
+import com.googlecode.cqengine.query.simple.Has;
+import com.googlecode.cqengine.query.simple.In;
+import com.googlecode.cqengine.query.simple.LessThan;
+import com.googlecode.cqengine.query.simple.None;
+import com.googlecode.cqengine.query.simple.SimpleQuery;
+import com.googlecode.cqengine.query.simple.StringContains;
+import com.googlecode.cqengine.query.simple.StringEndsWith;
+import com.googlecode.cqengine.query.simple.StringStartsWith;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites CQEngine queries built on the attributes
+ * of an object into equivalent queries on the attributes 
+ * of its DTO, following {@link ObjToDto#attributeMapping()}
+ */
+@SuppressWarnings({"unchecked","rawtypes"})
+public final class QueryTranslator {
+    
+    private QueryTranslator(){
+        
+    }
+    
+    /**
+     * 
+     * @param <O>
+     * @param <D>
+     * @param query the query on the object
+     * @param mapper 
+     * @return the equivalent query on the DTO, or null if the query
+     * contains unmapped attributes or unsupported query types
+     */
+    public static <O,D> Query<D> translate(Query<O> query,ObjToDto<O,D> mapper){
+        return translate(query, mapper.attributeMapping(), mapper.dtoType());
+    }
+    
+    private static <O,D> Query<D> translate(Query<O> query,Map<Attribute<O,?>,Attribute<D,?>> mapping,Class<D> dtoType){
+        
+        if(query instanceof And){
+            final List<Query<D>> children = translateAll(((And<O>)query).getChildQueries(), mapping, dtoType);
+            return children == null ? null : new And<>(children);
+        }
+        
+        if(query instanceof Or){
+            final List<Query<D>> children = translateAll(((Or<O>)query).getChildQueries(), mapping, dtoType);
+            return children == null ? null : new Or<>(children);
+        }
+        
+        if(query instanceof Not){
+            final Query<D> negated = translate(((Not<O>)query).getNegatedQuery(), mapping, dtoType);
+            return negated == null ? null : new Not<>(negated);
+        }
+        
+        if(query instanceof All)
+            return new All<>(dtoType);
+        
+        if(query instanceof None)
+            return new None<>(dtoType);
+        
+        if(!(query instanceof SimpleQuery))
+            return null;
+        
+        final Attribute attr = translateAttribute(((SimpleQuery<O,?>)query).getAttribute(), mapping);
+        
+        if(attr == null)
+            return null;
+        
+        if(query instanceof Equal)
+            return new Equal(attr, ((Equal)query).getValue());
+        
+        if(query instanceof LessThan){
+            final LessThan lt = (LessThan)query;
+            return new LessThan(attr, lt.getValue(), lt.isValueInclusive());
+        }
+        
+        if(query instanceof GreaterThan){
+            final GreaterThan gt = (GreaterThan)query;
+            return new GreaterThan(attr, gt.getValue(), gt.isValueInclusive());
+        }
+        
+        if(query instanceof Between){
+            final Between btw = (Between)query;
+            return new Between(attr, btw.getLowerValue(), btw.isLowerInclusive(), btw.getUpperValue(), btw.isUpperInclusive());
+        }
+        
+        if(query instanceof In){
+            final In in = (In)query;
+            return new In(attr, in.isDisjoint(), in.getValues());
+        }
+        
+        if(query instanceof Has)
+            return new Has(attr);
+        
+        if(query instanceof StringStartsWith)
+            return new StringStartsWith(attr, ((StringStartsWith)query).getValue());
+        
+        if(query instanceof StringEndsWith)
+            return new StringEndsWith(attr, ((StringEndsWith)query).getValue());
+        
+        if(query instanceof StringContains)
+            return new StringContains(attr, ((StringContains)query).getValue());
+        
+        return null;
+    }
+    
+    private static <O,D> List<Query<D>> translateAll(Collection<Query<O>> queries,Map<Attribute<O,?>,Attribute<D,?>> mapping,Class<D> dtoType){
+        final List<Query<D>> translated = new ArrayList<>(queries.size());
+        
+        for(Query<O> query : queries){
+            final Query<D> child = translate(query, mapping, dtoType);
+            
+            if(child == null)
+                return null;
+            
+            translated.add(child);
+        }
+        
+        return translated;
+    }
+    
+    private static <O,D> Attribute<D,?> translateAttribute(Attribute<O,?> attr,Map<Attribute<O,?>,Attribute<D,?>> mapping){
+        final Attribute<D,?> translated = mapping.get(attr);
+        
+        //Values are passed as they are, types must match
+        if(translated == null || !translated.getAttributeType().equals(attr.getAttributeType()))
+            return null;
+        
+        return translated;
+    }
+}
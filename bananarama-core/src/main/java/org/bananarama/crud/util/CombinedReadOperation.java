@@ -0,0 +1,180 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.crud.util;
+
+import com.googlecode.cqengine.attribute.Attribute;
+import com.googlecode.cqengine.attribute.SimpleAttribute;
+import com.googlecode.cqengine.attribute.SimpleNullableAttribute;
+import com.googlecode.cqengine.query.Query;
+import static com.googlecode.cqengine.query.QueryFactory.and;
+import static com.googlecode.cqengine.query.QueryFactory.has;
+import com.googlecode.cqengine.query.option.OrderByOption;
+import com.googlecode.cqengine.query.option.QueryOptions;
+import com.googlecode.cqengine.resultset.order.AttributeOrdersComparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.bananarama.crud.Limit;
+import org.bananarama.crud.ReadOperation;
+
+/**
+ * A read operation whose data is the concatenation of the data of several 
+ * read operations, the parts. Aggregates are computed by each part and
+ * their results combined, instead of reading the data.
+ * @param <T>
+ */
+abstract class CombinedReadOperation<T> implements ReadOperation<T>{
+    
+    /**
+     * Performs the read on each part
+     * @param <R>
+     * @param read
+     * @return the result of each part, or null if the data 
+     * is not the concatenation of the parts, in which case
+     * aggregates are computed by reading the data
+     */
+    protected abstract <R> List<R> gather(Function<ReadOperation<T>,R> read);
+    
+    /**
+     * Each part orders and limits its own data, which doesn't order or
+     * limit the combined data: objects are sorted again according to 
+     * the {@link OrderByOption} and the {@link Limit} is applied again
+     * @param combined the data read from the parts
+     * @param options the options of the read performed on each part
+     * @return the combined data, ordered and limited as requested
+     */
+    @SuppressWarnings("unchecked")
+    protected Stream<T> ordered(Stream<T> combined,QueryOptions options){
+        final OrderByOption<T> orderBy = options == null ? null : options.get(OrderByOption.class);
+        final Integer limit = Limit.from(options);
+        Stream<T> data = combined;
+        
+        if(orderBy != null){
+            final List<T> objs;
+            
+            try(Stream<T> stream = combined){
+                objs = stream.collect(Collectors.toList());
+            }
+            
+            //Parts come sorted, the sort just merges their runs
+            objs.sort(new AttributeOrdersComparator<>(orderBy.getAttributeOrders(), options));
+            data = objs.stream();
+        }
+        
+        return limit == null ? data : data.limit(limit);
+    }
+    
+    @Override
+    public long count(Query<T> query, QueryOptions options) {
+        final List<Long> counts = gather(read -> read.count(query, options));
+        
+        if(counts == null)
+            return ReadOperation.super.count(query, options);
+        
+        return counts.stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public boolean exists(Query<T> query, QueryOptions options) {
+        final List<Boolean> found = gather(read -> read.exists(query, options));
+        
+        if(found == null)
+            return ReadOperation.super.exists(query, options);
+        
+        return found.contains(Boolean.TRUE);
+    }
+
+    @Override
+    public <A extends Comparable<A>> Optional<A> min(Attribute<T, A> attr, Query<T> query, QueryOptions options) {
+        final List<Optional<A>> mins = gather(read -> read.min(attr, query, options));
+        
+        if(mins == null)
+            return ReadOperation.super.min(attr, query, options);
+        
+        return mins.stream()
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .min(Comparable::compareTo);
+    }
+
+    @Override
+    public <A extends Comparable<A>> Optional<A> max(Attribute<T, A> attr, Query<T> query, QueryOptions options) {
+        final List<Optional<A>> maxs = gather(read -> read.max(attr, query, options));
+        
+        if(maxs == null)
+            return ReadOperation.super.max(attr, query, options);
+        
+        return maxs.stream()
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .max(Comparable::compareTo);
+    }
+
+    @Override
+    public double sum(Attribute<T, ? extends Number> attr, Query<T> query, QueryOptions options) {
+        final List<Double> sums = gather(read -> read.sum(attr, query, options));
+        
+        if(sums == null)
+            return ReadOperation.super.sum(attr, query, options);
+        
+        return sums.stream().mapToDouble(Double::doubleValue).sum();
+    }
+
+    /**
+     * Averages are combined from the sums of the parts and the counts of their
+     * objects holding a value, which requires each object to hold at most one
+     * value, i.e. a {@link SimpleAttribute} or a {@link SimpleNullableAttribute}
+     */
+    @Override
+    public OptionalDouble avg(Attribute<T, ? extends Number> attr, Query<T> query, QueryOptions options) {
+        //Null values are left out of sums, so must they be out of counts
+        final Query<T> valued = query == null ? has(attr) : and(query, has(attr));
+        final List<double[]> sumsAndCounts = attr instanceof SimpleAttribute || attr instanceof SimpleNullableAttribute
+                ? gather(read -> new double[]{read.sum(attr, query, options), read.count(valued, options)})
+                : null;
+        
+        if(sumsAndCounts == null)
+            return ReadOperation.super.avg(attr, query, options);
+        
+        double sum = 0, count = 0;
+        
+        for(double[] part : sumsAndCounts){
+            sum += part[0];
+            count += part[1];
+        }
+        
+        return count == 0 ? OptionalDouble.empty() : OptionalDouble.of(sum / count);
+    }
+
+    @Override
+    public <A> Map<A, Long> countBy(Attribute<T, A> attr, Query<T> query, QueryOptions options) {
+        final List<Map<A,Long>> counts = gather(read -> read.countBy(attr, query, options));
+        
+        if(counts == null)
+            return ReadOperation.super.countBy(attr, query, options);
+        
+        final Map<A,Long> merged = new HashMap<>();
+        
+        counts.forEach(part -> part.forEach((value,count) -> merged.merge(value, count, Long::sum)));
+        
+        return merged;
+    }
+}
@@ -0,0 +1,43 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.crud.util;
+
+/**
+ * How the results read from the adapters
+ * of a {@link WeldingAdapter} are merged
+ */
+public enum MergePolicy {
+    /**
+     * All results are returned, in the order of the adapters
+     */
+    CONCATENATE,
+    /**
+     * Only one object per key is returned, 
+     * the one from the adapter which answered first
+     */
+    DEDUPE,
+    /**
+     * Only one object per key is returned, the
+     * one from the adapter which comes first in the 
+     * order given to the {@link WeldingAdapter}
+     */
+    FIRST_WINS,
+    /**
+     * Only one object per key is returned, the one with the 
+     * highest version, see {@link WeldingAdapter#versionOf(java.lang.Object)}
+     */
+    NEWEST_WINS
+}
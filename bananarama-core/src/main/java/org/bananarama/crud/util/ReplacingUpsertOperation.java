@@ -0,0 +1,66 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.crud.util;
+
+import com.googlecode.cqengine.query.option.QueryOptions;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.bananarama.crud.Adapter;
+import org.bananarama.crud.UpsertOperation;
+
+/**
+ * Generic {@link UpsertOperation}, which deletes the given
+ * objects and creates them anew through the delete and create 
+ * operations of an adapter. It is not atomic, adapters 
+ * supporting native upserts should provide their own operation.
+ */
+public class ReplacingUpsertOperation<S,T extends S> implements UpsertOperation<T>{
+    
+    private final Adapter<S> adapter;
+    private final Class<T> clazz;
+    
+    public ReplacingUpsertOperation(Adapter<S> adapter,Class<T> clazz){
+        this.adapter = adapter;
+        this.clazz = clazz;
+    }
+
+    @Override
+    public UpsertOperation<T> from(Stream<T> data) {
+        final List<T> buf = data.collect(Collectors.toList());
+        
+        adapter.delete(clazz).from(buf.stream());
+        adapter.create(clazz).from(buf.stream());
+        
+        return this;
+    }
+
+    @Override
+    public UpsertOperation<T> from(Stream<T> data, QueryOptions options) {
+        final List<T> buf = data.collect(Collectors.toList());
+        
+        adapter.delete(clazz).from(buf.stream(),options);
+        adapter.create(clazz).from(buf.stream(),options);
+        
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        //Each write is completed upon each call
+    }
+}
@@ -0,0 +1,273 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.crud.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.bananarama.crud.Adapter;
+import org.bananarama.exception.FailedOperationException;
+
+/**
+ * {@link WeldingAdapter} for replicated stores: writes go to all
+ * adapters, while each read is routed to a single adapter, the one with 
+ * the lowest latency, tracked as an exponentially weighted moving average.
+ * If the chosen adapter doesn't answer within the {@link #hedgeQuantile()}
+ * of its latencies, the read is hedged on the next fastest adapter and the
+ * first answer wins. Failing adapters are tried in turn, and adapters
+ * failing {@link #maxFailures()} times in a row are ejected for 
+ * {@link #ejectionTime()} milliseconds, during which they are used
+ * only as a last resort.
+ */
+public abstract class RoutingWeldingAdapter<S> extends WeldingAdapter<S>{
+    
+    private static final int LATENCY_SAMPLES = 128;
+    
+    private final List<BackendStats> stats;
+    
+    @SafeVarargs
+    public RoutingWeldingAdapter(Adapter<S>... adapters){
+        super(adapters);
+        this.stats = IntStream.range(0, adapters.length)
+                .mapToObj(i -> new BackendStats())
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * @return the weight of the latest latency in the moving average
+     */
+    protected double ewmaWeight(){
+        return 0.2;
+    }
+    
+    /**
+     * @return the quantile of the latencies of an adapter after
+     * which a read on it is hedged
+     */
+    protected double hedgeQuantile(){
+        return 0.95;
+    }
+    
+    /**
+     * @return the minimum delay before hedging a read, in milliseconds
+     */
+    protected long minHedgeDelay(){
+        return 5;
+    }
+    
+    /**
+     * @return the consecutive failures after which an adapter is ejected
+     */
+    protected int maxFailures(){
+        return 3;
+    }
+    
+    /**
+     * @return how long an adapter is ejected for, in milliseconds
+     */
+    protected long ejectionTime(){
+        return 30000;
+    }
+    
+    /**
+     * @param adapter
+     * @return the average latency of the given adapter, in nanoseconds,
+     * zero if it has not been used yet
+     */
+    public double getAverageLatency(Adapter<S> adapter){
+        return statsOf(adapter).getAverage();
+    }
+    
+    /**
+     * @param adapter
+     * @return true if the given adapter is currently ejected
+     */
+    public boolean isEjected(Adapter<S> adapter){
+        return statsOf(adapter).isEjected(System.nanoTime());
+    }
+    
+    private BackendStats statsOf(Adapter<S> adapter){
+        final int index = getAdapters().indexOf(adapter);
+        
+        if(index < 0)
+            throw new IllegalArgumentException(adapter + " is not welded by " + getClass().getName());
+        
+        return stats.get(index);
+    }
+    
+    /**
+     * @return the indexes of the adapters, fastest healthy ones first
+     */
+    private List<Integer> rank(){
+        final long now = System.nanoTime();
+        
+        return IntStream.range(0, stats.size())
+                .boxed()
+                .sorted(Comparator.<Integer,Boolean>comparing(i -> stats.get(i).isEjected(now))
+                        .thenComparingDouble(i -> stats.get(i).getAverage()))
+                .collect(Collectors.toList());
+    }
+    
+    @Override
+    protected <T extends S> Stream<T> readFrom(Function<Adapter<S>, Stream<T>> read) {
+        final List<Integer> ranking = rank();
+        final CompletionService<List<T>> completion = new ExecutorCompletionService<>(executor());
+        final List<Future<List<T>>> launched = new ArrayList<>(ranking.size());
+        final long timeout = readTimeout();
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        FailedOperationException failure = null;
+        int pending = 0;
+        
+        try{
+            launched.add(completion.submit(() -> attempt(ranking.get(0), read)));
+            pending++;
+            
+            while(pending > 0){
+                final boolean canHedge = launched.size() < ranking.size();
+                long wait = canHedge ? hedgeDelay(ranking.get(launched.size() - 1)) : Long.MAX_VALUE;
+                
+                if(timeout > 0)
+                    wait = Math.min(wait, deadline - System.nanoTime());
+                
+                final Future<List<T>> done = wait == Long.MAX_VALUE 
+                        ? completion.take() 
+                        : completion.poll(Math.max(0, wait), TimeUnit.NANOSECONDS);
+                
+                if(done == null){
+                    if(timeout > 0 && System.nanoTime() - deadline >= 0)
+                        throw new FailedOperationException("No adapter answered within " + timeout + " ms");
+                    
+                    //Slow answer, hedge on the next fastest adapter
+                    final int next = ranking.get(launched.size());
+                    launched.add(completion.submit(() -> attempt(next, read)));
+                    pending++;
+                    continue;
+                }
+                
+                pending--;
+                
+                try{
+                    return done.get().stream();
+                }
+                catch(ExecutionException ex){
+                    if(failure == null)
+                        failure = new FailedOperationException("Reading from all adapters failed", ex.getCause());
+                    else
+                        failure.addSuppressed(ex.getCause());
+                    
+                    //Failed answer, try the next adapter right away
+                    if(launched.size() < ranking.size()){
+                        final int next = ranking.get(launched.size());
+                        launched.add(completion.submit(() -> attempt(next, read)));
+                        pending++;
+                    }
+                }
+            }
+        }
+        catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new FailedOperationException(ex);
+        }
+        finally{
+            //Losers are not needed anymore
+            launched.forEach(future -> future.cancel(true));
+        }
+        
+        throw failure;
+    }
+    
+    private long hedgeDelay(int index){
+        return Math.max(TimeUnit.MILLISECONDS.toNanos(minHedgeDelay()), 
+                stats.get(index).getQuantile(hedgeQuantile()));
+    }
+    
+    private <T extends S> List<T> attempt(int index,Function<Adapter<S>, Stream<T>> read){
+        final BackendStats backend = stats.get(index);
+        final long start = System.nanoTime();
+        
+        try(Stream<T> stream = read.apply(getAdapters().get(index))){
+            final List<T> objs = stream.collect(Collectors.toList());
+            backend.success(System.nanoTime() - start, ewmaWeight());
+            return objs;
+        }
+        catch(RuntimeException ex){
+            //Cancelled hedges are not the adapter's fault
+            if(!Thread.currentThread().isInterrupted())
+                backend.failure(maxFailures(), TimeUnit.MILLISECONDS.toNanos(ejectionTime()));
+            throw ex;
+        }
+    }
+    
+    /**
+     * Latencies and failures of a single adapter
+     */
+    private static class BackendStats{
+        private final long samples[] = new long[LATENCY_SAMPLES];
+        private int sampleCount;
+        private int nextSample;
+        private double average;
+        private int failures;
+        private long ejectedUntil;
+        private boolean ejected;
+        
+        private synchronized void success(long latency,double weight){
+            average = sampleCount == 0 ? latency : weight*latency + (1 - weight)*average;
+            samples[nextSample] = latency;
+            nextSample = (nextSample + 1) % samples.length;
+            sampleCount = Math.min(sampleCount + 1, samples.length);
+            failures = 0;
+            ejected = false;
+        }
+        
+        private synchronized void failure(int maxFailures,long ejectionTime){
+            if(++failures >= maxFailures){
+                ejected = true;
+                ejectedUntil = System.nanoTime() + ejectionTime;
+                failures = 0;
+                //Probed again first once back
+                average = 0;
+                sampleCount = 0;
+            }
+        }
+        
+        private synchronized boolean isEjected(long now){
+            return ejected && ejectedUntil - now > 0;
+        }
+        
+        private synchronized double getAverage(){
+            return average;
+        }
+        
+        private synchronized long getQuantile(double quantile){
+            if(sampleCount == 0)
+                return 0;
+            
+            final long sorted[] = Arrays.copyOf(samples, sampleCount);
+            Arrays.sort(sorted);
+            return sorted[(int)Math.min(sorted.length - 1, Math.ceil(quantile*sorted.length) - 1)];
+        }
+    }
+}
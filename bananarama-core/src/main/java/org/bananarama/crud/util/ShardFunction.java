@@ -0,0 +1,79 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.crud.util;
+
+import java.util.Arrays;
+
+/**
+ * Maps the key of an object to the shard which stores it
+ */
+@FunctionalInterface
+public interface ShardFunction {
+    
+    /**
+     * @param key the sharding key, never null
+     * @param shards the number of shards
+     * @return the index of the shard, between 0 (inclusive) 
+     * and shards (exclusive)
+     */
+    int shardFor(Object key,int shards);
+    
+    //Util methods
+    
+    /**
+     * @return a {@link ShardFunction} which spreads keys by their hash code
+     */
+    static ShardFunction hash(){
+        return (key,shards) -> {
+            int h = key.hashCode();
+            //Spread higher bits, weak hashes would
+            //otherwise end up in few shards
+            h ^= (h >>> 16);
+            return Math.floorMod(h, shards);
+        };
+    }
+    
+    /**
+     * Builds a {@link ShardFunction} on sorted ranges of keys: keys lower 
+     * than the first boundary go to the first shard, keys between the first
+     * (inclusive) and the second boundary (exclusive) to the second one and
+     * so on. As such, n shards require n-1 boundaries.
+     * @param <K>
+     * @param boundaries the lower bounds of all shards but the first one, in
+     * ascending order
+     * @return the {@link ShardFunction}
+     */
+    @SafeVarargs
+    static <K extends Comparable<? super K>> ShardFunction range(K... boundaries){
+        if(boundaries == null || boundaries.length == 0)
+            throw new IllegalArgumentException("At least one boundary is required");
+        
+        for(int i=1;i<boundaries.length;i++)
+            if(boundaries[i-1].compareTo(boundaries[i]) >= 0)
+                throw new IllegalArgumentException("Boundaries must be in strictly ascending order");
+        
+        final Object[] bounds = Arrays.copyOf(boundaries, boundaries.length, Object[].class);
+        
+        return (key,shards) -> {
+            if(shards != bounds.length + 1)
+                throw new IllegalArgumentException(bounds.length + " boundaries can't split " + shards + " shards");
+            
+            final int pos = Arrays.binarySearch(bounds, key);
+            //Keys equal to a boundary belong to the upper shard
+            return pos >= 0 ? pos + 1 : -(pos + 1);
+        };
+    }
+}
@@ -0,0 +1,440 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.crud.util;
+
+import com.googlecode.cqengine.attribute.Attribute;
+import com.googlecode.cqengine.query.Query;
+import com.googlecode.cqengine.query.option.QueryOptions;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.bananarama.concurrency.SharedExecutors;
+import org.bananarama.crud.Adapter;
+import org.bananarama.crud.CreateOperation;
+import org.bananarama.crud.DeleteOperation;
+import org.bananarama.crud.Page;
+import org.bananarama.crud.ReadOperation;
+import org.bananarama.crud.UpdateOperation;
+import org.bananarama.crud.UpsertOperation;
+import org.bananarama.exception.FailedOperationException;
+
+/**
+ * Partitions objects across several adapters, the shards. Writes 
+ * and reads by key are routed to the shard owning the key through
+ * {@link #shardFunction()}, while other reads and deletions are broadcast
+ * to all shards concurrently and their results concatenated, then sorted
+ * and limited again when the read requests an ordering or a limit. Aggregates
+ * are computed by each shard and their results combined.
+ * Subclasses define the sharding key with {@link #keyOf(java.lang.Object)}
+ * and configure the behaviour by overriding the other protected methods.
+ * <p>
+ * Routing always goes through {@link #shardFor(java.lang.Object)}, which
+ * is the extension point for resharding strategies.
+ */
+public abstract class ShardingAdapter<S> implements Adapter<S>{
+    
+    private final List<Adapter<S>> shards;
+    
+    @SafeVarargs
+    public ShardingAdapter(Adapter<S>... shards){
+        if(shards == null || shards.length < 1)
+            throw new IllegalArgumentException("Sharding requires at least 1 adapter");
+        
+        this.shards = Collections.unmodifiableList(Arrays.asList(shards));
+    }
+    
+    /**
+     * @param obj
+     * @return the sharding key of the object, must be 
+     * the same key used in {@link ReadOperation#fromKeys(java.util.List)}
+     */
+    protected abstract Object keyOf(S obj);
+    
+    /**
+     * @return the function which maps keys to shards, by 
+     * default {@link ShardFunction#hash()}
+     */
+    protected ShardFunction shardFunction(){
+        return ShardFunction.hash();
+    }
+    
+    /**
+     * Objects identified by multiple keys (e.g. multiple id
+     * columns) are looked up by lists of alternating keys, in this case
+     * the arity is the number of keys of each object and the first
+     * key of each group is used for routing. 
+     * @return the number of keys identifying an object, 1 by default
+     */
+    protected int keyArity(){
+        return 1;
+    }
+    
+    /**
+     * @return the executor on which shards are accessed, by default
+     * {@link SharedExecutors#io()}
+     */
+    protected ExecutorService executor(){
+        return SharedExecutors.io();
+    }
+    
+    protected List<Adapter<S>> getShards(){
+        return shards;
+    }
+    
+    /**
+     * @param key
+     * @return the index of the shard owning the key
+     */
+    protected int shardFor(Object key){
+        if(key == null)
+            throw new IllegalArgumentException("Sharding key can't be null");
+        
+        final int shard = shardFunction().shardFor(key, shards.size());
+        
+        if(shard < 0 || shard >= shards.size())
+            throw new IllegalStateException("Key " + key + " mapped to shard " 
+                    + shard + " out of " + shards.size());
+        
+        return shard;
+    }
+    
+    /**
+     * Routes each object to its shard and writes the partitions 
+     * on their shards concurrently
+     * @param <T>
+     * @param data
+     * @param write the write performed on each shard
+     */
+    protected <T extends S> void route(Stream<T> data,BiConsumer<Adapter<S>,Stream<T>> write){
+        final Map<Integer,List<T>> partitions;
+        
+        try(Stream<T> stream = data){
+            partitions = stream.collect(Collectors.groupingBy(
+                    obj -> shardFor(keyOf(obj)),
+                    TreeMap::new,
+                    Collectors.toList()));
+        }
+        
+        onShards(partitions, (adapter,objs) -> {
+            write.accept(adapter, objs.stream());
+            return Stream.empty();
+        });
+    }
+    
+    /**
+     * Performs the operation on all shards concurrently
+     * and concatenates the results in shard order
+     * @param <T>
+     * @param op the operation performed on each shard
+     * @return the results of all shards
+     */
+    protected <T extends S> Stream<T> broadcast(Function<Adapter<S>,Stream<T>> op){
+        final Map<Integer,Object> all = new TreeMap<>();
+        
+        for(int i=0;i<shards.size();i++)
+            all.put(i, null);
+        
+        return onShards(all, (adapter,none) -> op.apply(adapter));
+    }
+    
+    /**
+     * Performs the operation on all shards concurrently
+     * @param <R>
+     * @param op the operation performed on each shard
+     * @return the result of each shard, in shard order
+     */
+    protected <R> List<R> gather(Function<Adapter<S>,R> op){
+        final Map<Integer,Object> all = new TreeMap<>();
+        
+        for(int i=0;i<shards.size();i++)
+            all.put(i, null);
+        
+        return onShards(all, (adapter,none) -> Stream.of(op.apply(adapter)))
+                .collect(Collectors.toList());
+    }
+    
+    private <T,P> Stream<T> onShards(Map<Integer,P> params,BiFunction<Adapter<S>,P,Stream<T>> op){
+        //A single shard doesn't need another thread
+        if(params.size() == 1){
+            final Map.Entry<Integer,P> entry = params.entrySet().iterator().next();
+            try(Stream<T> stream = op.apply(shards.get(entry.getKey()), entry.getValue())){
+                return stream.collect(Collectors.toList()).stream();
+            }
+        }
+        
+        final ExecutorService executor = executor();
+        final List<Integer> indexes = new ArrayList<>(params.keySet());
+        final List<Future<List<T>>> futures = new ArrayList<>(params.size());
+        
+        for(Integer index : indexes)
+            futures.add(executor.submit(() -> {
+                //Streams are drained on the task, shards are truly accessed in parallel
+                try(Stream<T> stream = op.apply(shards.get(index), params.get(index))){
+                    return stream.collect(Collectors.toList());
+                }
+            }));
+        
+        final List<List<T>> results = new ArrayList<>(futures.size());
+        
+        try{
+            for(int i=0;i<futures.size();i++){
+                try{
+                    results.add(futures.get(i).get());
+                }
+                catch(ExecutionException ex){
+                    throw new FailedOperationException("Operation on shard " + indexes.get(i) + " ("
+                            + shards.get(indexes.get(i)).getClass().getName() + ") failed", ex.getCause());
+                }
+            }
+        }
+        catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new FailedOperationException(ex);
+        }
+        finally{
+            //Pending operations are useless after a failure
+            futures.forEach(future -> future.cancel(true));
+        }
+        
+        return results.stream()
+                .flatMap(List::stream);
+    }
+    
+    private <T extends S> Stream<T> fromKeys(List<?> keys,BiFunction<Adapter<S>,List<Object>,Stream<T>> read){
+        final int arity = keyArity();
+        
+        if(keys.size() % arity != 0)
+            throw new IllegalArgumentException("The number of keys must be a multiple of " + arity);
+        
+        final Map<Integer,List<Object>> partitions = new TreeMap<>();
+        
+        for(int i=0;i<keys.size();i+=arity)
+            partitions.computeIfAbsent(shardFor(keys.get(i)), shard -> new ArrayList<>())
+                    .addAll(keys.subList(i, i + arity));
+        
+        if(partitions.isEmpty())
+            return Stream.empty();
+        
+        return onShards(partitions, read);
+    }
+    
+    @Override
+    public <T extends S> CreateOperation<T> create(Class<T> clazz) {
+        return new CreateOperation<T>() {
+            @Override
+            public CreateOperation<T> from(Stream<T> data) {
+                
+                route(data, (adapter,partition) -> adapter.create(clazz).from(partition));
+                
+                return this;
+            }
+
+            @Override
+            public CreateOperation<T> from(Stream<T> data, QueryOptions options) {
+                
+                route(data, (adapter,partition) -> adapter.create(clazz).from(partition,options));
+                
+                return this;
+            }
+
+            @Override
+            public void close() throws IOException {
+                //Each write is completed upon each call
+            }
+        };
+    }
+    
+    @Override
+    public <T extends S> ReadOperation<T> read(Class<T> clazz) {
+        return new CombinedReadOperation<T>() {
+            @Override
+            protected <R> List<R> gather(Function<ReadOperation<T>, R> read) {
+                return ShardingAdapter.this.gather(adapter -> read.apply(adapter.read(clazz)));
+            }
+            
+            @Override
+            public Stream<T> all() {
+                return broadcast(adapter -> adapter.read(clazz).all());
+            }
+
+            @Override
+            public Stream<T> all(QueryOptions options) {
+                return ordered(broadcast(adapter -> adapter.read(clazz).all(options)), options);
+            }
+
+            @Override
+            public <Q> Stream<T> where(Q whereClause) {
+                return broadcast(adapter -> adapter.read(clazz).where(whereClause));
+            }
+
+            @Override
+            public <Q> Stream<T> where(Q whereClause, QueryOptions options) {
+                return ordered(broadcast(adapter -> adapter.read(clazz).where(whereClause,options)), options);
+            }
+
+            @Override
+            public Stream<T> fromKeys(List<?> keys) {
+                return ShardingAdapter.this.fromKeys(keys, (adapter,partition) -> adapter.read(clazz).fromKeys(partition));
+            }
+
+            @Override
+            public Stream<T> fromKeys(List<?> keys, QueryOptions options) {
+                return ShardingAdapter.this.fromKeys(keys, (adapter,partition) -> adapter.read(clazz).fromKeys(partition,options));
+            }
+
+            /**
+             * Each shard reads its own page, the first objects 
+             * among them make up the page
+             */
+            @Override
+            public <A extends Comparable<A>> Page<T, A> page(Query<T> query, Attribute<T, A> orderBy, int pageSize, A after, QueryOptions options) {
+                Page.checkSize(pageSize);
+                
+                return Page.of(broadcast(adapter -> adapter.read(clazz)
+                        .page(query, orderBy, pageSize, after, options)
+                        .getItems().stream()), orderBy, pageSize, after);
+            }
+
+            @Override
+            public void close() throws IOException {
+                //Results are fully read upon each call
+            }
+        };
+    }
+    
+    @Override
+    public <T extends S> UpdateOperation<T> update(Class<T> clazz) {
+        return new UpdateOperation<T>() {
+            @Override
+            public UpdateOperation<T> from(Stream<T> data) {
+                
+                route(data, (adapter,partition) -> adapter.update(clazz).from(partition));
+                
+                return this;
+            }
+
+            @Override
+            public UpdateOperation<T> from(Stream<T> data, QueryOptions options) {
+                
+                route(data, (adapter,partition) -> adapter.update(clazz).from(partition,options));
+                
+                return this;
+            }
+
+            @Override
+            public void close() throws IOException {
+                //Each write is completed upon each call
+            }
+        };
+    }
+    
+    @Override
+    public <T extends S> DeleteOperation<T> delete(Class<T> clazz) {
+        return new DeleteOperation<T>() {
+            @Override
+            public <Q> DeleteOperation<T> where(Q whereClaus) {
+                
+                broadcast(adapter -> {
+                    adapter.delete(clazz).where(whereClaus);
+                    return Stream.empty();
+                });
+                
+                return this;
+            }
+
+            @Override
+            public <Q> DeleteOperation<T> where(Q whereClaus, QueryOptions options) {
+                
+                broadcast(adapter -> {
+                    adapter.delete(clazz).where(whereClaus,options);
+                    return Stream.empty();
+                });
+                
+                return this;
+            }
+
+            @Override
+            public DeleteOperation<T> from(Stream<T> data) {
+                
+                route(data, (adapter,partition) -> adapter.delete(clazz).from(partition));
+                
+                return this;
+            }
+
+            @Override
+            public DeleteOperation<T> from(Stream<T> data, QueryOptions options) {
+                
+                route(data, (adapter,partition) -> adapter.delete(clazz).from(partition,options));
+                
+                return this;
+            }
+
+            @Override
+            public DeleteOperation<T> all() {
+                
+                broadcast(adapter -> {
+                    adapter.delete(clazz).all();
+                    return Stream.empty();
+                });
+                
+                return this;
+            }
+
+            @Override
+            public void close() throws IOException {
+                //Each write is completed upon each call
+            }
+        };
+    }
+    
+    @Override
+    public <T extends S> UpsertOperation<T> upsert(Class<T> clazz) {
+        return new UpsertOperation<T>() {
+            @Override
+            public UpsertOperation<T> from(Stream<T> data) {
+                
+                route(data, (adapter,partition) -> adapter.upsert(clazz).from(partition));
+                
+                return this;
+            }
+
+            @Override
+            public UpsertOperation<T> from(Stream<T> data, QueryOptions options) {
+                
+                route(data, (adapter,partition) -> adapter.upsert(clazz).from(partition,options));
+                
+                return this;
+            }
+
+            @Override
+            public void close() throws IOException {
+                //Each write is completed upon each call
+            }
+        };
+    }
+}
@@ -15,31 +15,78 @@
  */
 package org.bananarama.crud.util;
 
+import com.googlecode.cqengine.attribute.Attribute;
+import com.googlecode.cqengine.query.Query;
 import com.googlecode.cqengine.query.option.QueryOptions;
 import java.io.IOException;
+import java.lang.reflect.Method;
 import org.bananarama.crud.CreateOperation;
 import org.bananarama.crud.DeleteOperation;
+import org.bananarama.crud.Page;
 import org.bananarama.crud.ReadOperation;
 import org.bananarama.crud.UpdateOperation;
+import org.bananarama.crud.UpsertOperation;
 import org.bananarama.crud.Adapter;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import org.bananarama.concurrency.SharedExecutors;
+import org.bananarama.exception.FailedOperationException;
+import org.bananarama.util.StreamUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- *
+ * Welds several adapters together: writes are performed on 
+ * all of them according to {@link #writePolicy()}, while reads are scattered to all of them 
+ * concurrently and their results merged according to 
+ * {@link #mergePolicy()}, then sorted and limited again when the read requests
+ * an ordering or a limit. Aggregates are computed by the adapters and 
+ * combined when results are concatenated. Subclasses configure the
+ * behaviour by overriding the protected methods.
  * @author Guglielmo De Concini
  */
 @SuppressWarnings("unchecked")
 public abstract class WeldingAdapter<S> implements Adapter<S>{
     
     private final List<Adapter<S>> adapters;
+    private final static Logger log = LoggerFactory.getLogger(WeldingAdapter.class);
     
     public WeldingAdapter(Adapter<S>...  adapters){
         if(adapters == null || adapters.length < 2)
             throw new IllegalArgumentException("Welding requires at least 2 adapters");
         
         this.adapters = Arrays.asList(adapters);    
+        
+        //Hooks are expected to return constants, so a misconfigured
+        //subclass is rejected before any data is read or written
+        if(mergePolicy() == MergePolicy.NEWEST_WINS && !overridesVersionOf())
+            throw new IllegalStateException(getClass().getName() 
+                + " must override versionOf in order to use " + MergePolicy.NEWEST_WINS);
+    }
+    
+    private boolean overridesVersionOf(){
+        for(Class<?> clazz = getClass();clazz != WeldingAdapter.class;clazz = clazz.getSuperclass())
+            for(Method method : clazz.getDeclaredMethods())
+                if(method.getName().equals("versionOf") && method.getParameterCount() == 1)
+                    return true;
+        
+        return false;
     }
     
     @Override
@@ -49,8 +96,7 @@ public abstract class WeldingAdapter<S> implements Adapter<S>{
             @Override
             public CreateOperation<T> from(Stream<T> data) {
                 
-                adapters.parallelStream()
-                .forEach(adapter -> adapter.create(clazz).from(data));
+                fanOut(data, (adapter,chunk) -> adapter.create(clazz).from(chunk));
 
                 return this;
             }
@@ -58,62 +104,328 @@ public abstract class WeldingAdapter<S> implements Adapter<S>{
             @Override
             public CreateOperation<T> from(Stream<T> data, QueryOptions options) {
                 
-                adapters.parallelStream()
-                .forEach(adapter -> adapter.create(clazz).from(data,options));
+                fanOut(data, (adapter,chunk) -> adapter.create(clazz).from(chunk,options));
 
                 return this;
             }
 
             @Override
             public void close() throws IOException {
-                throw new UnsupportedOperationException("Not supported yet.");
+                //Each write is completed upon each call
             }
         };
         
     }
     
+    /**
+     * @return how failing adapters are handled when writing, by
+     * default {@link WritePolicy#ALL_MUST_SUCCEED}
+     */
+    protected WritePolicy writePolicy(){
+        return WritePolicy.ALL_MUST_SUCCEED;
+    }
+    
+    /**
+     * @return the number of objects buffered from the input
+     * stream and written on all adapters at once
+     */
+    protected int writeChunkSize(){
+        return 1024;
+    }
+    
+    /**
+     * Buffers the data in chunks of {@link #writeChunkSize()} objects
+     * and writes each chunk on all adapters concurrently, so that
+     * the input stream is consumed only once
+     * @param <T>
+     * @param data
+     * @param write the write performed on each adapter
+     */
+    protected <T extends S> void fanOut(Stream<T> data,BiConsumer<Adapter<S>,Stream<T>> write){
+        List<Adapter<S>> targets = adapters;
+        
+        try(Stream<List<T>> chunks = StreamUtils.chunked(data, writeChunkSize())){
+            for(Iterator<List<T>> it = chunks.iterator();it.hasNext();){
+                final List<T> chunk = it.next();
+                targets = writeOnAll(targets, adapter -> write.accept(adapter, chunk.stream()));
+            }
+        }
+    }
+    
+    /**
+     * Performs the write on all the given adapters concurrently,
+     * according to {@link #writePolicy()}
+     * @param targets
+     * @param write
+     * @return the adapters on which the write succeeded
+     */
+    protected List<Adapter<S>> writeOnAll(List<Adapter<S>> targets,Consumer<Adapter<S>> write){
+        final ExecutorService executor = executor();
+        final List<Future<?>> futures = new ArrayList<>(targets.size());
+        
+        for(Adapter<S> adapter : targets)
+            futures.add(executor.submit(() -> write.accept(adapter)));
+        
+        final List<Adapter<S>> succeeded = new ArrayList<>(targets.size());
+        FailedOperationException failure = null;
+        
+        try{
+            for(int i=0;i<futures.size();i++){
+                final String adapterName = targets.get(i).getClass().getName();
+                
+                try{
+                    futures.get(i).get();
+                    succeeded.add(targets.get(i));
+                }
+                catch(ExecutionException ex){
+                    //Failures are isolated, other adapters complete their write
+                    log.warn("Writing on " + adapterName + " failed", ex.getCause());
+                    
+                    if(failure == null)
+                        failure = new FailedOperationException("Writing on " + adapterName + " failed", ex.getCause());
+                    else
+                        failure.addSuppressed(ex.getCause());
+                }
+            }
+        }
+        catch(InterruptedException ex){
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new FailedOperationException(ex);
+        }
+        
+        if(failure != null && (writePolicy() == WritePolicy.ALL_MUST_SUCCEED || succeeded.isEmpty()))
+            throw failure;
+        
+        return succeeded;
+    }
+    
+    /**
+     * Invoked upon construction as well, it must not depend
+     * on the state of subclasses
+     * @return the policy used to merge the results of the
+     * adapters, by default {@link MergePolicy#CONCATENATE}
+     */
+    protected MergePolicy mergePolicy(){
+        return MergePolicy.CONCATENATE;
+    }
+    
+    /**
+     * @return how long each adapter is waited for when reading, in 
+     * milliseconds. Zero or less means no timeout
+     */
+    protected long readTimeout(){
+        return 0;
+    }
+    
+    /**
+     * @return the executor on which adapters are queried, by default
+     * {@link SharedExecutors#io()}
+     */
+    protected ExecutorService executor(){
+        return SharedExecutors.io();
+    }
+    
+    /**
+     * Used by {@link MergePolicy#DEDUPE}, {@link MergePolicy#FIRST_WINS}
+     * and {@link MergePolicy#NEWEST_WINS} to detect copies 
+     * of the same object read from different adapters
+     * @param obj
+     * @return the key of the object, the object itself by default
+     */
+    protected Object keyOf(S obj){
+        return obj;
+    }
+    
+    /**
+     * Must be overridden in order to use {@link MergePolicy#NEWEST_WINS},
+     * which is checked upon construction
+     * @param obj
+     * @return the version of the object, higher is newer
+     */
+    protected Comparable<?> versionOf(S obj){
+        throw new UnsupportedOperationException(getClass().getName() 
+                + " must override versionOf in order to use " + MergePolicy.NEWEST_WINS);
+    }
+    
+    protected List<Adapter<S>> getAdapters(){
+        return adapters;
+    }
+    
+    /**
+     * Performs a read on the welded adapters, by default 
+     * through {@link #scatterGather(java.util.function.Function)}
+     * @param <T>
+     * @param read the read performed on each adapter
+     * @return the objects read
+     */
+    protected <T extends S> Stream<T> readFrom(Function<Adapter<S>,Stream<T>> read){
+        return scatterGather(read);
+    }
+    
+    /**
+     * Queries all adapters concurrently, each one on its own task,
+     * and merges their results according to {@link #mergePolicy()}
+     * @param <T>
+     * @param read the read performed on each adapter
+     * @return the merged results
+     */
+    protected <T extends S> Stream<T> scatterGather(Function<Adapter<S>,Stream<T>> read){
+        final ExecutorService executor = executor();
+        final AtomicInteger arrivals = new AtomicInteger();
+        final List<Future<AdapterResult<T>>> futures = new ArrayList<>(adapters.size());
+        final long timeout = readTimeout();
+        final long start = System.nanoTime();
+        
+        for(Adapter<S> adapter : adapters)
+            futures.add(executor.submit(() -> {
+                //Streams are drained on the task, backends are truly queried in parallel
+                try(Stream<T> stream = read.apply(adapter)){
+                    final List<T> objs = stream.collect(Collectors.toList());
+                    return new AdapterResult<>(objs, arrivals.getAndIncrement());
+                }
+            }));
+        
+        final List<AdapterResult<T>> results = new ArrayList<>(adapters.size());
+        
+        try{
+            for(int i=0;i<futures.size();i++){
+                final String adapterName = adapters.get(i).getClass().getName();
+                
+                try{
+                    if(timeout > 0){
+                        final long remaining = TimeUnit.MILLISECONDS.toNanos(timeout) - (System.nanoTime() - start);
+                        results.add(futures.get(i).get(Math.max(0, remaining), TimeUnit.NANOSECONDS));
+                    }
+                    else
+                        results.add(futures.get(i).get());
+                }
+                catch(TimeoutException ex){
+                    throw new FailedOperationException(adapterName + " did not answer within " + timeout + " ms", ex);
+                }
+                catch(ExecutionException ex){
+                    throw new FailedOperationException("Reading from " + adapterName + " failed", ex.getCause());
+                }
+            }
+        }
+        catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new FailedOperationException(ex);
+        }
+        finally{
+            //Pending reads are useless after a failure
+            futures.forEach(future -> future.cancel(true));
+        }
+        
+        return merge(results);
+    }
+    
+    @SuppressWarnings({"unchecked","rawtypes"})
+    private <T extends S> Stream<T> merge(List<AdapterResult<T>> results){
+        final MergePolicy policy = mergePolicy();
+        
+        switch(policy){
+            case CONCATENATE:
+                return results.stream()
+                        .flatMap(result -> result.objs.stream());
+            case DEDUPE:
+            case FIRST_WINS:{
+                final Stream<AdapterResult<T>> ordered = policy == MergePolicy.DEDUPE
+                        ? results.stream().sorted(Comparator.comparingInt(result -> result.arrival))
+                        : results.stream();
+                final Map<Object,T> merged = new LinkedHashMap<>();
+                
+                ordered.forEach(result -> result.objs
+                        .forEach(obj -> merged.putIfAbsent(keyOf(obj), obj)));
+                
+                return merged.values().stream();
+            }
+            case NEWEST_WINS:{
+                final Map<Object,T> merged = new LinkedHashMap<>();
+                
+                results.forEach(result -> result.objs
+                        .forEach(obj -> merged.merge(keyOf(obj), obj, 
+                                (prev,next) -> ((Comparable)versionOf(next)).compareTo(versionOf(prev)) > 0 ? next : prev)));
+                
+                return merged.values().stream();
+            }
+            default:
+                throw new IllegalStateException("Unknown merge policy " + policy);
+        }
+    }
+    
+    private static class AdapterResult<T>{
+        private final List<T> objs;
+        private final int arrival;
+        
+        private AdapterResult(List<T> objs,int arrival){
+            this.objs = objs;
+            this.arrival = arrival;
+        }
+    }
+    
     @Override
     public <T extends S> ReadOperation<T> read(Class<T> clazz) {
-        return new ReadOperation<T>() {
+        return new CombinedReadOperation<T>() {
+            /**
+             * Aggregates are read like objects, through {@link #readFrom(java.util.function.Function)},
+             * which is only meaningful when the results are concatenated
+             */
+            @Override @SuppressWarnings("rawtypes")
+            protected <R> List<R> gather(Function<ReadOperation<T>, R> read) {
+                if(mergePolicy() != MergePolicy.CONCATENATE)
+                    return null;
+                
+                return (List)readFrom(adapter -> (Stream<T>)(Stream)Stream.of(read.apply(adapter.read(clazz))))
+                        .collect(Collectors.toList());
+            }
+            
             @Override
             public Stream<T> all() {
-                 return adapters.parallelStream()
-                         .flatMap(adapter -> adapter.read(clazz).all());              
+                return readFrom(adapter -> adapter.read(clazz).all());
             }
 
             @Override
             public Stream<T> all(QueryOptions options) {
-               return adapters.parallelStream()
-                       .flatMap(adapter -> adapter.read(clazz).all(options));
+                return ordered(readFrom(adapter -> adapter.read(clazz).all(options)), options);
             }
 
             @Override
             public <Q> Stream<T> where(Q whereClause) {
-                return adapters.parallelStream()
-                        .flatMap(adapter -> adapter.read(clazz).where(whereClause));
+                return readFrom(adapter -> adapter.read(clazz).where(whereClause));
             }
 
             @Override
             public <Q> Stream<T> where(Q whereClause, QueryOptions options) {
-                return adapters.parallelStream()
-                        .flatMap(adapter -> adapter.read(clazz).where(whereClause,options));
+                return ordered(readFrom(adapter -> adapter.read(clazz).where(whereClause,options)), options);
             }
 
             @Override
             public Stream<T> fromKeys(List<?> keys) {
-                return adapters.parallelStream()
-                        .flatMap(adapter -> adapter.read(clazz).fromKeys(keys));
+                return readFrom(adapter -> adapter.read(clazz).fromKeys(keys));
             }
 
             @Override
             public Stream<T> fromKeys(List<?> keys, QueryOptions options) {
-                return adapters.parallelStream()
-                        .flatMap(adapter -> adapter.read(clazz).fromKeys(keys,options));
+                return readFrom(adapter -> adapter.read(clazz).fromKeys(keys,options));
+            }
+
+            /**
+             * Each adapter reads its own page, the first objects 
+             * among the merged ones make up the page
+             */
+            @Override
+            public <A extends Comparable<A>> Page<T, A> page(Query<T> query, Attribute<T, A> orderBy, int pageSize, A after, QueryOptions options) {
+                Page.checkSize(pageSize);
+                
+                return Page.of(readFrom(adapter -> adapter.read(clazz)
+                        .page(query, orderBy, pageSize, after, options)
+                        .getItems().stream()), orderBy, pageSize, after);
             }
 
             @Override
             public void close() throws IOException {
-                throw new UnsupportedOperationException("Not supported yet.");
+                //Results are fully read upon each call
             }
         };
     }
@@ -125,8 +437,7 @@ public abstract class WeldingAdapter<S> implements Adapter<S>{
             @Override
             public UpdateOperation<T> from(Stream<T> data) {
                 
-                adapters.parallelStream()
-                .forEach(adapter -> adapter.update(clazz).from(data));
+                fanOut(data, (adapter,chunk) -> adapter.update(clazz).from(chunk));
 
                 return this;   
             }
@@ -134,15 +445,14 @@ public abstract class WeldingAdapter<S> implements Adapter<S>{
             @Override
             public UpdateOperation<T> from(Stream<T> data, QueryOptions options) {
                 
-                adapters.parallelStream()
-                .forEach(adapter -> adapter.update(clazz).from(data, options));
+                fanOut(data, (adapter,chunk) -> adapter.update(clazz).from(chunk, options));
 
                 return this;   
             }
 
             @Override
             public void close() throws IOException {
-                throw new UnsupportedOperationException("Not supported yet.");
+                //Each write is completed upon each call
             }
         };
     }
@@ -153,8 +463,7 @@ public abstract class WeldingAdapter<S> implements Adapter<S>{
             @Override
             public <Q> DeleteOperation<T> where(Q whereClaus) {
                 
-                adapters.parallelStream()
-                        .forEach(adapter -> adapter.delete(clazz).where(whereClaus));
+                writeOnAll(adapters, adapter -> adapter.delete(clazz).where(whereClaus));
                 
                 return this;
             }
@@ -162,8 +471,7 @@ public abstract class WeldingAdapter<S> implements Adapter<S>{
             @Override
             public <Q> DeleteOperation<T> where(Q whereClaus, QueryOptions options) {
 
-                adapters.parallelStream()
-                        .forEach(adapter -> adapter.delete(clazz).where(whereClaus));
+                writeOnAll(adapters, adapter -> adapter.delete(clazz).where(whereClaus,options));
                 
                 return this;
             }
@@ -171,8 +479,7 @@ public abstract class WeldingAdapter<S> implements Adapter<S>{
             @Override
             public DeleteOperation<T> from(Stream<T> data) {
 
-                adapters.parallelStream()
-                        .forEach(adapter -> adapter.delete(clazz).from(data));
+                fanOut(data, (adapter,chunk) -> adapter.delete(clazz).from(chunk));
                 
                 return this;
             }
@@ -180,26 +487,49 @@ public abstract class WeldingAdapter<S> implements Adapter<S>{
             @Override
             public DeleteOperation<T> from(Stream<T> data, QueryOptions options) {
                 
-                adapters.parallelStream()
-                        .forEach(adapter -> adapter.delete(clazz).from(data,options));
+                fanOut(data, (adapter,chunk) -> adapter.delete(clazz).from(chunk,options));
                 
                 return this;
             }
 
             @Override
             public void close() throws IOException {
-                throw new UnsupportedOperationException("Not supported yet.");
+                //Each write is completed upon each call
             }
 			
             @Override
             public DeleteOperation<T> all() {
 
-                adapters.parallelStream()
-                .forEach(adapter -> adapter.delete(clazz).all());
+                writeOnAll(adapters, adapter -> adapter.delete(clazz).all());
                 
                 return this;
             }
         };
     }
     
+    @Override
+    public <T extends S> UpsertOperation<T> upsert(Class<T> clazz) {
+        return new UpsertOperation<T>() {
+            @Override
+            public UpsertOperation<T> from(Stream<T> data) {
+                
+                fanOut(data, (adapter,chunk) -> adapter.upsert(clazz).from(chunk));
+                
+                return this;
+            }
+
+            @Override
+            public UpsertOperation<T> from(Stream<T> data, QueryOptions options) {
+                
+                fanOut(data, (adapter,chunk) -> adapter.upsert(clazz).from(chunk,options));
+                
+                return this;
+            }
+
+            @Override
+            public void close() throws IOException {
+                //Each write is completed upon each call
+            }
+        };
+    }
 }
@@ -0,0 +1,32 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.crud.util;
+
+/**
+ * How failures of the adapters of a
+ * {@link WeldingAdapter} are handled when writing
+ */
+public enum WritePolicy {
+    /**
+     * The write fails as soon as one adapter fails
+     */
+    ALL_MUST_SUCCEED,
+    /**
+     * Failing adapters are skipped for the rest of
+     * the write, which fails only if all adapters fail
+     */
+    BEST_EFFORT
+}
@@ -0,0 +1,52 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.io;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Thread-safe {@link DataCollector}, which may be fed with parallel streams
+ * and by several threads at once. Each stream is first gathered by the stream
+ * framework in per-thread buffers, then the resulting batch is appended
+ * to a lock-free queue, so that concurrent producers never contend 
+ * on each element. The encounter order of each stream is preserved.
+ */
+public class ConcurrentDataCollector<T> implements DataCollector<T>{
+    
+    private final Queue<List<T>> batches = new ConcurrentLinkedQueue<>();
+    
+    @Override
+    public void collect(Stream<T> dataIn) {
+        final List<T> batch = dataIn.collect(Collectors.toList());
+        
+        if(!batch.isEmpty())
+            batches.add(batch);
+    }
+
+    /**
+     * @return the collected objects, batch by batch
+     */
+    @Override
+    public Stream<T> dump() {
+        return batches.stream()
+                .flatMap(List::stream);
+    }
+    
+}
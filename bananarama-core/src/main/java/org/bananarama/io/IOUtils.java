@@ -17,9 +17,37 @@ package org.bananarama.io;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Function;
 
 public class IOUtils {
     public static <T,S extends Collection<T>> DataCollector<T> andSaveInList(final List<T> output){
         return new ListDataCollector<>(output);
     }
+    
+    /**
+     * @param <T>
+     * @return a new {@link ConcurrentDataCollector}
+     */
+    public static <T> ConcurrentDataCollector<T> concurrently(){
+        return new ConcurrentDataCollector<>();
+    }
+    
+    /**
+     * @param <T>
+     * @param <K>
+     * @param keyFunction
+     * @return a new {@link PartitioningDataCollector} on the given key function
+     */
+    public static <T,K> PartitioningDataCollector<T,K> andPartitionBy(Function<? super T,? extends K> keyFunction){
+        return new PartitioningDataCollector<>(keyFunction);
+    }
+    
+    /**
+     * @param <T>
+     * @param threshold the maximum number of objects kept on the heap
+     * @return a new {@link SpillingDataCollector}
+     */
+    public static <T> SpillingDataCollector<T> andSpillToDisk(int threshold){
+        return new SpillingDataCollector<>(threshold);
+    }
 }
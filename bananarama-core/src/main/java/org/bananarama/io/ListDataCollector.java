@@ -33,7 +33,8 @@ public class ListDataCollector<T> implements DataCollector<T>{
     
     @Override
     public void collect(Stream<T> dataIn) {
-        dataIn.forEach(data::add);
+        //Parallel streams still add one element at a time
+        dataIn.forEachOrdered(data::add);
     }
 
     @Override
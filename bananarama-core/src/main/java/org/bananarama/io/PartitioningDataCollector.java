@@ -0,0 +1,102 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.io;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Thread-safe {@link DataCollector} which routes the collected objects
+ * into buckets according to a key function. As in 
+ * {@link ConcurrentDataCollector}, each stream is grouped in per-thread
+ * buffers and each group is then appended to the lock-free queue of
+ * its bucket, so results of parallel reads can be aggregated
+ * without contention.
+ */
+public class PartitioningDataCollector<T,K> implements DataCollector<T>{
+    
+    private final Function<? super T,? extends K> keyFunction;
+    private final Map<K,Queue<List<T>>> buckets = new ConcurrentHashMap<>();
+    
+    /**
+     * @param keyFunction maps each object to the key of its
+     * bucket, must not return null
+     */
+    public PartitioningDataCollector(Function<? super T,? extends K> keyFunction){
+        this.keyFunction = keyFunction;
+    }
+    
+    @Override
+    public void collect(Stream<T> dataIn) {
+        final Map<K,List<T>> groups = dataIn.collect(Collectors.groupingBy(keyFunction));
+        
+        groups.forEach((key,group) -> buckets
+                .computeIfAbsent(key, k -> new ConcurrentLinkedQueue<>())
+                .add(group));
+    }
+    
+    /**
+     * @return the keys of all non-empty buckets
+     */
+    public Set<K> keys(){
+        return Collections.unmodifiableSet(buckets.keySet());
+    }
+    
+    /**
+     * @param key
+     * @return the objects collected in the bucket of the given key
+     */
+    public Stream<T> dump(K key){
+        final Queue<List<T>> bucket = buckets.get(key);
+        
+        if(bucket == null)
+            return Stream.empty();
+        
+        return bucket.stream()
+                .flatMap(List::stream);
+    }
+    
+    /**
+     * Reduces each bucket with the given collector
+     * @param <R>
+     * @param downstream
+     * @return the result of each bucket, by key
+     */
+    public <R> Map<K,R> aggregate(Collector<? super T,?,R> downstream){
+        return keys().stream()
+                .collect(Collectors.toMap(Function.identity(), key -> dump(key).collect(downstream)));
+    }
+
+    /**
+     * @return the objects of all buckets, bucket by bucket
+     */
+    @Override
+    public Stream<T> dump() {
+        return buckets.values().stream()
+                .flatMap(Queue::stream)
+                .flatMap(List::stream);
+    }
+    
+}
@@ -0,0 +1,234 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.bananarama.exception.FailedOperationException;
+
+/**
+ * {@link DataCollector} which keeps at most {@link #getThreshold()} objects 
+ * on the heap: whenever the threshold is crossed, the buffered objects are 
+ * serialized as a single chunk to a temporary file. The stream returned by 
+ * {@link #dump()} is lazy and reads back one chunk at a time, so collected
+ * data can be processed in bounded memory. Objects must be {@link java.io.Serializable}.
+ * <p>
+ * The temporary file is deleted by {@link #close()}.
+ */
+public class SpillingDataCollector<T> implements DataCollector<T>,Closeable{
+    
+    public static final int DEFAULT_THRESHOLD = 10000;
+    
+    private final int threshold;
+    private final File directory;
+    private List<T> buffer;
+    private File file;
+    private ObjectOutputStream out;
+    private int chunks;
+    
+    public SpillingDataCollector(){
+        this(DEFAULT_THRESHOLD);
+    }
+    
+    public SpillingDataCollector(int threshold){
+        this(threshold,null);
+    }
+    
+    /**
+     * @param threshold the maximum number of objects kept on the heap
+     * @param directory where the temporary file is created, the
+     * default temporary directory if null
+     */
+    public SpillingDataCollector(int threshold,File directory){
+        if(threshold < 1)
+            throw new IllegalArgumentException("Threshold must be positive, got " + threshold);
+        
+        this.threshold = threshold;
+        this.directory = directory;
+        this.buffer = new ArrayList<>();
+    }
+    
+    public int getThreshold(){
+        return threshold;
+    }
+    
+    /**
+     * @return the number of chunks spilled to disk so far
+     */
+    public synchronized int getSpilledChunks(){
+        return chunks;
+    }
+    
+    @Override
+    public synchronized void collect(Stream<T> dataIn) {
+        dataIn.forEachOrdered(obj -> {
+            buffer.add(obj);
+            
+            if(buffer.size() >= threshold)
+                spill();
+        });
+    }
+    
+    private void spill(){
+        try{
+            if(out == null){
+                file = File.createTempFile("bananarama-", ".spill", directory);
+                file.deleteOnExit();
+                out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            }
+            
+            out.writeObject(buffer);
+            //Forget references to written objects, they'd be held forever otherwise
+            out.reset();
+            chunks++;
+            buffer = new ArrayList<>();
+        }
+        catch(IOException ex){
+            throw new FailedOperationException("Can't spill collected data to disk", ex);
+        }
+    }
+    
+    /**
+     * @return a lazy stream over spilled chunks first and buffered objects
+     * afterwards, in the order they were collected. The stream must be
+     * closed in order to release the underlying file
+     */
+    @Override
+    public synchronized Stream<T> dump() {
+        final List<T> tail = new ArrayList<>(buffer);
+        
+        if(chunks == 0)
+            return tail.stream();
+        
+        try{
+            out.flush();
+        }
+        catch(IOException ex){
+            throw new FailedOperationException("Can't flush collected data to disk", ex);
+        }
+        
+        final ChunkIterator<T> iter = new ChunkIterator<>(file, chunks, tail);
+        
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iter, Spliterator.ORDERED), false)
+                .onClose(iter::close);
+    }
+    
+    /**
+     * Discards all collected data, deleting the temporary file
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        buffer = new ArrayList<>();
+        chunks = 0;
+        
+        try{
+            if(out != null)
+                out.close();
+        }
+        finally{
+            out = null;
+            
+            if(file != null)
+                file.delete();
+            
+            file = null;
+        }
+    }
+    
+    /**
+     * Reads spilled chunks back one by one
+     */
+    private static class ChunkIterator<T> implements Iterator<T>{
+        private final File file;
+        private final List<T> tail;
+        private int chunksLeft;
+        private ObjectInputStream in;
+        private Iterator<T> current;
+        private boolean tailRead;
+        
+        private ChunkIterator(File file,int chunks,List<T> tail){
+            this.file = file;
+            this.chunksLeft = chunks;
+            this.tail = tail;
+            this.current = Collections.emptyIterator();
+        }
+        
+        @Override @SuppressWarnings("unchecked")
+        public boolean hasNext() {
+            while(!current.hasNext()){
+                if(chunksLeft > 0){
+                    try{
+                        if(in == null)
+                            in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+                        current = ((List<T>)in.readObject()).iterator();
+                        chunksLeft--;
+                    }
+                    catch(IOException | ClassNotFoundException ex){
+                        close();
+                        throw new FailedOperationException("Can't read spilled data from " + file, ex);
+                    }
+                }
+                else if(!tailRead){
+                    //Chunks are over, release the file before reading the heap
+                    close();
+                    current = tail.iterator();
+                    tailRead = true;
+                }
+                else
+                    return false;
+            }
+            
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if(!hasNext())
+                throw new NoSuchElementException();
+            
+            return current.next();
+        }
+        
+        private void close(){
+            if(in != null){
+                try{
+                    in.close();
+                }
+                catch(IOException ex){
+                    //Nothing left to read anyway
+                }
+                in = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class StreamUtils {
+    
+    /**
+     * Lazily groups consecutive elements of the given stream
+     * in lists of the given size, the last one may be smaller. 
+     * Closing the returned stream closes the source.
+     * @param <T>
+     * @param source
+     * @param size the size of each chunk
+     * @return the stream of chunks
+     */
+    public static <T> Stream<List<T>> chunked(Stream<T> source,int size){
+        if(size < 1)
+            throw new IllegalArgumentException("Chunk size must be positive, got " + size);
+        
+        final Iterator<T> iter = source.iterator();
+        final Iterator<List<T>> chunks = new Iterator<List<T>>() {
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public List<T> next() {
+                if(!iter.hasNext())
+                    throw new NoSuchElementException();
+                
+                final List<T> chunk = new ArrayList<>(size);
+                
+                while(chunk.size() < size && iter.hasNext())
+                    chunk.add(iter.next());
+                
+                return chunk;
+            }
+        };
+        
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(chunks, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(source::close);
+    }
+}
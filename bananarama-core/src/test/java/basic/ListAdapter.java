@@ -16,6 +16,7 @@
 package basic;
 
 import com.googlecode.cqengine.query.Query;
+import static com.googlecode.cqengine.query.QueryFactory.noQueryOptions;
 import com.googlecode.cqengine.query.option.QueryOptions;
 import java.io.IOException;
 import org.bananarama.crud.CreateOperation;
@@ -71,12 +72,15 @@ public class ListAdapter implements Adapter<Object>{
 
            @Override
            public <Q> Stream<T> where(Q whereClause) {
-               throw new UnsupportedOperationException("Not supported yet.");
+               return where(whereClause, noQueryOptions());
            }
 
-           @Override
+           @Override @SuppressWarnings("unchecked")
            public <Q> Stream<T> where(Q whereClause, QueryOptions options) {
-               throw new UnsupportedOperationException("Not supported yet."); 
+               if(!(whereClause instanceof Query))
+                   throw new UnsupportedOperationException("Not supported yet."); 
+               
+               return all().filter(obj -> ((Query<T>)whereClause).matches(obj, options));
            }
 
            @Override
@@ -16,11 +16,14 @@
 package basic;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 import org.bananarama.BananaRama;
 import org.bananarama.crud.CreateOperation;
 import org.bananarama.crud.DeleteOperation;
+import org.bananarama.crud.Projection;
 import org.bananarama.crud.ReadOperation;
 import java.util.stream.Stream;
 import org.bananarama.io.DataCollector;
@@ -79,6 +82,35 @@ public class SimpleCrudTest {
         assertEquals(0, read.all().count());
     }
     
+    @Test
+    public void testUpsert(){
+        bananarama.create(Entry.class).from(Stream.of(new Entry("a", "1")));
+        
+        //Existing entries are replaced, missing ones are created
+        bananarama.upsert(Entry.class).from(Stream.of(new Entry("a", "2"), new Entry("b", "3")));
+        
+        assertEquals(2, bananarama.read(Entry.class).all().count());
+        assertEquals("2", bananarama.read(Entry.class).all()
+                .filter(entry -> entry.getKey().equals("a"))
+                .findAny().get().getValue());
+    }
+    
+    public interface EntryKey {
+        String getKey();
+    }
+    
+    @Test
+    public void testProjection(){
+        bananarama.create(Entry.class).from(Stream.of(new Entry("a", "1"), new Entry("b", "2")));
+        
+        assertEquals(Collections.singleton("key"), Projection.of(EntryKey.class).getFields());
+        assertEquals(Arrays.asList("a","b"), bananarama.read(Entry.class)
+                .project(EntryKey.class, null, null)
+                .map(EntryKey::getKey)
+                .sorted()
+                .collect(Collectors.toList()));
+    }
+    
     @Test
     public void testDataCollectorsApi(){
         final Entry entry = new Entry("John", "Doe");
@@ -24,6 +24,7 @@ import org.bananarama.annotation.Banana;
 import org.bananarama.cache.IndexedCollectionAdapter;
 import org.bananarama.cache.annotation.BufferedOnIndexedCollection;
 import org.bananarama.cache.annotation.Indexed;
+import org.bananarama.cache.annotation.PrimaryKey;
 import org.bananarama.cache.providers.index.NavigableIndexProvider;
 
 /**
@@ -37,7 +38,7 @@ public class CacheEntry extends Entry{
         super(key, val);
     }
     
-    @Indexed
+    @Indexed @PrimaryKey
     public static final Attribute<CacheEntry,String> KEY = new SimpleAttribute<CacheEntry, String>("key"){
         @Override
         public String getValue(CacheEntry o, QueryOptions qo) {
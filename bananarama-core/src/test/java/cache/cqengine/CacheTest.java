@@ -16,21 +16,34 @@
 package cache.cqengine;
 
 import basic.ListAdapter;
+import com.googlecode.cqengine.ConcurrentIndexedCollection;
 import com.googlecode.cqengine.IndexedCollection;
+import com.googlecode.cqengine.attribute.Attribute;
+import com.googlecode.cqengine.attribute.SimpleAttribute;
 import com.googlecode.cqengine.index.Index;
 import com.googlecode.cqengine.index.hash.HashIndex;
 import com.googlecode.cqengine.index.navigable.NavigableIndex;
+import com.googlecode.cqengine.index.navigable.PartialNavigableIndex;
 import static com.googlecode.cqengine.query.QueryFactory.*;
+import com.googlecode.cqengine.quantizer.IntegerQuantizer;
+import com.googlecode.cqengine.query.option.QueryOptions;
 import org.bananarama.BananaRama;
+import org.bananarama.cache.CacheReadOperation;
 import org.bananarama.cache.IndexedCollectionAdapter;
 import org.bananarama.crud.CreateOperation;
 import org.bananarama.crud.DeleteOperation;
+import org.bananarama.crud.Page;
 import org.bananarama.crud.ReadOperation;
 import org.bananarama.crud.UpdateOperation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -179,4 +192,92 @@ public class CacheTest {
             throw new RuntimeException("Index checking failed",ex);
         }
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void testKeysetPagination(){
+        bananarama.create(CacheEntry.class)
+                .from(IntStream.range(0, 55).mapToObj(i -> new CacheEntry("page" + i, String.format("val%03d", 54 - i))));
+        
+        final ReadOperation<CacheEntry> read = bananarama.read(CacheEntry.class);
+        final List<String> vals = new ArrayList<>();
+        final List<Integer> sizes = new ArrayList<>();
+        String token = null;
+        
+        do{
+            Page<CacheEntry,String> page = read.page(greaterThanOrEqualTo(CacheEntry.VAL, "val010"), CacheEntry.VAL, 10, token);
+            page.getItems().forEach(entry -> vals.add(entry.getVal()));
+            sizes.add(page.getItems().size());
+            token = page.getNextToken();
+        }
+        while(token != null);
+        
+        assertEquals(IntStream.range(10, 55).mapToObj(i -> String.format("val%03d", i)).collect(Collectors.toList()), vals);
+        assertEquals(Arrays.asList(10,10,10,10,5), sizes);
+        
+        //Without a query the whole buffer is paged
+        assertEquals(55, read.page(null, CacheEntry.VAL, 100, null).getItems().size());
+        assertFalse(read.page(null, CacheEntry.VAL, 100, null).hasNext());
+        
+        bananarama.delete(CacheEntry.class).all();
+    }
+    
+    private static final Attribute<CacheEntry,Integer> NUMBER = new SimpleAttribute<CacheEntry,Integer>("number"){
+        @Override
+        public Integer getValue(CacheEntry entry, QueryOptions qo) {
+            return Integer.valueOf(entry.getVal().substring(3));
+        }
+    };
+    
+    @Test
+    public void testAggregates(){
+        bananarama.create(CacheEntry.class)
+                .from(IntStream.range(0, 30).mapToObj(i -> new CacheEntry("agg" + i, String.format("val%03d", i % 10))));
+        
+        final ReadOperation<CacheEntry> read = bananarama.read(CacheEntry.class);
+        
+        assertEquals(30, read.count(null, null));
+        assertEquals(3, read.count(equal(CacheEntry.VAL, "val004"), null));
+        assertTrue(read.exists(equal(CacheEntry.KEY, "agg29"), null));
+        assertFalse(read.exists(equal(CacheEntry.KEY, "agg30"), null));
+        
+        //Answered by the ends of the NavigableIndex
+        assertEquals("val000", read.min(CacheEntry.VAL, null, null).get());
+        assertEquals("val009", read.max(CacheEntry.VAL, null, null).get());
+        assertEquals("val008", read.max(CacheEntry.VAL, lessThan(CacheEntry.VAL, "val009"), null).get());
+        
+        assertEquals(135.0, read.sum(NUMBER, null, null), 0.0);
+        assertEquals(4.5, read.avg(NUMBER, null, null).getAsDouble(), 0.0);
+        
+        //Answered by the bucket sizes of the index
+        final Map<String,Long> counts = read.countBy(CacheEntry.VAL, null, null);
+        assertEquals(10, counts.size());
+        counts.values().forEach(count -> assertEquals(Long.valueOf(3), count));
+        
+        final Map<String,Long> expected = new HashMap<>();
+        expected.put("val000", 3L);
+        expected.put("val001", 3L);
+        assertEquals(expected, read.countBy(CacheEntry.VAL, lessThan(CacheEntry.VAL, "val002"), null));
+        
+        bananarama.delete(CacheEntry.class).all();
+        assertFalse(read.min(CacheEntry.VAL, null, null).isPresent());
+    }
+    
+    @Test
+    public void testInexactIndexes(){
+        final IndexedCollection<CacheEntry> coll = new ConcurrentIndexedCollection<>();
+        //Keys are rounded down to multiples of 5
+        coll.addIndex(NavigableIndex.withQuantizerOnAttribute(IntegerQuantizer.withCompressionFactor(5), NUMBER));
+        //Only values below val005 are indexed
+        coll.addIndex(PartialNavigableIndex.onAttributeWithFilterQuery(CacheEntry.VAL, lessThan(CacheEntry.VAL, "val005")));
+        coll.addAll(IntStream.range(0, 10)
+                .mapToObj(i -> new CacheEntry("inexact" + i, String.format("val%03d", i)))
+                .collect(Collectors.toList()));
+        
+        final ReadOperation<CacheEntry> read = new CacheReadOperation<>(coll, CacheEntry.class, bananarama);
+        
+        assertEquals(Integer.valueOf(9), read.max(NUMBER, null, null).get());
+        assertEquals(10, read.countBy(NUMBER, null, null).size());
+        assertEquals("val009", read.max(CacheEntry.VAL, null, null).get());
+        assertEquals(10, read.countBy(CacheEntry.VAL, null, null).size());
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cache.persistence;
+
+import com.googlecode.cqengine.attribute.Attribute;
+import com.googlecode.cqengine.attribute.SimpleAttribute;
+import com.googlecode.cqengine.query.option.QueryOptions;
+import org.bananarama.annotation.Banana;
+import org.bananarama.cache.IndexedCollectionAdapter;
+import org.bananarama.cache.annotation.BufferedOnIndexedCollection;
+import org.bananarama.cache.annotation.Indexed;
+import org.bananarama.cache.annotation.PersistenceOptions;
+import org.bananarama.cache.annotation.PrimaryKey;
+import org.bananarama.cache.providers.collection.OffHeapIndexedCollectionProvider;
+import org.bananarama.cache.providers.index.OffHeapIndexProvider;
+import org.bananarama.crud.util.NoOpAdapter;
+
+@BufferedOnIndexedCollection(backingAdapter = NoOpAdapter.class,provider = OffHeapIndexedCollectionProvider.class)
+@PersistenceOptions(pageSize = 4096)
+@Banana(adapter = IndexedCollectionAdapter.class)
+public class OffHeapEntry {
+    private int id;
+    private String val;
+    
+    private OffHeapEntry(){
+    }
+    
+    public OffHeapEntry(int id,String val){
+        this.id = id;
+        this.val = val;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getVal() {
+        return val;
+    }
+    
+    @PrimaryKey
+    public static final SimpleAttribute<OffHeapEntry,Integer> ID = new SimpleAttribute<OffHeapEntry, Integer>("id"){
+        @Override
+        public Integer getValue(OffHeapEntry o, QueryOptions qo) {
+            return o.id;
+        }
+    };
+    
+    @Indexed(OffHeapIndexProvider.class)
+    public static final Attribute<OffHeapEntry,String> VAL = new SimpleAttribute<OffHeapEntry, String>("val"){
+        @Override
+        public String getValue(OffHeapEntry o, QueryOptions qo) {
+            return o.val;
+        }
+    };
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cache.persistence;
+
+import com.googlecode.cqengine.IndexedCollection;
+import com.googlecode.cqengine.attribute.SimpleAttribute;
+import com.googlecode.cqengine.persistence.Persistence;
+import com.googlecode.cqengine.persistence.disk.DiskPersistence;
+import static com.googlecode.cqengine.query.QueryFactory.*;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.bananarama.BananaRama;
+import org.bananarama.cache.IndexedCollectionAdapter;
+import org.bananarama.cache.annotation.PersistenceOptions;
+import org.bananarama.cache.providers.collection.DiskIndexedCollectionProvider;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PersistenceTest {
+    
+    @Test
+    public void testOffHeap(){
+        IndexedCollectionAdapter adap = new IndexedCollectionAdapter(new BananaRama());
+        
+        adap.create(OffHeapEntry.class)
+                .from(IntStream.range(0, 100)
+                        .mapToObj(i -> new OffHeapEntry(i, "val" + i)));
+        
+        assertEquals(100, adap.read(OffHeapEntry.class).all().count());
+        
+        List<OffHeapEntry> found = adap.read(OffHeapEntry.class)
+                .where(equal(OffHeapEntry.VAL, "val42"))
+                .collect(Collectors.toList());
+        
+        assertEquals(1, found.size());
+        assertEquals(42, found.get(0).getId());
+    }
+    
+    @Test
+    public void testDisk(){
+        IndexedCollectionAdapter adap = new IndexedCollectionAdapter(new BananaRama());
+        
+        adap.create(DiskEntry.class)
+                .from(IntStream.range(0, 100)
+                        .mapToObj(i -> new DiskEntry(i, "val" + i)));
+        
+        assertEquals(10, adap.read(DiskEntry.class)
+                .where(lessThan(DiskEntry.ID, 10))
+                .count());
+    }
+    
+    @Test
+    public void testTempFileIsDeleted(){
+        final List<File> files = new ArrayList<>();
+        final DiskIndexedCollectionProvider<DiskEntry> provider = new DiskIndexedCollectionProvider<DiskEntry>(DiskEntry.class){
+            @Override
+            protected <A extends Comparable<A>> Persistence<DiskEntry, A> buildPersistence(
+                    SimpleAttribute<DiskEntry, A> primaryKey,
+                    PersistenceOptions options,
+                    Properties properties) {
+                DiskPersistence<DiskEntry,A> persistence = (DiskPersistence<DiskEntry,A>)super.buildPersistence(primaryKey, options, properties);
+                files.add(persistence.getFile());
+                return persistence;
+            }
+        };
+        
+        IndexedCollection<DiskEntry> coll = provider.buildCollection();
+        coll.add(new DiskEntry(1, "val1"));
+        
+        assertEquals(1, files.size());
+        assertTrue(files.get(0).exists());
+        
+        provider.close(coll);
+        assertFalse(files.get(0).exists());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testPrimaryKeyIsRequired(){
+        new IndexedCollectionAdapter(new BananaRama())
+                .read(UnkeyedEntry.class)
+                .all();
+    }
+}
@@ -0,0 +1,176 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cache.sharding;
+
+import cache.cqengine.CacheEntry;
+import com.googlecode.cqengine.ConcurrentIndexedCollection;
+import com.googlecode.cqengine.attribute.Attribute;
+import com.googlecode.cqengine.attribute.SimpleAttribute;
+import com.googlecode.cqengine.index.compound.CompoundIndex;
+import com.googlecode.cqengine.index.hash.HashIndex;
+import com.googlecode.cqengine.index.navigable.NavigableIndex;
+import static com.googlecode.cqengine.query.QueryFactory.*;
+import com.googlecode.cqengine.query.option.QueryOptions;
+import com.googlecode.cqengine.resultset.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+import org.bananarama.cache.collection.ShardedIndexedCollection;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ShardedCollectionTest {
+
+    private static ShardedIndexedCollection<CacheEntry> newCollection(int n){
+        ShardedIndexedCollection<CacheEntry> coll = new ShardedIndexedCollection<>(4, ConcurrentIndexedCollection::new);
+        coll.addIndex(() -> HashIndex.onAttribute(CacheEntry.KEY));
+        coll.addIndex(() -> NavigableIndex.onAttribute(CacheEntry.VAL));
+
+        coll.addAll(IntStream.range(0, n)
+                .mapToObj(i -> new CacheEntry("key" + i, String.format("val%03d", i)))
+                .collect(Collectors.toList()));
+        return coll;
+    }
+
+    @Test
+    public void testRetrieve(){
+        ShardedIndexedCollection<CacheEntry> coll = newCollection(100);
+
+        assertEquals(4, coll.getShardCount());
+        assertEquals(100, coll.size());
+
+        try(ResultSet<CacheEntry> rs = coll.retrieve(equal(CacheEntry.KEY, "key42"))){
+            assertEquals(1, rs.size());
+            assertEquals("val042", rs.uniqueResult().getVal());
+        }
+
+        try(ResultSet<CacheEntry> rs = coll.retrieve(greaterThanOrEqualTo(CacheEntry.VAL, "val090"))){
+            assertEquals(10, rs.size());
+        }
+    }
+
+    @Test
+    public void testOrderedRetrieve(){
+        ShardedIndexedCollection<CacheEntry> coll = newCollection(100);
+
+        List<String> vals = new ArrayList<>();
+        try(ResultSet<CacheEntry> rs = coll.retrieve(lessThan(CacheEntry.VAL, "val050"),
+                queryOptions(orderBy(descending(CacheEntry.VAL))))){
+            rs.forEach(entry -> vals.add(entry.getVal()));
+        }
+
+        List<String> expected = new ArrayList<>(vals);
+        Collections.sort(expected, Collections.reverseOrder());
+
+        assertEquals(50, vals.size());
+        assertEquals(expected, vals);
+    }
+
+    @Test
+    public void testUpdate(){
+        ShardedIndexedCollection<CacheEntry> coll = newCollection(10);
+        CacheEntry old = coll.retrieve(equal(CacheEntry.KEY, "key1")).uniqueResult();
+        CacheEntry updated = new CacheEntry("key1", "updated");
+
+        coll.update(Collections.singletonList(old), Collections.singletonList(updated));
+
+        assertEquals(10, coll.size());
+        assertEquals(updated.getVal(), coll.retrieve(equal(CacheEntry.KEY, "key1")).uniqueResult().getVal());
+
+        coll.removeAll(Collections.singletonList(updated));
+        assertEquals(9, coll.size());
+        assertEquals(0, coll.retrieve(equal(CacheEntry.KEY, "key1")).size());
+    }
+
+    @Test
+    public void testIndexIsReplicated(){
+        ShardedIndexedCollection<CacheEntry> coll = new ShardedIndexedCollection<>(4, ConcurrentIndexedCollection::new);
+        HashIndex<String,CacheEntry> index = HashIndex.onAttribute(CacheEntry.KEY);
+        coll.addIndex(index);
+        coll.addAll(IntStream.range(0, 100)
+                .mapToObj(i -> new CacheEntry("key" + i, "val" + i))
+                .collect(Collectors.toList()));
+
+        //The given instance is used by one shard only
+        assertTrue(coll.getIndexes().iterator().next() == index);
+
+        try(ResultSet<CacheEntry> rs = coll.retrieve(equal(CacheEntry.KEY, "key42"))){
+            assertEquals(1, rs.size());
+            assertTrue(rs.getRetrievalCost() < Integer.MAX_VALUE);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnreplicableIndexIsRejected(){
+        newCollection(0).addIndex(CompoundIndex.onAttributes(CacheEntry.KEY, CacheEntry.VAL));
+    }
+
+    @Test
+    public void testLazyResultSet(){
+        ShardedIndexedCollection<CacheEntry> coll = newCollection(100);
+        CacheEntry entry = coll.retrieve(equal(CacheEntry.KEY, "key7")).uniqueResult();
+
+        try(ResultSet<CacheEntry> rs = coll.retrieve(lessThan(CacheEntry.VAL, "val050"),
+                queryOptions(orderBy(ascending(CacheEntry.VAL))))){
+            assertTrue(rs.contains(entry));
+            assertFalse(rs.contains(new CacheEntry("key70", "val070")));
+            //Only the heads of the shards are read
+            assertEquals("val000", rs.iterator().next().getVal());
+        }
+    }
+    
+    @Test
+    public void testParallelShards(){
+        ShardedIndexedCollection<CacheEntry> coll = newCollection(100);
+        //Every shard must start evaluating the query before any of them goes on
+        AtomicReference<CountDownLatch> started = new AtomicReference<>();
+        AtomicBoolean overlapped = new AtomicBoolean(true);
+        
+        Attribute<CacheEntry,String> slowVal = new SimpleAttribute<CacheEntry,String>("slowVal"){
+            @Override
+            public String getValue(CacheEntry entry, QueryOptions qo) {
+                CountDownLatch latch = started.get();
+                latch.countDown();
+                try{
+                    if(!latch.await(5, TimeUnit.SECONDS))
+                        overlapped.set(false);
+                }
+                catch(InterruptedException ex){
+                    Thread.currentThread().interrupt();
+                }
+                return entry.getVal();
+            }
+        };
+        
+        for(QueryOptions options : Arrays.asList(noQueryOptions(), queryOptions(orderBy(descending(CacheEntry.VAL))))){
+            started.set(new CountDownLatch(coll.getShardCount()));
+            
+            try(ResultSet<CacheEntry> rs = coll.retrieve(startsWith(slowVal, "val"), options)){
+                assertEquals(100, StreamSupport.stream(rs.spliterator(), false).count());
+            }
+        }
+        
+        assertTrue(overlapped.get());
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cache.update;
+
+import com.googlecode.cqengine.IndexedCollection;
+import com.googlecode.cqengine.resultset.ResultSet;
+import static com.googlecode.cqengine.query.QueryFactory.*;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.bananarama.BananaRama;
+import org.bananarama.cache.IndexedCollectionAdapter;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class KeyedUpdateTest {
+    
+    private static final int KEYS = 4;
+    private static final int THREADS = 8;
+    private static final int UPDATES = 500;
+    
+    @Test
+    public void testConcurrentUpdates() throws Exception{
+        BananaRama bananarama = new BananaRama();
+        
+        bananarama.create(KeyedEntry.class)
+                .from(IntStream.range(0, KEYS).mapToObj(i -> new KeyedEntry(i, 0)));
+        
+        ExecutorService exec = Executors.newFixedThreadPool(THREADS);
+        
+        try{
+            //Each update replaces a key with a new, non equal, instance
+            List<Future<?>> results = IntStream.range(0, THREADS)
+                    .mapToObj(t -> exec.submit(() -> {
+                        for(int i=0;i<UPDATES;i++)
+                            bananarama.update(KeyedEntry.class)
+                                    .from(Stream.of(new KeyedEntry(i % KEYS, i)));
+                    }))
+                    .collect(Collectors.toList());
+            
+            for(Future<?> result : results)
+                result.get();
+        }
+        finally{
+            exec.shutdownNow();
+        }
+        
+        assertEquals(KEYS, bananarama.read(KeyedEntry.class).all().count());
+        
+        for(int i=0;i<KEYS;i++)
+            assertEquals(1, bananarama.read(KeyedEntry.class)
+                    .where(equal(KeyedEntry.ID, i))
+                    .count());
+    }
+    
+    @Test
+    public void testUpsert(){
+        BananaRama bananarama = new BananaRama();
+        //The buffer outlives the BananaRama instance, keys must not clash with other tests
+        final int offset = 100;
+        
+        bananarama.create(KeyedEntry.class)
+                .from(IntStream.range(offset, offset + KEYS).mapToObj(i -> new KeyedEntry(i, 0)));
+        
+        bananarama.upsert(KeyedEntry.class)
+                .from(IntStream.range(offset + KEYS/2, offset + KEYS*2).mapToObj(i -> new KeyedEntry(i, 1)));
+        
+        assertEquals(KEYS*2, bananarama.read(KeyedEntry.class)
+                .where(greaterThanOrEqualTo(KeyedEntry.ID, offset))
+                .count());
+        
+        for(int i=0;i<KEYS*2;i++)
+            assertEquals(i < KEYS/2 ? 0 : 1, bananarama.read(KeyedEntry.class)
+                    .where(equal(KeyedEntry.ID, offset + i))
+                    .findAny().get().getVersion());
+        
+        bananarama.delete(KeyedEntry.class)
+                .where(greaterThanOrEqualTo(KeyedEntry.ID, offset));
+        
+        assertEquals(0, bananarama.read(KeyedEntry.class)
+                .where(greaterThanOrEqualTo(KeyedEntry.ID, offset))
+                .count());
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPrimaryKeyIsIndexed() throws Exception{
+        BananaRama bananarama = new BananaRama();
+        
+        bananarama.create(LooseKeyedEntry.class)
+                .from(IntStream.range(0, KEYS).mapToObj(i -> new LooseKeyedEntry(i, 0)));
+        
+        Method m = IndexedCollectionAdapter.class.getDeclaredMethod("getCollection", Class.class);
+        m.setAccessible(true);
+        IndexedCollection<LooseKeyedEntry> coll = (IndexedCollection<LooseKeyedEntry>)m
+                .invoke(bananarama.using(IndexedCollectionAdapter.class), LooseKeyedEntry.class);
+        
+        //The key isn't annotated as indexed, the buffer must index it anyway
+        try(ResultSet<LooseKeyedEntry> rs = coll.retrieve(equal(LooseKeyedEntry.ID, 0))){
+            assertTrue(rs.getRetrievalCost() < Integer.MAX_VALUE);
+        }
+        
+        bananarama.update(LooseKeyedEntry.class)
+                .from(Stream.of(new LooseKeyedEntry(0, 1)));
+        
+        assertEquals(KEYS, bananarama.read(LooseKeyedEntry.class).all().count());
+        assertEquals(1, bananarama.read(LooseKeyedEntry.class)
+                .where(equal(LooseKeyedEntry.ID, 0))
+                .findAny().get().getVersion());
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cache.update;
+
+import com.googlecode.cqengine.attribute.SimpleAttribute;
+import com.googlecode.cqengine.query.option.QueryOptions;
+import org.bananarama.annotation.Banana;
+import org.bananarama.cache.IndexedCollectionAdapter;
+import org.bananarama.cache.annotation.BufferedOnIndexedCollection;
+import org.bananarama.cache.annotation.PrimaryKey;
+import org.bananarama.crud.util.NoOpAdapter;
+
+@BufferedOnIndexedCollection(backingAdapter = NoOpAdapter.class)
+@Banana(adapter = IndexedCollectionAdapter.class)
+public class LooseKeyedEntry {
+    private final int id;
+    private final int version;
+    
+    public LooseKeyedEntry(int id,int version){
+        this.id = id;
+        this.version = version;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+    
+    @PrimaryKey
+    public static final SimpleAttribute<LooseKeyedEntry,Integer> ID = new SimpleAttribute<LooseKeyedEntry, Integer>("id"){
+        @Override
+        public Integer getValue(LooseKeyedEntry o, QueryOptions qo) {
+            return o.id;
+        }
+    };
+}
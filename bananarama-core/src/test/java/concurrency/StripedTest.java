@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package concurrency;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.bananarama.concurrency.Striped;
+import org.bananarama.concurrency.StripedLock;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class StripedTest {
+    
+    private static final Object NEGATIVE_HASH = new Object(){
+        @Override
+        public int hashCode() {
+            return Integer.MIN_VALUE + 1;
+        }
+    };
+    
+    @Test
+    public void testNegativeHashCode(){
+        //Used to throw ArrayIndexOutOfBoundsException
+        assertNotNull(new StripedLock(7).getLock(NEGATIVE_HASH));
+        assertNotNull(Striped.readWriteLock(32).get(NEGATIVE_HASH));
+    }
+    
+    @Test
+    public void testPowerOfTwoStripes(){
+        assertEquals(1, Striped.lock(1).size());
+        assertEquals(8, Striped.lock(7).size());
+        assertEquals(8, Striped.lock(8).size());
+        assertEquals(16, Striped.stampedLock(9).size());
+    }
+    
+    @Test
+    public void testSpreading(){
+        //Multiples of the number of stripes all ended up on stripe 0
+        Striped<Lock> striped = Striped.lock(16);
+        long used = IntStream.range(0, 256)
+                .map(i -> striped.indexFor(i * 16))
+                .distinct()
+                .count();
+        
+        assertTrue("Only " + used + " stripes used",used > 8);
+    }
+    
+    @Test
+    public void testBulkGet(){
+        Striped<Lock> striped = Striped.lock(4);
+        List<Integer> keys = IntStream.range(0, 100)
+                .boxed()
+                .collect(Collectors.toList());
+        
+        List<Lock> locks = striped.bulkGet(keys);
+        
+        assertEquals(striped.size(), locks.size());
+        
+        for(int i=0;i<locks.size();i++)
+            assertSame(striped.getAt(i), locks.get(i));
+        
+        assertEquals(1, striped.bulkGet(Arrays.asList(1,1,1)).size());
+    }
+    
+    @Test
+    public void testConcurrentReaders() throws Exception{
+        Striped<ReadWriteLock> striped = Striped.readWriteLock(1);
+        int readers = 4;
+        CountDownLatch allIn = new CountDownLatch(readers);
+        ExecutorService exec = Executors.newFixedThreadPool(readers);
+        
+        try{
+            //Would time out if readers were serialized
+            List<Future<Boolean>> results = IntStream.range(0, readers)
+                    .mapToObj(i -> exec.submit(() -> {
+                        Lock lock = striped.get(i).readLock();
+                        lock.lock();
+                        try{
+                            allIn.countDown();
+                            return allIn.await(5, TimeUnit.SECONDS);
+                        }
+                        finally{
+                            lock.unlock();
+                        }
+                    }))
+                    .collect(Collectors.toList());
+            
+            for(Future<Boolean> result : results)
+                assertTrue(result.get());
+        }
+        finally{
+            exec.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testOptimisticRead(){
+        StampedLock lock = Striped.stampedLock(4).get("key");
+        long stamp = lock.tryOptimisticRead();
+        
+        assertTrue(lock.validate(stamp));
+        
+        long write = lock.writeLock();
+        lock.unlockWrite(write);
+        
+        assertFalse(lock.validate(stamp));
+    }
+}
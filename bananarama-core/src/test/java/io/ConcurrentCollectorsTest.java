@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.bananarama.io.ConcurrentDataCollector;
+import org.bananarama.io.DataCollector;
+import org.bananarama.io.PartitioningDataCollector;
+import static org.bananarama.io.IOUtils.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ConcurrentCollectorsTest {
+    
+    private static final int PRODUCERS = 4;
+    private static final int PER_PRODUCER = 25000;
+    
+    private static void produce(DataCollector<Integer> collector) throws Exception{
+        final ExecutorService executor = Executors.newFixedThreadPool(PRODUCERS);
+        
+        try{
+            final List<Future<?>> futures = new ArrayList<>();
+            
+            for(int p=0;p<PRODUCERS;p++){
+                final int offset = p * PER_PRODUCER;
+                futures.add(executor.submit(() -> collector.collect(
+                        IntStream.range(offset, offset + PER_PRODUCER).boxed().parallel())));
+            }
+            
+            for(Future<?> future : futures)
+                future.get();
+        }
+        finally{
+            executor.shutdown();
+        }
+    }
+    
+    @Test
+    public void testConcurrentCollector() throws Exception{
+        final ConcurrentDataCollector<Integer> collector = concurrently();
+        
+        produce(collector);
+        
+        assertEquals(IntStream.range(0, PRODUCERS * PER_PRODUCER).boxed().collect(Collectors.toList()),
+                collector.dump().sorted().collect(Collectors.toList()));
+    }
+    
+    @Test
+    public void testPartitioningCollector() throws Exception{
+        final PartitioningDataCollector<Integer,Integer> collector = andPartitionBy(i -> i % 3);
+        
+        produce(collector);
+        
+        assertEquals(3, collector.keys().size());
+        assertEquals(PRODUCERS * PER_PRODUCER, collector.dump().count());
+        assertTrue(collector.dump(1).allMatch(i -> i % 3 == 1));
+        assertEquals(0, collector.dump(5).count());
+        
+        final Map<Integer,Long> counts = collector.aggregate(Collectors.counting());
+        assertEquals(33334L, (long)counts.get(0));
+        assertEquals(33333L, (long)counts.get(1));
+        assertEquals(33333L, (long)counts.get(2));
+    }
+    
+    @Test
+    public void testOrderIsPreserved(){
+        final PartitioningDataCollector<Integer,Boolean> collector = andPartitionBy(i -> i % 2 == 0);
+        
+        collector.collect(IntStream.range(0, 1000).boxed().parallel());
+        
+        assertEquals(IntStream.range(0, 500).map(i -> i * 2).boxed().collect(Collectors.toList()),
+                collector.dump(true).collect(Collectors.toList()));
+    }
+}
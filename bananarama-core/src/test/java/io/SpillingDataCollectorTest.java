@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.bananarama.io.SpillingDataCollector;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class SpillingDataCollectorTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private static List<String> range(int from,int to){
+        return IntStream.range(from, to)
+                .mapToObj(i -> "obj" + i)
+                .collect(Collectors.toList());
+    }
+    
+    @Test
+    public void testSpilling() throws IOException{
+        final File dir = folder.newFolder();
+        
+        try(SpillingDataCollector<String> collector = new SpillingDataCollector<>(100, dir)){
+            collector.collect(range(0, 550).stream());
+            collector.collect(range(550, 1050).stream());
+            
+            assertEquals(10, collector.getSpilledChunks());
+            assertEquals(1, dir.list().length);
+            
+            try(Stream<String> dump = collector.dump()){
+                assertEquals(range(0, 1050), dump.collect(Collectors.toList()));
+            }
+            
+            //Dumps can be repeated and collection resumed afterwards
+            collector.collect(range(1050, 1100).stream());
+            
+            try(Stream<String> dump = collector.dump()){
+                assertEquals(range(0, 1100), dump.collect(Collectors.toList()));
+            }
+            
+            try(Stream<String> dump = collector.dump()){
+                assertEquals("obj5", dump.skip(5).findFirst().get());
+            }
+        }
+        
+        assertEquals(0, dir.list().length);
+    }
+    
+    @Test
+    public void testBelowThreshold() throws IOException{
+        final File dir = folder.newFolder();
+        
+        try(SpillingDataCollector<String> collector = new SpillingDataCollector<>(100, dir)){
+            collector.collect(range(0, 99).stream());
+            
+            assertEquals(0, collector.getSpilledChunks());
+            assertEquals(0, dir.list().length);
+            assertEquals(range(0, 99), collector.dump().collect(Collectors.toList()));
+        }
+    }
+}
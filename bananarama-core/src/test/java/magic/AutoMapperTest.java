@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package magic;
+
+import basic.ListAdapter;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.bananarama.BananaRama;
+import org.bananarama.crud.UpsertOperation;
+import org.bananarama.crud.magic.AutoMapper;
+import org.bananarama.crud.magic.MagicUpsertOperation;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class AutoMapperTest {
+    
+    @Test
+    public void testMapping(){
+        AutoMapper<AutoObj,AutoDto> mapper = AutoMapper.of(AutoObj.class, AutoDto.class);
+        AutoObj obj = new AutoObj(1, "one");
+        
+        AutoDto dto = mapper.toDto(obj);
+        assertEquals(1, dto.getId());
+        assertEquals("one", dto.getName());
+        assertNull(dto.getDate());
+        
+        AutoObj back = mapper.toObj(dto);
+        assertEquals(1, back.getId());
+        assertEquals("one", back.getName());
+        assertNull(back.getDate());
+        
+        assertNull(mapper.toDto(null));
+        assertSame(mapper, AutoMapper.of(AutoObj.class, AutoDto.class));
+    }
+    
+    @Test
+    public void testMagicAdapter(){
+        BananaRama bananarama = new BananaRama();
+        List<AutoObj> objs = IntStream.range(0, 10)
+                .mapToObj(i -> new AutoObj(i, "name" + i))
+                .collect(Collectors.toList());
+        
+        bananarama.create(AutoObj.class).from(objs.stream());
+        
+        assertEquals(objs.size(), bananarama.using(ListAdapter.class).read(AutoDto.class).all().count());
+        
+        List<String> names = bananarama.read(AutoObj.class)
+                .all()
+                .map(AutoObj::getName)
+                .sorted()
+                .collect(Collectors.toList());
+        
+        assertEquals(objs.stream().map(AutoObj::getName).sorted().collect(Collectors.toList()), names);
+    }
+    
+    @Test
+    public void testMagicUpsert(){
+        BananaRama bananarama = new BananaRama();
+        
+        //DTOs are upserted by the adapter of the DTO type
+        UpsertOperation<AutoObj> upsert = bananarama.upsert(AutoObj.class);
+        assertTrue(upsert instanceof MagicUpsertOperation);
+        
+        upsert.from(IntStream.range(0, 10).mapToObj(i -> new AutoObj(i, "name" + i)));
+        
+        assertEquals(10, bananarama.using(ListAdapter.class).read(AutoDto.class).all().count());
+    }
+    
+    @Test
+    public void testPrimitives(){
+        AutoMapper<Primitives,PrimitivesDto> mapper = AutoMapper.of(Primitives.class, PrimitivesDto.class);
+        Primitives obj = new Primitives();
+        obj.b = Byte.MIN_VALUE;
+        obj.s = Short.MAX_VALUE;
+        obj.c = 'x';
+        obj.i = -42;
+        obj.l = Long.MAX_VALUE;
+        obj.f = 1.5f;
+        obj.d = Double.NaN;
+        obj.z = true;
+        obj.values = new long[]{1,2,3};
+        
+        PrimitivesDto dto = mapper.toDto(obj);
+        assertEquals(Byte.MIN_VALUE, dto.b);
+        assertEquals(Short.MAX_VALUE, dto.s);
+        assertEquals('x', dto.c);
+        assertEquals(-42, dto.i);
+        assertEquals(Long.MAX_VALUE, dto.l);
+        assertEquals(1.5f, dto.f, 0);
+        assertTrue(Double.isNaN(dto.d));
+        assertTrue(dto.z);
+        assertSame(obj.values, dto.values);
+        
+        Primitives back = mapper.toObj(dto);
+        assertEquals(obj.l, back.l);
+        assertEquals(obj.c, back.c);
+        assertTrue(back.z);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoCommonFields(){
+        AutoMapper.of(AutoObj.class, Object.class);
+    }
+    
+    private static class Primitives{
+        byte b;
+        short s;
+        char c;
+        int i;
+        long l;
+        float f;
+        double d;
+        boolean z;
+        long[] values;
+    }
+    
+    private static class PrimitivesDto{
+        byte b;
+        short s;
+        char c;
+        int i;
+        long l;
+        float f;
+        double d;
+        boolean z;
+        long[] values;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package magic;
+
+import java.time.LocalDate;
+import org.bananarama.annotation.Banana;
+import org.bananarama.annotation.MapWith;
+import org.bananarama.crud.magic.MagicAdapter;
+
+@MapWith(dto = AutoDto.class)
+@Banana(adapter = MagicAdapter.class)
+public class AutoObj {
+    private int id;
+    private String name;
+    //Not mapped, the DTO field has a different type
+    private LocalDate date;
+    
+    public AutoObj(){
+        
+    }
+    
+    public AutoObj(int id,String name){
+        this.id = id;
+        this.name = name;
+        this.date = LocalDate.now();
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package magic;
+
+import basic.ListAdapter;
+import static com.googlecode.cqengine.query.QueryFactory.*;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.bananarama.crud.magic.MagicCreateOperation;
+import org.bananarama.crud.magic.MagicOperationOptions;
+import org.bananarama.crud.magic.MagicReadOperation;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BatchMappingTest {
+    
+    private static class CountingMapper extends MappedMapper{
+        private final AtomicInteger toDtos = new AtomicInteger();
+        private final AtomicInteger toObjs = new AtomicInteger();
+
+        @Override
+        public List<MappedDto> toDtos(List<MappedObj> objs) {
+            toDtos.incrementAndGet();
+            return super.toDtos(objs);
+        }
+
+        @Override
+        public List<MappedObj> toObjs(List<MappedDto> dtos) {
+            toObjs.incrementAndGet();
+            return super.toObjs(dtos);
+        }
+    }
+    
+    @Test
+    public void testBatches(){
+        ListAdapter backend = new ListAdapter();
+        CountingMapper mapper = new CountingMapper();
+        
+        new MagicCreateOperation<>(mapper, backend.create(MappedDto.class))
+                .from(IntStream.range(0, 10).mapToObj(i -> new MappedObj(i, "name" + i)),
+                        queryOptions(MagicOperationOptions.chunkSize(4)));
+        
+        assertEquals(3, mapper.toDtos.get());
+        
+        long read = new MagicReadOperation<>(mapper, backend.read(MappedDto.class))
+                .all(queryOptions(MagicOperationOptions.chunkSize(5)))
+                .count();
+        
+        assertEquals(10, read);
+        assertEquals(2, mapper.toObjs.get());
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package magic;
+
+import com.googlecode.cqengine.attribute.Attribute;
+import java.util.Collections;
+import java.util.Map;
+import org.bananarama.crud.magic.ObjToDto;
+
+public class MappedMapper implements ObjToDto<MappedObj, MappedDto>{
+
+    @Override
+    public MappedDto toDto(MappedObj obj) {
+        return new MappedDto(obj.getId(), obj.getName());
+    }
+
+    @Override
+    public MappedObj toObj(MappedDto dto) {
+        return new MappedObj(dto.getCode(), dto.getLabel());
+    }
+
+    @Override
+    public Class<MappedDto> dtoType() {
+        return MappedDto.class;
+    }
+
+    @Override
+    public Class<MappedObj> objType() {
+        return MappedObj.class;
+    }
+
+    @Override
+    public Map<Attribute<MappedObj, ?>, Attribute<MappedDto, ?>> attributeMapping() {
+        return Collections.singletonMap(MappedObj.ID, MappedDto.CODE);
+    }
+    
+}
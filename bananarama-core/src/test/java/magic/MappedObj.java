@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package magic;
+
+import com.googlecode.cqengine.attribute.Attribute;
+import com.googlecode.cqengine.attribute.SimpleAttribute;
+import com.googlecode.cqengine.query.option.QueryOptions;
+import org.bananarama.annotation.Banana;
+import org.bananarama.annotation.MapWith;
+import org.bananarama.crud.magic.MagicAdapter;
+
+@MapWith(MappedMapper.class)
+@Banana(adapter = MagicAdapter.class)
+public class MappedObj {
+    private final int id;
+    private final String name;
+    
+    public MappedObj(int id,String name){
+        this.id = id;
+        this.name = name;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+    
+    public static final Attribute<MappedObj,Integer> ID = new SimpleAttribute<MappedObj, Integer>("id"){
+        @Override
+        public Integer getValue(MappedObj o, QueryOptions qo) {
+            return o.id;
+        }
+    };
+    
+    //Not mapped on the DTO
+    public static final Attribute<MappedObj,String> NAME = new SimpleAttribute<MappedObj, String>("name"){
+        @Override
+        public String getValue(MappedObj o, QueryOptions qo) {
+            return o.name;
+        }
+    };
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package magic;
+
+import static com.googlecode.cqengine.query.QueryFactory.*;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.bananarama.BananaRama;
+import org.bananarama.crud.magic.MagicOperationOptions;
+import org.bananarama.util.StreamUtils;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ParallelMagicTest {
+    
+    private static final int SIZE = 1000;
+    
+    private static List<Integer> ids(Stream<AutoObj> objs){
+        return objs.map(AutoObj::getId)
+                .collect(Collectors.toList());
+    }
+    
+    @Test
+    public void testChunked(){
+        List<List<Integer>> chunks = StreamUtils.chunked(IntStream.range(0, 10).boxed(), 4)
+                .collect(Collectors.toList());
+        
+        assertEquals(3, chunks.size());
+        assertEquals(4, chunks.get(0).size());
+        assertEquals(2, chunks.get(2).size());
+    }
+    
+    @Test
+    public void testParallelMapping(){
+        BananaRama bananarama = new BananaRama();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        List<Integer> expected = IntStream.range(0, SIZE)
+                .boxed()
+                .collect(Collectors.toList());
+        
+        try{
+            bananarama.create(AutoObj.class)
+                    .from(expected.stream().map(i -> new AutoObj(i, "name" + i)),
+                            queryOptions(MagicOperationOptions.parallel(16, pool)));
+            
+            assertEquals(expected, ids(bananarama.read(AutoObj.class)
+                    .all(queryOptions(MagicOperationOptions.parallel(16, pool)))));
+            
+            assertEquals(expected, ids(bananarama.read(AutoObj.class)
+                    .all(queryOptions(MagicOperationOptions.PARALLEL_UNORDERED)))
+                    .stream()
+                    .sorted()
+                    .collect(Collectors.toList()));
+        }
+        finally{
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package magic;
+
+import com.googlecode.cqengine.query.Query;
+import static com.googlecode.cqengine.query.QueryFactory.*;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.bananarama.BananaRama;
+import org.bananarama.crud.Page;
+import org.bananarama.crud.ReadOperation;
+import org.bananarama.crud.magic.QueryTranslator;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class QueryTranslationTest {
+    
+    private final MappedMapper mapper = new MappedMapper();
+    
+    @Test
+    public void testTranslation(){
+        Query<MappedDto> translated = QueryTranslator.translate(
+                and(greaterThan(MappedObj.ID, 3), not(in(MappedObj.ID, 5, 6))), mapper);
+        
+        assertEquals(and(greaterThan(MappedDto.CODE, 3), not(in(MappedDto.CODE, 5, 6))), translated);
+        assertNull(QueryTranslator.translate(or(equal(MappedObj.ID, 1), equal(MappedObj.NAME, "a")), mapper));
+    }
+    
+    @Test
+    public void testPushDownAndFallback(){
+        BananaRama bananarama = new BananaRama();
+        
+        bananarama.create(MappedObj.class)
+                .from(IntStream.range(0, 10).mapToObj(i -> new MappedObj(i, "name" + i)));
+        
+        //Executed by the DTO layer
+        assertEquals(3, bananarama.read(MappedObj.class)
+                .where(lessThan(MappedObj.ID, 3))
+                .count());
+        
+        //Filtered in memory
+        assertEquals(1, bananarama.read(MappedObj.class)
+                .where(equal(MappedObj.NAME, "name7"))
+                .count());
+        
+        bananarama.delete(MappedObj.class).where(lessThan(MappedObj.ID, 3));
+        assertEquals(7, bananarama.read(MappedDto.class).all().count());
+        
+        bananarama.delete(MappedObj.class).where(equal(MappedObj.NAME, "name7"));
+        assertEquals(6, bananarama.read(MappedDto.class).all().count());
+    }
+    
+    @Test
+    public void testAggregatesAndPages(){
+        BananaRama bananarama = new BananaRama();
+        
+        //Cached DTOs are shared with the other tests
+        bananarama.delete(MappedDto.class).all();
+        bananarama.create(MappedObj.class)
+                .from(IntStream.range(0, 10).mapToObj(i -> new MappedObj(i, "name" + (i % 2))));
+        
+        final ReadOperation<MappedObj> read = bananarama.read(MappedObj.class);
+        
+        //Computed by the DTO layer
+        assertEquals(10, read.count(null, noQueryOptions()));
+        assertEquals(3, read.count(lessThan(MappedObj.ID, 3), noQueryOptions()));
+        assertEquals(Integer.valueOf(9), read.max(MappedObj.ID, null, noQueryOptions()).get());
+        assertEquals(Integer.valueOf(5), read.min(MappedObj.ID, greaterThan(MappedObj.ID, 4), noQueryOptions()).get());
+        assertEquals(3.0, read.sum(MappedObj.ID, lessThan(MappedObj.ID, 3), noQueryOptions()), 0.0);
+        assertTrue(read.exists(greaterThan(MappedObj.ID, 8), noQueryOptions()));
+        assertFalse(read.exists(greaterThan(MappedObj.ID, 9), noQueryOptions()));
+        
+        //Unmapped attributes are aggregated in memory
+        assertEquals("name1", read.max(MappedObj.NAME, lessThan(MappedObj.ID, 4), noQueryOptions()).get());
+        assertEquals(Long.valueOf(2), read.countBy(MappedObj.NAME, lessThan(MappedObj.ID, 4), noQueryOptions()).get("name0"));
+        
+        Page<MappedObj,Integer> page = read.page(lessThan(MappedObj.ID, 8), MappedObj.ID, 5, null);
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), page.getItems().stream().map(MappedObj::getId).collect(Collectors.toList()));
+        
+        page = read.page(lessThan(MappedObj.ID, 8), MappedObj.ID, 5, page.getNextToken());
+        assertEquals(Arrays.asList(5, 6, 7), page.getItems().stream().map(MappedObj::getId).collect(Collectors.toList()));
+        assertFalse(page.hasNext());
+        
+        bananarama.delete(MappedDto.class).all();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package welding;
+
+import basic.ListAdapter;
+import com.googlecode.cqengine.query.option.QueryOptions;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Stream;
+import org.bananarama.crud.ReadOperation;
+
+/**
+ * {@link ListAdapter} whose reads take the given time
+ */
+public class DelayedAdapter extends ListAdapter{
+    
+    private volatile long delay;
+    
+    public DelayedAdapter(long delay){
+        this.delay = delay;
+    }
+    
+    public void setDelay(long delay) {
+        this.delay = delay;
+    }
+    
+    private void sleep(){
+        try{
+            Thread.sleep(delay);
+        }
+        catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Override
+    public <T> ReadOperation<T> read(Class<T> clazz) {
+        final ReadOperation<T> read = super.read(clazz);
+        
+        return new ReadOperation<T>() {
+            @Override
+            public Stream<T> all() {
+                sleep();
+                return read.all();
+            }
+
+            @Override
+            public Stream<T> all(QueryOptions options) {
+                return all();
+            }
+
+            @Override
+            public <Q> Stream<T> where(Q whereClause) {
+                sleep();
+                return read.where(whereClause);
+            }
+
+            @Override
+            public <Q> Stream<T> where(Q whereClause, QueryOptions options) {
+                return where(whereClause);
+            }
+
+            @Override
+            public Stream<T> fromKeys(List<?> keys) {
+                sleep();
+                return read.fromKeys(keys);
+            }
+
+            @Override
+            public Stream<T> fromKeys(List<?> keys, QueryOptions options) {
+                return fromKeys(keys);
+            }
+
+            @Override
+            public void close() throws IOException {
+                read.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package welding;
+
+import basic.ListAdapter;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.bananarama.crud.Adapter;
+import org.bananarama.crud.ReadOperation;
+import org.bananarama.crud.util.RoutingWeldingAdapter;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+@SuppressWarnings("unchecked")
+public class RoutingTest {
+    
+    private static class Routing extends RoutingWeldingAdapter<Object>{
+        private Routing(Adapter<Object>... adapters){
+            super(adapters);
+        }
+    }
+    
+    private static class FailingReadAdapter extends ListAdapter{
+        @Override
+        public <T> ReadOperation<T> read(Class<T> clazz) {
+            throw new IllegalStateException("Failing on purpose");
+        }
+    }
+    
+    private static long timedRead(Routing routing){
+        long start = System.currentTimeMillis();
+        assertEquals(10, routing.read(VersionedEntry.class).all().count());
+        return System.currentTimeMillis() - start;
+    }
+    
+    private static void populate(Routing routing){
+        routing.create(VersionedEntry.class)
+                .from(IntStream.range(0, 10).mapToObj(i -> new VersionedEntry("key" + i, 0)));
+    }
+    
+    @Test
+    public void testFastestReplica(){
+        DelayedAdapter slow = new DelayedAdapter(300);
+        DelayedAdapter fast = new DelayedAdapter(0);
+        Routing routing = new Routing(slow, fast);
+        
+        populate(routing);
+        
+        //The first read is hedged on the fast replica
+        assertTrue(timedRead(routing) < 250);
+        
+        for(int i=0;i<5;i++)
+            assertTrue(timedRead(routing) < 250);
+        
+        assertTrue(routing.getAverageLatency(fast) < routing.getAverageLatency(slow) 
+                || routing.getAverageLatency(slow) == 0);
+    }
+    
+    @Test
+    public void testEjection(){
+        FailingReadAdapter failing = new FailingReadAdapter();
+        DelayedAdapter healthy = new DelayedAdapter(0);
+        Routing routing = new Routing(failing, healthy);
+        
+        populate(routing);
+        
+        for(int i=0;i<5;i++)
+            timedRead(routing);
+        
+        assertTrue(routing.isEjected(failing));
+        assertFalse(routing.isEjected(healthy));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownAdapter(){
+        new Routing(new DelayedAdapter(0), new DelayedAdapter(0))
+                .getAverageLatency(new DelayedAdapter(0));
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package welding;
+
+import basic.ListAdapter;
+import com.googlecode.cqengine.attribute.Attribute;
+import com.googlecode.cqengine.attribute.SimpleAttribute;
+import static com.googlecode.cqengine.query.QueryFactory.descending;
+import static com.googlecode.cqengine.query.QueryFactory.noQueryOptions;
+import static com.googlecode.cqengine.query.QueryFactory.orderBy;
+import static com.googlecode.cqengine.query.QueryFactory.queryOptions;
+import com.googlecode.cqengine.query.option.QueryOptions;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.bananarama.crud.Adapter;
+import org.bananarama.crud.CreateOperation;
+import org.bananarama.crud.Limit;
+import org.bananarama.crud.Page;
+import org.bananarama.crud.ReadOperation;
+import org.bananarama.crud.UpsertOperation;
+import org.bananarama.crud.util.MergePolicy;
+import org.bananarama.crud.util.WeldingAdapter;
+import org.bananarama.crud.util.WritePolicy;
+import org.bananarama.exception.FailedOperationException;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+@SuppressWarnings("unchecked")
+public class WeldingTest {
+    
+    private final DelayedAdapter first = new DelayedAdapter(0);
+    private final DelayedAdapter second = new DelayedAdapter(0);
+    
+    public WeldingTest(){
+        first.create(VersionedEntry.class)
+                .from(Stream.of(new VersionedEntry("k1", 1)));
+        second.create(VersionedEntry.class)
+                .from(Stream.of(new VersionedEntry("k1", 2), new VersionedEntry("k2", 1)));
+    }
+    
+    private static class Welding extends WeldingAdapter<Object>{
+        private final long timeout;
+        private WritePolicy writePolicy = WritePolicy.ALL_MUST_SUCCEED;
+        
+        private Welding(long timeout,Adapter<Object>... adapters){
+            super(adapters);
+            this.timeout = timeout;
+        }
+
+        @Override
+        protected long readTimeout() {
+            return timeout;
+        }
+
+        @Override
+        protected WritePolicy writePolicy() {
+            return writePolicy;
+        }
+
+        @Override
+        protected Object keyOf(Object obj) {
+            return ((VersionedEntry)obj).getKey();
+        }
+
+        @Override
+        protected Comparable<?> versionOf(Object obj) {
+            return ((VersionedEntry)obj).getVersion();
+        }
+    }
+    
+    private static Welding welding(MergePolicy policy,long timeout,Adapter<Object>... adapters){
+        //The policy is captured before the constructor runs
+        return new Welding(timeout, adapters){
+            @Override
+            protected MergePolicy mergePolicy() {
+                return policy;
+            }
+        };
+    }
+    
+    private Map<String,Integer> read(MergePolicy policy){
+        return welding(policy, 0, first, second)
+                .read(VersionedEntry.class)
+                .all()
+                .collect(Collectors.toMap(VersionedEntry::getKey, VersionedEntry::getVersion));
+    }
+    
+    @Test
+    public void testConcatenate(){
+        assertEquals(3, welding(MergePolicy.CONCATENATE, 0, first, second)
+                .read(VersionedEntry.class)
+                .all()
+                .count());
+    }
+    
+    private static final Attribute<VersionedEntry,String> KEY = new SimpleAttribute<VersionedEntry,String>("key"){
+        @Override
+        public String getValue(VersionedEntry entry, QueryOptions qo) {
+            return entry.getKey();
+        }
+    };
+    
+    private static final Attribute<VersionedEntry,Integer> VERSION = new SimpleAttribute<VersionedEntry,Integer>("version"){
+        @Override
+        public Integer getValue(VersionedEntry entry, QueryOptions qo) {
+            return entry.getVersion();
+        }
+    };
+    
+    @Test
+    public void testAggregates(){
+        final ReadOperation<VersionedEntry> concatenated = welding(MergePolicy.CONCATENATE, 0, first, second)
+                .read(VersionedEntry.class);
+        
+        assertEquals(3, concatenated.count(null, noQueryOptions()));
+        assertEquals(Integer.valueOf(2), concatenated.max(VERSION, null, noQueryOptions()).get());
+        assertEquals(4.0/3, concatenated.avg(VERSION, null, noQueryOptions()).getAsDouble(), 1e-9);
+        assertEquals(Long.valueOf(2), concatenated.countBy(KEY, null, noQueryOptions()).get("k1"));
+        
+        //Merged results can't be combined from each adapter
+        final ReadOperation<VersionedEntry> merged = welding(MergePolicy.FIRST_WINS, 0, first, second)
+                .read(VersionedEntry.class);
+        
+        assertEquals(2, merged.count(null, noQueryOptions()));
+        assertEquals(2.0, merged.sum(VERSION, null, noQueryOptions()), 0.0);
+        assertEquals(Long.valueOf(1), merged.countBy(KEY, null, noQueryOptions()).get("k1"));
+    }
+    
+    @Test
+    public void testOrderedConcatenation(){
+        final ReadOperation<VersionedEntry> read = welding(MergePolicy.CONCATENATE, 0, first, second)
+                .read(VersionedEntry.class);
+        final Limit limit = () -> 2;
+        
+        assertEquals(Arrays.asList(2, 1, 1), read.all(queryOptions(orderBy(descending(VERSION))))
+                .map(VersionedEntry::getVersion)
+                .collect(Collectors.toList()));
+        
+        assertEquals(Arrays.asList(2, 1), read.all(queryOptions(orderBy(descending(VERSION)), limit))
+                .map(VersionedEntry::getVersion)
+                .collect(Collectors.toList()));
+    }
+    
+    @Test
+    public void testPage(){
+        final ReadOperation<VersionedEntry> read = welding(MergePolicy.FIRST_WINS, 0, first, second)
+                .read(VersionedEntry.class);
+        
+        Page<VersionedEntry,String> page = read.page(null, KEY, 1, null);
+        assertEquals(1, page.getItems().get(0).getVersion());
+        
+        page = read.page(null, KEY, 1, page.getNextToken());
+        assertEquals("k2", page.getItems().get(0).getKey());
+        
+        assertEquals(Arrays.asList("k1", "k2"), read.page(null, KEY, 5, null).getItems().stream()
+                .map(VersionedEntry::getKey)
+                .collect(Collectors.toList()));
+    }
+    
+    @Test
+    public void testFirstWins(){
+        Map<String,Integer> read = read(MergePolicy.FIRST_WINS);
+        
+        assertEquals(2, read.size());
+        assertEquals(1, (int)read.get("k1"));
+    }
+    
+    @Test
+    public void testNewestWins(){
+        Map<String,Integer> read = read(MergePolicy.NEWEST_WINS);
+        
+        assertEquals(2, read.size());
+        assertEquals(2, (int)read.get("k1"));
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void testNewestWinsRequiresVersion(){
+        new WeldingAdapter<Object>(first, second){
+            @Override
+            protected MergePolicy mergePolicy() {
+                return MergePolicy.NEWEST_WINS;
+            }
+        };
+    }
+    
+    @Test
+    public void testDedupe(){
+        first.setDelay(300);
+        Map<String,Integer> read = read(MergePolicy.DEDUPE);
+        
+        //Second adapter answered first
+        assertEquals(2, read.size());
+        assertEquals(2, (int)read.get("k1"));
+    }
+    
+    @Test
+    public void testConcurrentReads(){
+        first.setDelay(400);
+        second.setDelay(400);
+        
+        long start = System.currentTimeMillis();
+        read(MergePolicy.FIRST_WINS);
+        
+        assertTrue(System.currentTimeMillis() - start < 750);
+    }
+    
+    @Test(expected = FailedOperationException.class)
+    public void testTimeout(){
+        first.setDelay(2000);
+        
+        welding(MergePolicy.CONCATENATE, 100, first, second)
+                .read(VersionedEntry.class)
+                .all();
+    }
+    
+    private static class FailingAdapter extends ListAdapter{
+        @Override
+        public <T> CreateOperation<T> create(Class<T> clazz) {
+            throw new IllegalStateException("Failing on purpose");
+        }
+    }
+    
+    private static class UpsertingAdapter extends ListAdapter{
+        private final List<Object> upserted = new ArrayList<>();
+        
+        @Override
+        public <T> UpsertOperation<T> upsert(Class<T> clazz) {
+            return new UpsertOperation<T>() {
+                @Override
+                public UpsertOperation<T> from(Stream<T> data) {
+                    data.forEach(upserted::add);
+                    return this;
+                }
+
+                @Override
+                public UpsertOperation<T> from(Stream<T> data, QueryOptions options) {
+                    return from(data);
+                }
+
+                @Override
+                public void close() throws IOException {
+                }
+            };
+        }
+    }
+    
+    private static Stream<VersionedEntry> entries(int n){
+        return IntStream.range(0, n)
+                .mapToObj(i -> new VersionedEntry("key" + i, 0));
+    }
+    
+    @Test
+    public void testFanOut(){
+        ListAdapter a = new ListAdapter();
+        ListAdapter b = new ListAdapter();
+        
+        //Spans several chunks, the stream is consumed only once
+        welding(MergePolicy.CONCATENATE, 0, a, b)
+                .create(VersionedEntry.class)
+                .from(entries(2500));
+        
+        assertEquals(2500, a.read(VersionedEntry.class).all().count());
+        assertEquals(2500, b.read(VersionedEntry.class).all().count());
+    }
+    
+    @Test
+    public void testUpsert(){
+        UpsertingAdapter a = new UpsertingAdapter();
+        UpsertingAdapter b = new UpsertingAdapter();
+        
+        //Adapters upsert natively, chunk by chunk
+        welding(MergePolicy.CONCATENATE, 0, a, b)
+                .upsert(VersionedEntry.class)
+                .from(entries(2500));
+        
+        assertEquals(2500, a.upserted.size());
+        assertEquals(2500, b.upserted.size());
+    }
+    
+    @Test(expected = FailedOperationException.class)
+    public void testAllMustSucceed(){
+        welding(MergePolicy.CONCATENATE, 0, new ListAdapter(), new FailingAdapter())
+                .create(VersionedEntry.class)
+                .from(entries(10));
+    }
+    
+    @Test
+    public void testBestEffort(){
+        ListAdapter a = new ListAdapter();
+        Welding welding = welding(MergePolicy.CONCATENATE, 0, a, new FailingAdapter());
+        welding.writePolicy = WritePolicy.BEST_EFFORT;
+        
+        welding.create(VersionedEntry.class)
+                .from(entries(2500));
+        
+        assertEquals(2500, a.read(VersionedEntry.class).all().count());
+    }
+}
@@ -36,16 +36,23 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.IntFunction;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import javax.sql.DataSource;
 import org.bananarama.exception.BananaRamaException;
+import org.bananarama.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,6 +66,14 @@ public abstract class AbstractSqlOperation <T> implements AutoCloseable{
     protected final DataSource dataSource;
     protected String tableName;
     
+    /**
+     * Default maximum number of parameters bound to a single statement
+     */
+    protected static final int MAX_PARAMETERS = 2000;
+    
+    //Allowed sizes of the chunks of keys in set-based statements
+    private static final int[] KEY_BUCKETS = {1,8,32,128,512};
+    
     private List<Getter> getters;
     private List<Setter> setters;
     
@@ -94,6 +109,35 @@ public abstract class AbstractSqlOperation <T> implements AutoCloseable{
         return tableName;
     }
     
+    /**
+     * @param options
+     * @return true if the {@link SqlOperationOptions} in the given
+     * options require set-based statements
+     */
+    protected static boolean isSetBased(QueryOptions options){
+        SqlOperationOptions sqlOpts;
+        
+        return options != null 
+                && (sqlOpts = options.get(SqlOperationOptions.class)) != null
+                && sqlOpts.isSetBased();
+    }
+    
+    /**
+     * @param options
+     * @return the maximum number of parameters bound to a single statement,
+     * as set by the {@link SqlOperationOptions} in the given options
+     */
+    protected static int getMaxParameters(QueryOptions options){
+        SqlOperationOptions sqlOpts;
+        
+        if(options != null 
+                && (sqlOpts = options.get(SqlOperationOptions.class)) != null
+                && sqlOpts.getMaxParameters() != null)
+            return sqlOpts.getMaxParameters();
+        
+        return MAX_PARAMETERS;
+    }
+    
     protected List<Getter> getGetters(){
         
         if(getters == null)
@@ -129,35 +173,126 @@ public abstract class AbstractSqlOperation <T> implements AutoCloseable{
         return readers;
     }
     
-    @SuppressWarnings("rawtypes")
+    /**
+     * All rows are read before returning, so that the connection
+     * is released right away
+     * @param sql
+     * @param accessors
+     * @param preprocessor
+     * @return the {@link Stream} of data
+     */
     protected Stream<T> readFromDb(String sql,List<Setter> accessors,PreparedStatementPreprocessor preprocessor){
+        try(Stream<T> rows = streamFromDb(sql, accessors, preprocessor)){
+            return rows.collect(Collectors.toList()).stream();
+        }
+    }
+    
+    /**
+     * Rows are read lazily while the returned {@link Stream} is consumed,
+     * the connection is released once all rows have been read or
+     * the stream is closed. Streams which are not fully consumed must be closed.
+     * @param sql
+     * @param accessors
+     * @param preprocessor
+     * @return the {@link Stream} of data
+     */
+    @SuppressWarnings("rawtypes")
+    protected Stream<T> streamFromDb(String sql,List<Setter> accessors,PreparedStatementPreprocessor preprocessor){
         final List<SqlTypeConverter> typeConverters = prepareConverters(accessors);
+        Connection conn = null;
+        PreparedStatement ps = null;
         
-        try(Connection conn = dataSource.getConnection();
-                PreparedStatement ps = conn.prepareStatement(sql)){
+        try{
+            conn = dataSource.getConnection();
+            ps = conn.prepareStatement(sql);
             preprocessor.process(ps);
-            try(ResultSet rs = ps.executeQuery()){
-                List<T> records = new ArrayList<>();
-                while(rs.next()){
-                    
-                    T record = clazz.newInstance();
-                    for(int i=0;i<accessors.size();i++)
-                        accessors.get(i).accept(record,typeConverters.get(i).read(rs, i+1));
-                    
-                    records.add(record);
-                }
-                return records.stream();
-            }
+            
+            final RowSpliterator rows = new RowSpliterator(conn, ps, ps.executeQuery(), accessors, typeConverters);
+            return StreamSupport.stream(rows, false).onClose(rows::close);
         }
         catch(Exception ex){
-            final Exception sub;
+            closeQuietly(ps);
+            closeQuietly(conn);
+            throw readFailure(ex);
+        }
+    }
+    
+    private FailedOperationException readFailure(Exception ex){
+        final Exception sub;
+
+        if(ex instanceof SQLException)
+            sub = findCause((SQLException)ex);
+        else 
+            sub = ex;
+
+        return new FailedOperationException("Reading data from database failed (" +clazz.getName()+")" + sub.getMessage(),sub);
+    }
+    
+    private void closeQuietly(AutoCloseable resource){
+        if(resource != null)
+            try{
+                resource.close();
+            }
+            catch(Exception ex){
+                log.warn("Can't release " + resource, ex);
+            }
+    }
+    
+    /**
+     * Maps one row at a time, holding the connection until the
+     * last row is read or it is closed
+     */
+    @SuppressWarnings("rawtypes")
+    private class RowSpliterator extends Spliterators.AbstractSpliterator<T>{
+        private final Connection conn;
+        private final PreparedStatement ps;
+        private final ResultSet rs;
+        private final List<Setter> accessors;
+        private final List<SqlTypeConverter> typeConverters;
+        private boolean closed;
+
+        private RowSpliterator(Connection conn,PreparedStatement ps,ResultSet rs,List<Setter> accessors,List<SqlTypeConverter> typeConverters){
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.conn = conn;
+            this.ps = ps;
+            this.rs = rs;
+            this.accessors = accessors;
+            this.typeConverters = typeConverters;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if(closed)
+                return false;
             
-            if(ex instanceof SQLException)
-                sub = findCause((SQLException)ex);
-            else 
-                sub = ex;
+            final T record;
+            
+            try{
+                if(!rs.next()){
+                    close();
+                    return false;
+                }
+                
+                record = clazz.newInstance();
+                for(int i=0;i<accessors.size();i++)
+                    accessors.get(i).accept(record,typeConverters.get(i).read(rs, i+1));
+            }
+            catch(Exception ex){
+                close();
+                throw readFailure(ex);
+            }
             
-            throw new FailedOperationException("Reading data from database failed (" +clazz.getName()+")" + sub.getMessage(),sub);
+            action.accept(record);
+            return true;
+        }
+        
+        private void close(){
+            if(!closed){
+                closed = true;
+                closeQuietly(rs);
+                closeQuietly(ps);
+                closeQuietly(conn);
+            }
         }
     }
     
@@ -197,6 +332,153 @@ public abstract class AbstractSqlOperation <T> implements AutoCloseable{
         return affected;
     }
     
+    /**
+     * Executes a set-based statement for each chunk, on a single connection
+     * and in a single transaction. Chunks of the same size share the
+     * same statement
+     * @param <C> the type of the elements of each chunk
+     * @param chunks
+     * @param sqlForSize builds the statement for chunks of the given size
+     * @param binder binds the parameters of each chunk
+     * @return the number of affected records
+     */
+    protected <C> int executeChunks(Iterable<List<C>> chunks,IntFunction<String> sqlForSize,ChunkBinder<C> binder){
+        final Map<Integer,PreparedStatement> statements = new HashMap<>();
+        int affected = 0;
+        
+        try(Connection conn = dataSource.getConnection()){
+            conn.setAutoCommit(false);
+            
+            try{
+                for(List<C> chunk : chunks){
+                    PreparedStatement ps = statements.get(chunk.size());
+                    
+                    if(ps == null){
+                        ps = conn.prepareStatement(sqlForSize.apply(chunk.size()));
+                        statements.put(chunk.size(), ps);
+                    }
+                    
+                    binder.bind(ps, chunk);
+                    affected += ps.executeUpdate();
+                }
+                
+                conn.commit();
+            }
+            finally{
+                for(PreparedStatement ps : statements.values())
+                    ps.close();
+            }
+        }
+        catch(Exception ex){
+            final Exception sub;
+            
+            if(ex instanceof SQLException)
+                sub = findCause((SQLException)ex);
+            else 
+                sub = ex;
+            
+            throw new FailedOperationException("Writing data on DB failed (" +clazz.getName()+")", sub);
+        }
+        
+        return affected;
+    }
+    
+    /**
+     * Splits the items in chunks whose sizes are taken from a fixed set of 
+     * buckets, padding the last chunk by repeating its last item, so that
+     * statements built on chunks come in a handful of shapes only
+     * @param <E>
+     * @param items
+     * @param maxSize the maximum size of a chunk
+     * @return the chunks
+     */
+    protected static <E> List<List<E>> chunk(List<E> items,int maxSize){
+        final int maxBucket = largestBucket(maxSize);
+        final List<List<E>> chunks = new ArrayList<>(items.size() / maxBucket + 1);
+        
+        for(int from=0;from<items.size();from+=maxBucket){
+            final List<E> chunk = new ArrayList<>(items.subList(from, Math.min(items.size(), from + maxBucket)));
+            final int bucket = bucketFor(chunk.size());
+            final E padding = chunk.get(chunk.size() - 1);
+            
+            while(chunk.size() < bucket)
+                chunk.add(padding);
+            
+            chunks.add(chunk);
+        }
+        
+        return chunks;
+    }
+    
+    /**
+     * Splits the items in chunks whose sizes are taken from the same buckets
+     * used by {@link #chunk(java.util.List, int)}, largest first, without
+     * padding. Useful when elements can't be repeated (e.g. inserts)
+     * @param <E>
+     * @param items
+     * @param maxSize the maximum size of a chunk
+     * @return the chunks
+     */
+    protected static <E> List<List<E>> split(List<E> items,int maxSize){
+        final List<List<E>> chunks = new ArrayList<>();
+        int from = 0;
+        
+        for(int b=KEY_BUCKETS.length-1;b>=0;b--){
+            final int bucket = KEY_BUCKETS[b];
+            
+            if(bucket > maxSize && b > 0)
+                continue;
+            
+            for(;items.size() - from >= bucket;from += bucket)
+                chunks.add(items.subList(from, from + bucket));
+        }
+        
+        return chunks;
+    }
+    
+    /**
+     * @param maxSize
+     * @return the largest bucket not exceeding the given size, 
+     * the smallest bucket if there is none
+     */
+    protected static int largestBucket(int maxSize){
+        int maxBucket = KEY_BUCKETS[0];
+        
+        for(int bucket : KEY_BUCKETS)
+            if(bucket <= maxSize)
+                maxBucket = bucket;
+        
+        return maxBucket;
+    }
+    
+    private static int bucketFor(int size){
+        for(int bucket : KEY_BUCKETS)
+            if(bucket >= size)
+                return bucket;
+        
+        throw new IllegalArgumentException("No bucket can hold " + size + " keys");
+    }
+    
+    /**
+     * @param keys
+     * @param size
+     * @return the condition matching the given number of key tuples, 
+     * i.e. <code>(k1,k2) in ((?,?),(?,?),...)</code>
+     */
+    protected static String getKeysInClause(List<? extends SqlFieldAccessor> keys,int size){
+        final String singleMarker;
+        
+        if(keys.size() == 1)
+            singleMarker = "?";
+        else//size > 1 is the only possible case
+            singleMarker = '('+StringUtils.getNMarkerSeparatedChars('?', ',', keys.size())+')';
+                
+        return String.format(" %s in (%s) ",
+                StringUtils.mkString(keys.stream().map(SqlFieldAccessor::getName),"(",",",")"),
+                StringUtils.getNMarkerSeparatedChars(singleMarker, ",", size)
+        );
+    }
+    
     protected static SQLException findCause(SQLException ex){
         if(ex.getNextException() != null)
             return findCause(ex.getNextException());
@@ -256,4 +538,12 @@ public abstract class AbstractSqlOperation <T> implements AutoCloseable{
     protected interface PreparedStatementPreprocessor {
         void process(PreparedStatement t) throws BananaRamaException;
     }
+    
+    /**
+     * Utility interface to bind a chunk of elements to a preparedStatement.
+     */
+    @FunctionalInterface  
+    protected interface ChunkBinder<C> {
+        void bind(PreparedStatement ps,List<C> chunk) throws Exception;
+    }
 }
@@ -0,0 +1,39 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.crud.sql;
+
+import java.util.Set;
+
+/**
+ * Implemented by entities which keep track of their changed fields.
+ * {@link SqlUpdateOperation} then writes only the columns of the changed
+ * fields, grouping records with the same changes in the same batch.
+ * Fields holding the tracking state must be annotated with
+ * {@link org.bananarama.crud.sql.annotation.Transient}.
+ */
+public interface ChangeTracking {
+    
+    /**
+     * @return the names of the fields (not columns) changed since the
+     * last write, or null if unknown, in which case all columns are written
+     */
+    Set<String> getChangedFields();
+    
+    /**
+     * Invoked once the changed fields have been written
+     */
+    void clearChangedFields();
+}
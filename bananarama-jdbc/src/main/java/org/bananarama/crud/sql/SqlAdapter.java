@@ -16,7 +16,10 @@
 package org.bananarama.crud.sql;
 
 import org.bananarama.crud.Adapter;
+import java.sql.Connection;
+import java.sql.SQLException;
 import javax.sql.DataSource;
+import org.bananarama.exception.FailedOperationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,6 +32,7 @@ public abstract class SqlAdapter implements Adapter<Object> {
 
     private static final Logger log = LoggerFactory.getLogger(SqlAdapter.class);
     protected final DataSource dataSource;
+    private volatile SqlUpsertOperation.Syntax upsertSyntax;
 
     public SqlAdapter(DataSource dataSource) {
         this.dataSource = dataSource;
@@ -62,4 +66,34 @@ public abstract class SqlAdapter implements Adapter<Object> {
         return new SqlDeleteOperation<>(dataSource, clazz);
     }
 
+    @Override
+    public <T> SqlUpsertOperation<T> upsert(Class<T> clazz) {
+
+        log.debug("SQL Upsert for class: " + clazz.getName());
+        return new SqlUpsertOperation<>(dataSource, clazz, upsertSyntax());
+    }
+    
+    /**
+     * Override in order to choose the upsert statement explicitly
+     * @return the syntax of the upsert statement, by default 
+     * {@link SqlUpsertOperation.Syntax#ON_CONFLICT} on PostgreSQL
+     * and {@link SqlUpsertOperation.Syntax#MERGE_KEY} otherwise
+     */
+    protected SqlUpsertOperation.Syntax upsertSyntax(){
+        if(upsertSyntax == null){
+            try(Connection conn = dataSource.getConnection()){
+                final String product = conn.getMetaData().getDatabaseProductName();
+                
+                upsertSyntax = product != null && product.toLowerCase().contains("postgres")
+                        ? SqlUpsertOperation.Syntax.ON_CONFLICT
+                        : SqlUpsertOperation.Syntax.MERGE_KEY;
+            }
+            catch(SQLException ex){
+                throw new FailedOperationException("Can't detect the database product", ex);
+            }
+        }
+        
+        return upsertSyntax;
+    }
+
 }
@@ -17,9 +17,13 @@ package org.bananarama.crud.sql;
 
 import com.googlecode.cqengine.query.option.QueryOptions;
 import org.bananarama.crud.CreateOperation;
+import org.bananarama.crud.sql.accessor.Getter;
 import org.bananarama.crud.sql.accessor.SqlFieldAccessor;
+import org.bananarama.crud.sql.column.SqlTypeConverter;
+import org.bananarama.util.StreamUtils;
 import org.bananarama.util.StringUtils;
 import java.util.Collection;
+import java.util.List;
 import java.util.stream.Stream;
 import javax.sql.DataSource;
 /**
@@ -45,6 +49,13 @@ public class SqlCreateOperation<T> extends AbstractSqlOperation<T>implements Cre
     @Override
     public SqlCreateOperation<T> from(Stream<T> data, QueryOptions options) {
         String currentTableName = getTableNameForCurrentSession(options);
+        
+        if(isSetBased(options)){
+            log.info("Created " + insertSetBased(data, currentTableName, getMaxParameters(options)) + " record(s) on table " 
+                    + currentTableName + " (" + clazz.getName() + ")");
+            return this;
+        }
+        
         String sql  = getInsertQuery(getGetters(),currentTableName);
         
         log.info("Created " + writeOnDb(data,sql, getGetters()) + " record(s) on table " 
@@ -53,11 +64,44 @@ public class SqlCreateOperation<T> extends AbstractSqlOperation<T>implements Cre
         return this;
     }
 
+    /**
+     * Inserts records by chunks of rows, packed in a single statement
+     * per chunk: <code>INSERT INTO t (...) VALUES (...),(...),...</code>.
+     * Chunks are as large as the parameter limit allows, while the
+     * last records are split in a few smaller chunks, so that only a 
+     * handful of statements is ever built
+     */
+    @SuppressWarnings({"unchecked","rawtypes"})
+    private int insertSetBased(Stream<T> data,String table,int maxParameters){
+        final List<Getter> getters = getGetters();
+        final List<SqlTypeConverter> converters = prepareConverters(getters);
+        final int rowsPerChunk = largestBucket(maxParameters / getters.size());
+        
+        try(Stream<List<T>> rows = StreamUtils.chunked(data, rowsPerChunk)){
+            final Iterable<List<T>> chunks = () -> rows
+                    .flatMap(chunk -> split(chunk, rowsPerChunk).stream())
+                    .iterator();
+            
+            return executeChunks(chunks, 
+                    size -> getInsertQuery(getters, table, size),
+                    (ps,chunk) -> {
+                        int index = 1;
+                        for(T record : chunk)
+                            for(int i=0;i<getters.size();i++)
+                                converters.get(i).write(ps, index++, getters.get(i).apply(record));
+                    });
+        }
+    }
+
     private static String getInsertQuery(Collection<? extends SqlFieldAccessor> accessors,String table){
-        return String.format("INSERT INTO %s (%s) VALUES (%s)", 
+        return getInsertQuery(accessors, table, 1);
+    }
+    
+    private static String getInsertQuery(Collection<? extends SqlFieldAccessor> accessors,String table,int rows){
+        return String.format("INSERT INTO %s (%s) VALUES %s", 
                 table,
                 StringUtils.mkString(accessors.stream().map(SqlFieldAccessor::getName),"", ",", ""),
-                StringUtils.getNMarkerSeparatedChars('?', ',', accessors.size()));
+                StringUtils.getNMarkerSeparatedChars('(' + StringUtils.getNMarkerSeparatedChars('?', ',', accessors.size()) + ')', ",", rows));
     }
     
 }
@@ -19,6 +19,7 @@ import com.googlecode.cqengine.query.option.QueryOptions;
 import org.bananarama.crud.DeleteOperation;
 import org.bananarama.crud.sql.accessor.SqlFieldAccessor;
 import org.bananarama.crud.sql.accessor.Getter;
+import org.bananarama.crud.sql.column.SqlTypeConverter;
 import org.bananarama.crud.util.cqlogic.CQE2SQL;
 import org.bananarama.exception.FailedOperationException;
 import org.bananarama.util.StringUtils;
@@ -26,8 +27,11 @@ import org.bananarama.util.StringUtils;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import java.util.stream.Stream;
@@ -110,6 +114,13 @@ public class SqlDeleteOperation<T> extends AbstractSqlOperation<T> implements De
         if(getters.isEmpty())
             throw new IllegalArgumentException(clazz.getName() + " does not have identity fields, DELETE is not possible");
         String currentTableName = getTableNameForCurrentSession(options);     
+        
+        if(isSetBased(options)){
+            log.info("Deleted " + deleteSetBased(data, getters, currentTableName, getMaxParameters(options)) + " record(s) on table " 
+                    + currentTableName + " (" + clazz.getName() + ")");
+            return this;
+        }
+        
         String sql  = getDeleteQueryBasedOnIdentity(getters,currentTableName);
 
         log.info("Deleted " + writeOnDb(data, sql, getters) + " record(s) on table " 
@@ -117,6 +128,32 @@ public class SqlDeleteOperation<T> extends AbstractSqlOperation<T> implements De
 
         return this;
     }
+    
+    /**
+     * Deletes records by chunks of keys through <code>DELETE ... WHERE (id) IN (...)</code>
+     */
+    @SuppressWarnings({"unchecked","rawtypes"})
+    private int deleteSetBased(Stream<T> data,List<Getter> keyGetters,String table,int maxParameters){
+        final List<SqlTypeConverter> converters = prepareConverters(keyGetters);
+        //Deleting a record twice is pointless
+        final Set<List<Object>> tuples = new LinkedHashSet<>();
+        
+        data.forEachOrdered(record -> tuples.add(keyGetters.stream()
+                .map(getter -> getter.apply(record))
+                .collect(Collectors.toList())));
+        
+        if(tuples.isEmpty())
+            return 0;
+        
+        return executeChunks(chunk(new ArrayList<>(tuples), maxParameters / keyGetters.size()),
+                size -> "DELETE FROM " + table + " WHERE " + getKeysInClause(keyGetters, size),
+                (ps,chunk) -> {
+                    int index = 1;
+                    for(List<Object> tuple : chunk)
+                        for(int i=0;i<tuple.size();i++)
+                            converters.get(i).write(ps, index++, tuple.get(i));
+                });
+    }
 
     private static String getDeleteQueryBasedOnIdentity(Collection<? extends SqlFieldAccessor> accessors,String table){
         return String.format("DELETE FROM %s WHERE %s ",
@@ -15,24 +15,60 @@
  */
 package org.bananarama.crud.sql;
 
+import org.bananarama.crud.Limit;
+
 /**
  *
  * @author Guglielmo De Concini
  */
-public class SqlOperationOptions {
+public class SqlOperationOptions implements Limit {
     
     private final String tableName;
     private final boolean batchModeActive;
     private final Integer limit;
+    private final boolean setBased;
+    private final Integer maxParameters;
     
     private static final String DEFAULT_TABLENAME = null;
     private static final boolean  DEFAULT_BATCHMODEACTIVE = true;
     private static final Integer DEFAULT_LIMIT = null;
+    private static final boolean DEFAULT_SETBASED = false;
+    private static final Integer DEFAULT_MAXPARAMETERS = null;
     
     public SqlOperationOptions(String tableName,boolean batchmodeactive,Integer limit){
+        this(tableName, batchmodeactive, limit, DEFAULT_SETBASED);
+    }
+    
+    /**
+     * @param tableName
+     * @param batchmodeactive
+     * @param limit
+     * @param setBased if true, creations, deletions and updates of objects are
+     * performed through statements which affect thousands of records
+     * at once (<code>INSERT ... VALUES (...),(...)</code>, <code>DELETE ... WHERE id IN (...)</code> and 
+     * <code>UPDATE ... SET col = CASE ... END</code>) instead of one statement per record
+     */
+    public SqlOperationOptions(String tableName,boolean batchmodeactive,Integer limit,boolean setBased){
+        this(tableName, batchmodeactive, limit, setBased, DEFAULT_MAXPARAMETERS);
+    }
+    
+    /**
+     * @param tableName
+     * @param batchmodeactive
+     * @param limit
+     * @param setBased
+     * @param maxParameters the maximum number of parameters bound to a single
+     * set-based statement, null for the default (2000)
+     */
+    public SqlOperationOptions(String tableName,boolean batchmodeactive,Integer limit,boolean setBased,Integer maxParameters){
+        if(maxParameters != null && maxParameters < 1)
+            throw new IllegalArgumentException("The maximum number of parameters must be positive, got " + maxParameters);
+        
         this.tableName = tableName;
         this.batchModeActive = batchmodeactive;
         this.limit = limit;
+        this.setBased = setBased;
+        this.maxParameters = maxParameters;
     }
     
     public String getTableName() {
@@ -43,12 +79,42 @@ public class SqlOperationOptions {
         return batchModeActive;
     }
 
+    @Override
     public Integer getLimit() {
         return limit;
     }
+    
+    public boolean isSetBased() {
+        return setBased;
+    }
+    
+    public Integer getMaxParameters() {
+        return maxParameters;
+    }
+    
+    public SqlOperationOptions withTableName(String tableName){
+        return new SqlOperationOptions(tableName, batchModeActive, limit, setBased, maxParameters);
+    }
+    
+    public SqlOperationOptions withBatchModeActive(boolean batchModeActive){
+        return new SqlOperationOptions(tableName, batchModeActive, limit, setBased, maxParameters);
+    }
+    
+    public SqlOperationOptions withLimit(Integer limit){
+        return new SqlOperationOptions(tableName, batchModeActive, limit, setBased, maxParameters);
+    }
+    
+    public SqlOperationOptions withSetBased(boolean setBased){
+        return new SqlOperationOptions(tableName, batchModeActive, limit, setBased, maxParameters);
+    }
+    
+    public SqlOperationOptions withMaxParameters(Integer maxParameters){
+        return new SqlOperationOptions(tableName, batchModeActive, limit, setBased, maxParameters);
+    }
 
     //Util methods
     public static final SqlOperationOptions BATCHMODE_DISABLE = new SqlOperationOptions(DEFAULT_TABLENAME, false, DEFAULT_LIMIT);
+    public static final SqlOperationOptions SET_BASED = new SqlOperationOptions(DEFAULT_TABLENAME, DEFAULT_BATCHMODEACTIVE, DEFAULT_LIMIT, true);
     public static  SqlOperationOptions limit(int limit){
         return new SqlOperationOptions(DEFAULT_TABLENAME, DEFAULT_BATCHMODEACTIVE, limit);
     }
@@ -18,18 +18,46 @@ package org.bananarama.crud.sql;
 
 import javax.sql.DataSource;
 
+import com.googlecode.cqengine.attribute.Attribute;
+import com.googlecode.cqengine.query.Query;
+import com.googlecode.cqengine.query.logical.LogicalQuery;
+import com.googlecode.cqengine.query.simple.SimpleQuery;
+import static com.googlecode.cqengine.query.QueryFactory.noQueryOptions;
 import com.googlecode.cqengine.query.option.QueryOptions;
+import org.bananarama.crud.Page;
+import org.bananarama.crud.Projection;
 import org.bananarama.crud.ReadOperation;
 import org.bananarama.crud.sql.accessor.SqlFieldAccessor;
 import org.bananarama.crud.sql.accessor.Setter;
 import org.bananarama.crud.sql.column.SqlTypeConverter;
+import org.bananarama.crud.sql.column.TransparentTypeConverter;
 import org.bananarama.crud.util.cqlogic.CQE2SQL;
+import org.bananarama.crud.util.cqlogic.QueryPlan;
 import org.bananarama.util.StringUtils;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import org.bananarama.concurrency.SharedExecutors;
 import org.bananarama.exception.FailedOperationException;
+import org.bananarama.io.DataCollector;
 
 
 /**
@@ -39,6 +67,12 @@ import org.bananarama.exception.FailedOperationException;
 public class SqlReadOperation<T>extends AbstractSqlOperation<T> implements ReadOperation<T>{
     
     
+    public static final int DEFAULT_KEY_PARALLELISM = 4;
+    
+    //Operations are created on each read, statements are shared among them
+    private static final Map<String,String> KEY_SELECTS = new ConcurrentHashMap<>();
+    private int keyParallelism = DEFAULT_KEY_PARALLELISM;
+    
     public SqlReadOperation(DataSource dataSource, Class<T> clazz) {
         super(dataSource, clazz);
     }
@@ -58,39 +92,374 @@ public class SqlReadOperation<T>extends AbstractSqlOperation<T> implements ReadO
         return getDataFromDb(null,options,ps ->{});
     }
     
+    /**
+     * Rows are fed to the collector while they are read,
+     * without holding all of them in memory
+     * @param collector
+     * @return this
+     */
+    @Override
+    public ReadOperation<T> all(DataCollector<T> collector) {
+        return all(collector, null);
+    }
+    
+    @Override
+    public ReadOperation<T> all(DataCollector<T> collector, QueryOptions options) {
+        try(Stream<T> rows = getDataFromDb(null,options,ps ->{},true)){
+            collector.collect(rows);
+        }
+        return this;
+    }
+    
     @Override
     public <Q> Stream<T> where(Q whereClause) {
         return where(whereClause, null);
     }
     
-    
     private Stream<T> getDataFromDb(
             String whereClause, 
             QueryOptions options,
             PreparedStatementPreprocessor preprocessor){
+        return getDataFromDb(whereClause, options, preprocessor, false);
+    }
+    
+    /**
+     * @param lazy whether rows are read while the stream is consumed,
+     * in which case the stream must be closed
+     */
+    private Stream<T> getDataFromDb(
+            String whereClause, 
+            QueryOptions options,
+            PreparedStatementPreprocessor preprocessor,
+            boolean lazy){
         
-        List<Setter> setters = getSetters();
-        SqlOperationOptions sqlOpts;
+        List<Setter> setters = getSetters(options);
         String currentTableName = getTableNameForCurrentSession(options);
         String sql  = getSelectQuery(setters,currentTableName);
         
         if(whereClause != null)
             sql += whereClause;
         
-        return readFromDb(sql, setters,preprocessor);
+        return lazy ? streamFromDb(sql, setters, preprocessor) : readFromDb(sql, setters,preprocessor);
         
     }
     
     @Override
     public <Q> Stream<T> where(Q whereClause, QueryOptions options) {
+        return where(whereClause, options, false);
+    }
+    
+    /**
+     * Same as {@link #all(org.bananarama.io.DataCollector)}
+     * @param <Q>
+     * @param collector
+     * @param whereClause
+     * @return this
+     */
+    @Override
+    public <Q> ReadOperation<T> where(DataCollector<T> collector, Q whereClause) {
+        return where(collector, whereClause, null);
+    }
+    
+    @Override
+    public <Q> ReadOperation<T> where(DataCollector<T> collector, Q whereClause, QueryOptions options) {
+        try(Stream<T> rows = where(whereClause, options, true)){
+            collector.collect(rows);
+        }
+        return this;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <Q> Stream<T> where(Q whereClause, QueryOptions options, boolean lazy) {
         if(whereClause instanceof String)
-            return getDataFromDb((String)whereClause,options,ps -> {});
+            return getDataFromDb((String)whereClause,options,ps -> {},lazy);
         else if(whereClause instanceof com.googlecode.cqengine.query.Query)
-            return getDataFromDb(CQE2SQL.convertCqQuery((com.googlecode.cqengine.query.Query<?>)whereClause,options),options,ps ->{});
+            return where(QueryPlan.of((Query<T>)whereClause),options,lazy);
         
         throw new UnsupportedOperationException(whereClause.getClass().getCanonicalName() + " not supported for SQL where clause");
     }
     
+    /**
+     * Executes the part of the plan supported by {@link CQE2SQL} on the
+     * database, filtering the returned rows with the residual query. 
+     * Limits are then applied in memory, since the database can't tell 
+     * which rows the residual query discards.
+     */
+    private Stream<T> where(QueryPlan<T> plan,QueryOptions options,boolean lazy){
+        if(plan.isFullyPushedDown())
+            return getDataFromDb(CQE2SQL.convertCqQuery(plan.getPushdown(),options),options,ps ->{},lazy);
+        
+        final Query<T> residual = plan.getResidual();
+        final QueryOptions residualOptions = options != null ? options : noQueryOptions();
+        final SqlOperationOptions sqlOpts = options != null ? options.get(SqlOperationOptions.class) : null;
+        
+        //The residual query is evaluated on the fields it needs, whatever the projection
+        final QueryOptions readOptions = Projection.from(options) == null 
+                ? options 
+                : including(options, attributesOf(residual, new LinkedHashSet<>()));
+        
+        final Stream<T> data = getDataFromDb(CQE2SQL.convertCqQuery(plan.getPushdown()) + CQE2SQL.convertCqOrdering(options),readOptions,ps ->{},lazy)
+                .filter(obj -> residual.matches(obj, residualOptions));
+        
+        return sqlOpts != null && sqlOpts.getLimit() != null ? data.limit(sqlOpts.getLimit()) : data;
+    }
+    
+    /**
+     * Seeks the page with <code>WHERE attr &gt; ? ORDER BY attr LIMIT n</code>
+     * on the column of the attribute, see {@link CQE2SQL#columnOf(com.googlecode.cqengine.attribute.Attribute)}. With an index
+     * on that column the database reads only the rows of the page, so 
+     * deep pages cost as much as the first one.
+     * @param <A>
+     * @param query
+     * @param orderBy
+     * @param pageSize
+     * @param after
+     * @param options
+     * @return the {@link Page} of data
+     */
+    @Override @SuppressWarnings("unchecked")
+    public <A extends Comparable<A>> Page<T,A> page(Query<T> query,Attribute<T,A> orderBy,int pageSize,A after,QueryOptions options) {
+        //Tokens are taken from the ordering attribute, whatever the projection
+        final QueryOptions readOptions = including(options, Collections.singleton(orderBy));
+        
+        //Residual predicates can't be combined with the seek
+        if(!CQE2SQL.isSupported(query))
+            return ReadOperation.super.page(query, orderBy, pageSize, after, readOptions);
+        
+        Page.checkSize(pageSize);
+        
+        final String column = CQE2SQL.columnOf(orderBy);
+        final List<String> conditions = new ArrayList<>(2);
+        
+        if(after != null)
+            conditions.add(column + " > ?");
+        
+        if(query != null)
+            conditions.add("(" + CQE2SQL.convertCqPredicate(query) + ")");
+        
+        final String whereClause = (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions))
+                + " ORDER BY " + column + " LIMIT " + pageSize;
+        
+        //The token is bound as the column is written
+        final SqlTypeConverter<A> converter = (SqlTypeConverter<A>)getConverter(orderBy);
+        final List<T> items = getDataFromDb(whereClause, readOptions, ps -> {
+            if(after != null){
+                try{
+                    converter.write(ps, 1, after);
+                }
+                catch(Exception ex){
+                    throw new FailedOperationException(ex);
+                }
+            }
+        }).collect(Collectors.toList());
+        
+        return Page.of(items, orderBy, pageSize);
+    }
+    
+    @Override
+    public long count(Query<T> query, QueryOptions options) {
+        if(!CQE2SQL.isSupported(query))
+            return ReadOperation.super.count(query, options);
+        
+        return aggregate("COUNT(*)", query, options, "", rs -> {
+            rs.next();
+            return rs.getLong(1);
+        });
+    }
+    
+    @Override
+    public boolean exists(Query<T> query, QueryOptions options) {
+        if(!CQE2SQL.isSupported(query))
+            return ReadOperation.super.exists(query, options);
+        
+        return aggregate("1", query, options, " LIMIT 1", rs -> rs.next());
+    }
+    
+    @Override
+    public <A extends Comparable<A>> Optional<A> min(Attribute<T,A> attr, Query<T> query, QueryOptions options) {
+        if(!CQE2SQL.isSupported(query))
+            return ReadOperation.super.min(attr, query, options);
+        
+        return extreme("MIN", attr, query, options);
+    }
+    
+    @Override
+    public <A extends Comparable<A>> Optional<A> max(Attribute<T,A> attr, Query<T> query, QueryOptions options) {
+        if(!CQE2SQL.isSupported(query))
+            return ReadOperation.super.max(attr, query, options);
+        
+        return extreme("MAX", attr, query, options);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <A> Optional<A> extreme(String function,Attribute<T,A> attr, Query<T> query, QueryOptions options){
+        final SqlTypeConverter<?> reader = getConverter(attr);
+        
+        return aggregate(function + "(" + CQE2SQL.columnOf(attr) + ")", query, options, "", rs -> {
+            rs.next();
+            return Optional.ofNullable((A)reader.read(rs, 1));
+        });
+    }
+    
+    @Override
+    public double sum(Attribute<T,? extends Number> attr, Query<T> query, QueryOptions options) {
+        if(!CQE2SQL.isSupported(query))
+            return ReadOperation.super.sum(attr, query, options);
+        
+        return aggregate("SUM(" + CQE2SQL.columnOf(attr) + ")", query, options, "", rs -> {
+            rs.next();
+            return rs.getDouble(1);
+        });
+    }
+    
+    @Override
+    public OptionalDouble avg(Attribute<T,? extends Number> attr, Query<T> query, QueryOptions options) {
+        if(!CQE2SQL.isSupported(query))
+            return ReadOperation.super.avg(attr, query, options);
+        
+        //Integer columns would be averaged with integer arithmetic
+        return aggregate("AVG(CAST(" + CQE2SQL.columnOf(attr) + " AS DOUBLE PRECISION))", query, options, "", rs -> {
+            rs.next();
+            final double avg = rs.getDouble(1);
+            return rs.wasNull() ? OptionalDouble.empty() : OptionalDouble.of(avg);
+        });
+    }
+    
+    @Override @SuppressWarnings("unchecked")
+    public <A> Map<A,Long> countBy(Attribute<T,A> attr, Query<T> query, QueryOptions options) {
+        if(!CQE2SQL.isSupported(query))
+            return ReadOperation.super.countBy(attr, query, options);
+        
+        final String column = CQE2SQL.columnOf(attr);
+        final SqlTypeConverter<?> reader = getConverter(attr);
+        final String whereClause = " WHERE " + column + " IS NOT NULL"
+                + (query == null ? "" : " AND (" + CQE2SQL.convertCqPredicate(query) + ")");
+        
+        return aggregate(column + ", COUNT(*)", whereClause, options, " GROUP BY " + column, rs -> {
+            final Map<A,Long> counts = new HashMap<>();
+            
+            while(rs.next())
+                counts.put((A)reader.read(rs, 1), rs.getLong(2));
+            
+            return counts;
+        });
+    }
+    
+    /**
+     * @param attr
+     * @return the converter of the column named after the
+     * given attribute, if it is mapped
+     */
+    private SqlTypeConverter<?> getConverter(Attribute<T,?> attr){
+        for(Setter setter : getSetters())
+            if(setter.getName().equalsIgnoreCase(CQE2SQL.columnOf(attr)))
+                return prepareConverters(Collections.singletonList(setter)).get(0);
+        
+        return new TransparentTypeConverter();
+    }
+    
+    private <R> R aggregate(String selection,Query<T> query,QueryOptions options,String suffix,ResultReader<R> reader){
+        return aggregate(selection, CQE2SQL.convertCqQuery(query), options, suffix, reader);
+    }
+    
+    /**
+     * Runs an aggregate query, whose results are
+     * consumed by the given reader
+     */
+    private <R> R aggregate(String selection,String whereClause,QueryOptions options,String suffix,ResultReader<R> reader){
+        final String sql = " SELECT " + selection + " FROM " + getTableNameForCurrentSession(options) + whereClause + suffix;
+        
+        try(Connection conn = dataSource.getConnection();
+                PreparedStatement ps = conn.prepareStatement(sql);
+                ResultSet rs = ps.executeQuery()){
+            return reader.read(rs);
+        }
+        catch(Exception ex){
+            final Exception sub;
+            
+            if(ex instanceof SQLException)
+                sub = findCause((SQLException)ex);
+            else 
+                sub = ex;
+            
+            throw new FailedOperationException("Aggregating data on database failed (" +clazz.getName()+")" + sub.getMessage(),sub);
+        }
+    }
+    
+    private interface ResultReader<R>{
+        R read(ResultSet rs) throws Exception;
+    }
+    
+    /**
+     * @param options
+     * @return the setters of the fields included in the {@link Projection}
+     * within the given options, or all setters if there's none
+     */
+    private List<Setter> getSetters(QueryOptions options){
+        final Projection projection = Projection.from(options);
+        
+        if(projection == null)
+            return getSetters();
+        
+        final List<Setter> setters = getSetters()
+                .stream()
+                .filter(setter -> projection.includes(setter.getFieldName()))
+                .collect(Collectors.toList());
+        
+        if(setters.size() < projection.getFields().size()){
+            final Set<String> unknown = new LinkedHashSet<>(projection.getFields());
+            setters.forEach(setter -> unknown.remove(setter.getFieldName()));
+            throw new IllegalArgumentException(clazz.getName() + " does not have fields " + unknown);
+        }
+        
+        return setters;
+    }
+    
+    /**
+     * Objects evaluated in memory need the fields of the given attributes,
+     * which are added to the {@link Projection} within the options, if any
+     * @param options
+     * @param attrs
+     * @return the options reading the fields of the given attributes as well
+     * @throws IllegalArgumentException if an attribute is not mapped to a column
+     */
+    private QueryOptions including(QueryOptions options,Collection<? extends Attribute<T,?>> attrs){
+        final Projection projection = Projection.from(options);
+        
+        if(projection == null)
+            return options;
+        
+        final Set<String> fields = new LinkedHashSet<>(projection.getFields());
+        
+        for(Attribute<T,?> attr : attrs)
+            fields.add(fieldOf(attr));
+        
+        return fields.size() == projection.getFields().size() 
+                ? options 
+                : Projection.of(fields.toArray(new String[fields.size()])).addTo(options);
+    }
+    
+    private String fieldOf(Attribute<T,?> attr){
+        for(Setter setter : getSetters())
+            if(setter.getName().equalsIgnoreCase(CQE2SQL.columnOf(attr)))
+                return setter.getFieldName();
+        
+        throw new IllegalArgumentException("Attribute " + attr.getAttributeName() + " is not mapped to a column of " 
+                + clazz.getName() + ", it can't be evaluated on a projection");
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <T> Set<Attribute<T,?>> attributesOf(Query<T> query,Set<Attribute<T,?>> attrs){
+        if(query instanceof LogicalQuery)
+            ((LogicalQuery<T>)query).getChildQueries().forEach(child -> attributesOf(child, attrs));
+        else if(query instanceof SimpleQuery)
+            attrs.add(((SimpleQuery<T,?>)query).getAttribute());
+        else
+            throw new IllegalArgumentException(query.getClass().getName() + " can't be evaluated on a projection");
+        
+        return attrs;
+    }
+    
     private static String getSelectQuery(Collection<? extends SqlFieldAccessor> accessors,String table){
         return String.format(" SELECT %s FROM %s ",
                 StringUtils.mkString(accessors.stream().map(SqlFieldAccessor::getName),"", ",", ""),
@@ -102,42 +471,130 @@ public class SqlReadOperation<T>extends AbstractSqlOperation<T> implements ReadO
         return fromKeys(keys,null);
     }
 
-    @Override @SuppressWarnings({"unchecked","rawtypes"})
+    /**
+     * Sets how many chunks of keys are read concurrently by 
+     * {@link #fromKeys(java.util.List, com.googlecode.cqengine.query.option.QueryOptions)},
+     * each one on its own connection
+     * @param keyParallelism
+     * @return this
+     */
+    public SqlReadOperation<T> keyParallelism(int keyParallelism){
+        if(keyParallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be positive, got " + keyParallelism);
+        
+        this.keyParallelism = keyParallelism;
+        return this;
+    }
+
+    /**
+     * Keys are deduplicated and split in chunks of 1, 8, 32, 128 or 512
+     * keys, padding the last chunk with repeated keys, so that
+     * only a handful of distinct statements is ever sent to the database and
+     * no statement exceeds the parameter limits of the driver. Chunks are
+     * read concurrently according to {@link #keyParallelism(int)}.
+     * @param keys
+     * @param options
+     * @return the {@link Stream} of data
+     */
+    @Override
     public Stream<T> fromKeys(List<?> keys,QueryOptions options) {
-        List<Setter> setters = getSetters()
+        final List<Setter> keySetters = getSetters()
                 .stream()
                 .filter(SqlFieldAccessor::isKey)
                 .collect(Collectors.toList());
         
-        if(setters.isEmpty())
+        if(keySetters.isEmpty())
             throw new IllegalArgumentException(clazz.getName() + " does not have identity fields, SELECT based on keys is not possible");
         
-        PreparedStatementPreprocessor builder = ps -> {
+        final int arity = keySetters.size();
+        
+        if(keys.size() % arity != 0)
+            throw new IllegalArgumentException("The number of keys must be a multiple of " + arity + " for " + clazz.getName());
+        
+        //Each object is identified by a tuple of keys
+        final Set<List<?>> tuples = new LinkedHashSet<>();
+        
+        for(int i=0;i<keys.size();i+=arity)
+            tuples.add(new ArrayList<>(keys.subList(i, i + arity)));
+        
+        if(tuples.isEmpty())
+            return Stream.empty();
+        
+        final List<List<List<?>>> chunks = chunk(new ArrayList<>(tuples), getMaxParameters(options) / arity);
+        final String table = getTableNameForCurrentSession(options);
+        final List<Setter> setters = getSetters(options);
+        
+        if(chunks.size() == 1 || keyParallelism == 1)
+            return chunks.stream()
+                    .flatMap(chunk -> readChunk(chunk, keySetters, setters, table));
+        
+        //Chunks are spread evenly among the tasks, each one reading its share in sequence
+        final int tasks = Math.min(keyParallelism, chunks.size());
+        final List<Future<List<T>>> futures = new ArrayList<>(tasks);
+        
+        for(int t=0;t<tasks;t++){
+            final int task = t;
+            futures.add(SharedExecutors.io().submit(() -> IntStream.range(0, chunks.size())
+                    .filter(i -> i % tasks == task)
+                    .mapToObj(i -> readChunk(chunks.get(i), keySetters, setters, table))
+                    .flatMap(Function.identity())
+                    .collect(Collectors.toList())));
+        }
+        
+        final List<T> records = new ArrayList<>();
+        
+        try{
+            for(Future<List<T>> future : futures)
+                records.addAll(future.get());
+        }
+        catch(ExecutionException ex){
+            if(ex.getCause() instanceof FailedOperationException)
+                throw (FailedOperationException)ex.getCause();
+            
+            throw new FailedOperationException(ex.getCause());
+        }
+        catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new FailedOperationException(ex);
+        }
+        finally{
+            //Pending reads are useless after a failure
+            futures.forEach(future -> future.cancel(true));
+        }
+        
+        return records.stream();
+    }
+    
+    @SuppressWarnings({"unchecked","rawtypes"})
+    private Stream<T> readChunk(List<List<?>> chunk,List<Setter> keySetters,List<Setter> setters,String table){
+        final PreparedStatementPreprocessor builder = ps -> {
             List<SqlTypeConverter> readers = 
-                    prepareConverters(setters);
+                    prepareConverters(keySetters);
             
             try{
-                for(int i =0; i < keys.size(); i++)
-                    readers.get(i%readers.size()).write(ps,i+1 ,keys.get(i));
+                int index = 1;
+                for(List<?> tuple : chunk)
+                    for(int i=0;i<tuple.size();i++)
+                        readers.get(i).write(ps,index++ ,tuple.get(i));
             }
             catch(Exception e){
                 throw new FailedOperationException(e);
             }
         };
         
-        final String singleMarker,whereClause;
-        
-        if(setters.size() == 1)
-            singleMarker = "?";
-        else//size > 1 is the only possible case
-            singleMarker = '('+StringUtils.getNMarkerSeparatedChars('?', ',', setters.size())+')';
-                
-        whereClause = String.format(" WHERE %s in (%s) ",
-                StringUtils.mkString(setters.stream().map(SqlFieldAccessor::getName),"(",",",")"),
-                StringUtils.getNMarkerSeparatedChars(singleMarker, ",", keys.size()/setters.size())
-        );
+        //Projected reads select a subset of the columns
+        final String id = clazz.getName() + ':' + table + ':' + chunk.size()
+                + (setters.size() == getSetters().size() ? "" 
+                    : ':' + setters.stream().map(Setter::getFieldName).collect(Collectors.joining(",")));
         
-        return getDataFromDb(whereClause,options,builder);
+        return readFromDb(KEY_SELECTS.computeIfAbsent(id,
+                    k -> buildKeySelect(keySetters, setters, table, chunk.size())),
+                setters,
+                builder);
+    }
+    
+    private String buildKeySelect(List<Setter> keySetters,List<Setter> setters,String table,int size){
+        return getSelectQuery(setters, table) + " WHERE " + getKeysInClause(keySetters, size);
     }
     
 }
@@ -17,11 +17,17 @@ package org.bananarama.crud.sql;
 
 import com.googlecode.cqengine.query.option.QueryOptions;
 import org.bananarama.crud.UpdateOperation;
+import org.bananarama.crud.sql.accessor.Getter;
 import org.bananarama.crud.sql.accessor.SqlFieldAccessor;
+import org.bananarama.crud.sql.column.SqlTypeConverter;
 import org.bananarama.util.StringUtils;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.sql.DataSource;
@@ -48,8 +54,20 @@ public class SqlUpdateOperation<T> extends AbstractSqlOperation<T> implements Up
 
     @Override
     public SqlUpdateOperation<T> from(Stream<T> data, QueryOptions options) {
-        SqlOperationOptions sqlOpts;
         String currentTableName = getTableNameForCurrentSession(options);
+        
+        if(isSetBased(options)){
+            log.info("Updated " + updateSetBased(data, currentTableName, getMaxParameters(options)) + " record(s) on table " 
+                    + currentTableName + " (" + clazz.getName() + ")");
+            return this;
+        }
+        
+        if(ChangeTracking.class.isAssignableFrom(clazz)){
+            log.info("Updated " + updateChanged(data, currentTableName) + " record(s) on table " 
+                    + currentTableName + " (" + clazz.getName() + ")");
+            return this;
+        }
+        
         String sql  = getUpdateQuery(getGetters(),currentTableName,clazz);
         
         log.info("Updated " + writeOnDb(data, sql, getGetters()) + " record(s) on table " 
@@ -58,6 +76,111 @@ public class SqlUpdateOperation<T> extends AbstractSqlOperation<T> implements Up
         return this;
     }
 
+    /**
+     * Writes only the changed columns of each {@link ChangeTracking} record,
+     * records with the same changed columns share the same batched statement
+     */
+    private int updateChanged(Stream<T> data,String table){
+        final List<Getter> getters = getGetters();
+        final List<Getter> keyGetters = getters.stream()
+                .filter(SqlFieldAccessor::isKey)
+                .collect(Collectors.toList());
+        
+        if(keyGetters.isEmpty())
+            throw new IllegalArgumentException(clazz.getName() + " does not have identity fields, UPDATE is not possible");
+        
+        final Set<String> valueFields = getters.stream()
+                .filter(getter -> !getter.isKey())
+                .map(SqlFieldAccessor::getFieldName)
+                .collect(Collectors.toSet());
+        final Map<Set<String>,List<T>> groups = new LinkedHashMap<>();
+        
+        data.forEachOrdered(record -> {
+            final Set<String> changed = ((ChangeTracking)record).getChangedFields();
+            final Set<String> columns = new TreeSet<>(valueFields);
+            
+            if(changed != null)
+                columns.retainAll(changed);
+            
+            //Nothing to write for unchanged records
+            if(!columns.isEmpty())
+                groups.computeIfAbsent(columns, c -> new ArrayList<>()).add(record);
+        });
+        
+        int affected = 0;
+        
+        for(Map.Entry<Set<String>,List<T>> group : groups.entrySet()){
+            final List<Getter> accessors = getters.stream()
+                    .filter(getter -> group.getKey().contains(getter.getFieldName()))
+                    .collect(Collectors.toList());
+            accessors.addAll(keyGetters);
+            
+            affected += writeOnDb(group.getValue().stream(), getUpdateQuery(accessors, table, clazz), accessors);
+            group.getValue().forEach(record -> ((ChangeTracking)record).clearChangedFields());
+        }
+        
+        return affected;
+    }
+    
+    /**
+     * Updates records by chunks through a single statement per chunk:
+     * <code>UPDATE t SET c = CASE WHEN id = ? THEN ? ... ELSE c END WHERE (id) IN (...)</code>
+     */
+    @SuppressWarnings({"unchecked","rawtypes"})
+    private int updateSetBased(Stream<T> data,String table,int maxParameters){
+        final List<Getter> getters = getGetters();
+        final List<SqlTypeConverter> allConverters = prepareConverters(getters);
+        final List<Integer> keyIndexes = new ArrayList<>();
+        final List<Integer> valueIndexes = new ArrayList<>();
+        
+        for(int i=0;i<getters.size();i++)
+            (getters.get(i).isKey() ? keyIndexes : valueIndexes).add(i);
+        
+        if(keyIndexes.isEmpty())
+            throw new IllegalArgumentException(clazz.getName() + " does not have identity fields, UPDATE is not possible");
+        
+        //The last update of a record wins, as it would with one statement per record
+        final Map<List<Object>,T> records = new LinkedHashMap<>();
+        
+        data.forEachOrdered(record -> records.put(keyIndexes.stream()
+                .map(i -> getters.get(i).apply(record))
+                .collect(Collectors.toList()), record));
+        
+        if(records.isEmpty() || valueIndexes.isEmpty())
+            return 0;
+        
+        final List<Getter> keyGetters = keyIndexes.stream()
+                .map(getters::get)
+                .collect(Collectors.toList());
+        final String whenKeys = StringUtils.mkString(keyGetters.stream().map(SqlFieldAccessor::getName),"WHEN "," = ? AND "," = ? THEN ? ");
+        final int paramsPerRecord = valueIndexes.size() * (keyIndexes.size() + 1) + keyIndexes.size();
+        
+        return executeChunks(chunk(new ArrayList<>(records.entrySet()), Math.max(1, maxParameters / paramsPerRecord)),
+                size -> String.format("UPDATE %s SET %s WHERE %s",
+                        table,
+                        StringUtils.mkString(valueIndexes.stream()
+                                .map(getters::get)
+                                .map(SqlFieldAccessor::getName)
+                                .map(col -> col + " = CASE " + StringUtils.getNMarkerSeparatedChars(whenKeys, "", size) + "ELSE " + col + " END"),
+                                "", ", ", ""),
+                        getKeysInClause(keyGetters, size)),
+                (ps,chunk) -> {
+                    int index = 1;
+                    
+                    for(int value : valueIndexes)
+                        for(Map.Entry<List<Object>,T> entry : chunk){
+                            for(int k=0;k<keyIndexes.size();k++)
+                                allConverters.get(keyIndexes.get(k)).write(ps, index++, entry.getKey().get(k));
+                            
+                            allConverters.get(value).write(ps, index++, getters.get(value).apply(entry.getValue()));
+                        }
+                    
+                    for(Map.Entry<List<Object>,T> entry : chunk)
+                        for(int k=0;k<keyIndexes.size();k++)
+                            allConverters.get(keyIndexes.get(k)).write(ps, index++, entry.getKey().get(k));
+                });
+    }
+    
     private static <A extends SqlFieldAccessor> String getUpdateQuery(
             Collection<A> accessors,
             String table,
@@ -0,0 +1,121 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.crud.sql;
+
+import com.googlecode.cqengine.query.option.QueryOptions;
+import org.bananarama.crud.UpsertOperation;
+import org.bananarama.crud.sql.accessor.SqlFieldAccessor;
+import org.bananarama.util.StringUtils;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.sql.DataSource;
+
+/**
+ * Creates records or updates the existing ones with the same
+ * {@link org.bananarama.crud.sql.annotation.Id} fields in a 
+ * single statement per record, batched as any other write
+ */
+public class SqlUpsertOperation<T> extends AbstractSqlOperation<T> implements UpsertOperation<T>{
+    
+    /**
+     * The SQL statement used for upserts
+     */
+    public enum Syntax{
+        /**
+         * <code>MERGE INTO t (cols) KEY (ids) VALUES (...)</code>, as in H2
+         */
+        MERGE_KEY,
+        /**
+         * <code>INSERT INTO t (cols) VALUES (...) ON CONFLICT (ids) DO UPDATE SET ...</code>,
+         * as in PostgreSQL
+         */
+        ON_CONFLICT
+    }
+    
+    private final Syntax syntax;
+    
+    public SqlUpsertOperation(DataSource dataSource, Class<T> clazz, Syntax syntax) {
+        super(dataSource, clazz);
+        this.syntax = syntax;
+    }
+
+    public SqlUpsertOperation<T> onTable(String tableName) {
+        this.tableName = tableName;
+        return this;
+    }
+    
+    @Override
+    public SqlUpsertOperation<T> from(Stream<T> data) {
+        return from(data,null);
+    }
+
+    @Override
+    public SqlUpsertOperation<T> from(Stream<T> data, QueryOptions options) {
+        String currentTableName = getTableNameForCurrentSession(options);
+        String sql  = getUpsertQuery(getGetters(),currentTableName,clazz,syntax);
+        
+        log.info("Upserted " + writeOnDb(data, sql, getGetters()) + " record(s) on table " 
+                + currentTableName + " (" + clazz.getName() + ")");
+
+        return this;
+    }
+    
+    private static <A extends SqlFieldAccessor> String getUpsertQuery(
+            Collection<A> accessors,
+            String table,
+            Class<?> clazz,
+            Syntax syntax){
+        final List<String> keys = accessors.stream()
+                .filter(SqlFieldAccessor::isKey)
+                .map(SqlFieldAccessor::getName)
+                .collect(Collectors.toList());
+        
+        if(keys.isEmpty())
+            throw new IllegalArgumentException(clazz.getName() + " does not have identity fields, UPSERT is not possible");
+        
+        final String columns = StringUtils.mkString(accessors.stream().map(SqlFieldAccessor::getName),"", ",", "");
+        final String markers = StringUtils.getNMarkerSeparatedChars('?', ',', accessors.size());
+        
+        switch(syntax){
+            case MERGE_KEY:
+                return String.format("MERGE INTO %s (%s) KEY (%s) VALUES (%s)",
+                        table,
+                        columns,
+                        StringUtils.mkString(keys.stream(), "", ",", ""),
+                        markers);
+            case ON_CONFLICT:{
+                final List<String> values = accessors.stream()
+                        .filter(acc -> !acc.isKey())
+                        .map(SqlFieldAccessor::getName)
+                        .collect(Collectors.toList());
+                
+                return String.format("INSERT INTO %s (%s) VALUES (%s) ON CONFLICT (%s) %s",
+                        table,
+                        columns,
+                        markers,
+                        StringUtils.mkString(keys.stream(), "", ",", ""),
+                        values.isEmpty() 
+                                ? "DO NOTHING"
+                                : StringUtils.mkString(values.stream().map(col -> col + " = EXCLUDED." + col), "DO UPDATE SET ", ",", ""));
+            }
+            default:
+                throw new IllegalStateException("Unknown upsert syntax " + syntax);
+        }
+    }
+    
+}
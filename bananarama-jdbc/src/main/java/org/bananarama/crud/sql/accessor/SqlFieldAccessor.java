@@ -27,10 +27,12 @@ import org.bananarama.util.accessor.FieldAccessor;
  */
 public abstract class SqlFieldAccessor extends FieldAccessor{
     private final boolean isKey;
+    private final String fieldName;
     private final Class<? extends SqlTypeConverter<?>> sqlTypeConverter;
     
     protected SqlFieldAccessor(Field field){
         super(field);
+        fieldName = field.getName();
 
         Column col;     
         if((col = field.getAnnotation(Column.class)) != null
@@ -44,6 +46,14 @@ public abstract class SqlFieldAccessor extends FieldAccessor{
         sqlTypeConverter = converterAnno != null ? converterAnno.value() : null;
     }
     
+    /**
+     * @return the name of the field, while {@link #getName()} 
+     * returns the name of the column
+     */
+    public String getFieldName() {
+        return fieldName;
+    }
+    
     public boolean isKey() {
         return isKey;
     }
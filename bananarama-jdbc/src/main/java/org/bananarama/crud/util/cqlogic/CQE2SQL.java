@@ -15,6 +15,7 @@
  */
 package org.bananarama.crud.util.cqlogic;
 
+import com.googlecode.cqengine.attribute.Attribute;
 import com.googlecode.cqengine.query.Query;
 import com.googlecode.cqengine.query.logical.And;
 import com.googlecode.cqengine.query.logical.LogicalQuery;
@@ -22,22 +23,35 @@ import com.googlecode.cqengine.query.logical.Not;
 import com.googlecode.cqengine.query.logical.Or;
 import com.googlecode.cqengine.query.option.OrderByOption;
 import com.googlecode.cqengine.query.option.QueryOptions;
+import com.googlecode.cqengine.query.simple.All;
 import com.googlecode.cqengine.query.simple.Between;
 import com.googlecode.cqengine.query.simple.Equal;
 import com.googlecode.cqengine.query.simple.GreaterThan;
 import com.googlecode.cqengine.query.simple.Has;
+import com.googlecode.cqengine.query.simple.In;
 import com.googlecode.cqengine.query.simple.LessThan;
+import com.googlecode.cqengine.query.simple.None;
 import com.googlecode.cqengine.query.simple.SimpleQuery;
+import com.googlecode.cqengine.query.simple.StringContains;
+import com.googlecode.cqengine.query.simple.StringEndsWith;
+import com.googlecode.cqengine.query.simple.StringStartsWith;
 import org.bananarama.crud.sql.SqlOperationOptions;
+import org.bananarama.crud.sql.annotation.Column;
 import org.bananarama.crud.util.cqlogic.mappers.Mapper;
 import org.bananarama.crud.util.cqlogic.mappers.impl.logical.AndMapper;
 import org.bananarama.crud.util.cqlogic.mappers.impl.logical.NotMapper;
 import org.bananarama.crud.util.cqlogic.mappers.impl.logical.OrMapper;
+import org.bananarama.crud.util.cqlogic.mappers.impl.simple.AllMapper;
 import org.bananarama.crud.util.cqlogic.mappers.impl.simple.BetweenMapper;
 import org.bananarama.crud.util.cqlogic.mappers.impl.simple.GreaterThanMapper;
 import org.bananarama.crud.util.cqlogic.mappers.impl.simple.HasMapper;
+import org.bananarama.crud.util.cqlogic.mappers.impl.simple.InMapper;
 import org.bananarama.crud.util.cqlogic.mappers.impl.simple.LessThanMapper;
 import org.bananarama.crud.util.cqlogic.mappers.impl.simple.EqualMapper;
+import org.bananarama.crud.util.cqlogic.mappers.impl.simple.NoneMapper;
+import org.bananarama.crud.util.cqlogic.mappers.impl.simple.StringContainsMapper;
+import org.bananarama.crud.util.cqlogic.mappers.impl.simple.StringEndsWithMapper;
+import org.bananarama.crud.util.cqlogic.mappers.impl.simple.StringStartsWithMapper;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -49,21 +63,74 @@ import java.util.Map;
 @SuppressWarnings({"unchecked","rawtypes"})
 public class CQE2SQL {
     
+    /**
+     * Conditions produced by constant queries, such as {@link All}
+     * and {@link None}, which logical queries prune
+     */
+    public static final String TRUE = "1 = 1";
+    public static final String FALSE = "1 = 0";
+    
     private static final Map<Class<? extends Query>,Mapper> mappers = getMappers();
 
     public static String convertCqQuery(Query<?> query){
-        String sql = "";
+        if(query == null)
+            return "";
+        
+        final String predicate = convertCqPredicate(query);
+        return TRUE.equals(predicate) ? "" : " WHERE " + predicate;
+    }
+    
+    /**
+     * @param attr
+     * @return the name given by {@link Column} to the field the
+     * attribute is named after, or the name of the attribute itself
+     */
+    public static String columnOf(Attribute<?,?> attr){
+        final String name = attr.getAttributeName();
         
-        if(query != null){
-            if( query instanceof SimpleQuery )
-                sql =  " WHERE " + getMapper((Class<SimpleQuery<?,?>>)query.getClass()).map((SimpleQuery<?,?>) query);
-            else if (query instanceof LogicalQuery)
-                sql =  " WHERE " + getMapper((Class<LogicalQuery<?>>)query.getClass()).map((LogicalQuery<?>) query);
-            else
-                throw new UnsupportedOperationException("Unknown query class " + query.getClass().getName());
+        for(Class<?> clazz = attr.getObjectType(); clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()){
+            try{
+                Column col = clazz.getDeclaredField(name).getAnnotation(Column.class);
+                return col != null && !col.name().isEmpty() ? col.name() : name;
+            }
+            catch(NoSuchFieldException ex){
+                //Look into the superclass
+            }
         }
-          
-        return sql;
+        
+        return name;
+    }
+    
+    /**
+     * @param query
+     * @return the SQL condition equivalent to the given query,
+     * without the WHERE keyword
+     */
+    public static String convertCqPredicate(Query<?> query){
+        if( query instanceof SimpleQuery )
+            return getMapper((Class<SimpleQuery<?,?>>)query.getClass()).map((SimpleQuery<?,?>) query);
+        else if (query instanceof LogicalQuery)
+            return getMapper((Class<LogicalQuery<?>>)query.getClass()).map((LogicalQuery<?>) query);
+        
+        throw new UnsupportedOperationException("Unknown query class " + query.getClass().getName());
+    }
+    
+    /**
+     * @param query the query, may be null
+     * @return true if the query and all of its children
+     * can be translated to SQL
+     */
+    public static boolean isSupported(Query<?> query){
+        if(query == null)
+            return true;
+        
+        if(!mappers.containsKey(query.getClass()))
+            return false;
+        
+        return !(query instanceof LogicalQuery) 
+                || ((LogicalQuery<?>)query).getChildQueries()
+                        .stream()
+                        .allMatch(CQE2SQL::isSupported);
     }
     
     public static String convertCqQuery(Query<?> query,QueryOptions opts){
@@ -71,17 +138,10 @@ public class CQE2SQL {
     }
     
     public static String convertCqOptions(QueryOptions opts){
-        String sql = "";
+        String sql = convertCqOrdering(opts);
         
         if(opts != null){
-            OrderByOption<?> orders;
             SqlOperationOptions sqlOpts;
-            if((orders = opts.get(OrderByOption.class))!=null){
-                sql += " ORDER BY " + orders.getAttributeOrders()
-                        .stream()
-                        .map(a -> a.getAttribute().getAttributeName() + (a.isDescending() ? " DESC" : ""))
-                        .reduce( (o,p) -> o +", "+ p).get();
-            }
             if((sqlOpts = opts.get(SqlOperationOptions.class)) != null){
                 if(sqlOpts.getLimit() != null)
                     sql += " LIMIT " + sqlOpts.getLimit();
@@ -90,6 +150,23 @@ public class CQE2SQL {
         }
         return sql;
     }
+    /**
+     * @param opts
+     * @return the ORDER BY clause equivalent to the {@link OrderByOption}
+     * within the given options, if any
+     */
+    public static String convertCqOrdering(QueryOptions opts){
+        OrderByOption<?> orders;
+        
+        if(opts == null || (orders = opts.get(OrderByOption.class)) == null)
+            return "";
+        
+        return " ORDER BY " + orders.getAttributeOrders()
+                .stream()
+                .map(a -> columnOf(a.getAttribute()) + (a.isDescending() ? " DESC" : ""))
+                .reduce( (o,p) -> o +", "+ p).get();
+    }
+    
     private static Map<Class<? extends Query>, Mapper> getMappers(){
         HashMap<Class<? extends Query>,Mapper> map = new HashMap<>();
         
@@ -99,6 +176,12 @@ public class CQE2SQL {
         map.put(LessThan.class,new LessThanMapper());
         map.put(Between.class,new BetweenMapper());
         map.put(Has.class,new HasMapper());
+        map.put(In.class,new InMapper());
+        map.put(StringStartsWith.class,new StringStartsWithMapper());
+        map.put(StringEndsWith.class,new StringEndsWithMapper());
+        map.put(StringContains.class,new StringContainsMapper());
+        map.put(All.class,new AllMapper());
+        map.put(None.class,new NoneMapper());
         
         //Logical
         map.put(And.class,new AndMapper());
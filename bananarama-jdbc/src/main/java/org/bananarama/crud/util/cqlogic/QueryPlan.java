@@ -0,0 +1,101 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bananarama.crud.util.cqlogic;
+
+import com.googlecode.cqengine.query.Query;
+import com.googlecode.cqengine.query.logical.And;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a {@link Query} in the part which {@link CQE2SQL} can translate
+ * to SQL and a residual which must be evaluated in memory on the rows
+ * returned by the former. The children of an {@link And} are split
+ * independently, while any other query is either pushed down
+ * as a whole or left entirely to the residual.
+ * @param <O> the type of the queried objects
+ */
+public final class QueryPlan<O> {
+    
+    private final Query<O> pushdown;
+    private final Query<O> residual;
+    
+    private QueryPlan(Query<O> pushdown,Query<O> residual){
+        this.pushdown = pushdown;
+        this.residual = residual;
+    }
+    
+    /**
+     * @param <O>
+     * @param query the query, may be null
+     * @return the plan for the given query
+     */
+    public static <O> QueryPlan<O> of(Query<O> query){
+        if(CQE2SQL.isSupported(query))
+            return new QueryPlan<>(query,null);
+        
+        if(!(query instanceof And))
+            return new QueryPlan<>(null,query);
+        
+        final List<Query<O>> pushed = new ArrayList<>();
+        final List<Query<O>> residuals = new ArrayList<>();
+        
+        for(Query<O> child : ((And<O>)query).getChildQueries()){
+            QueryPlan<O> plan = of(child);
+            
+            if(plan.pushdown != null)
+                pushed.add(plan.pushdown);
+            if(plan.residual != null)
+                residuals.add(plan.residual);
+        }
+        
+        return new QueryPlan<>(conjunction(pushed),conjunction(residuals));
+    }
+    
+    private static <O> Query<O> conjunction(List<Query<O>> queries){
+        switch(queries.size()){
+            case 0:
+                return null;
+            case 1:
+                return queries.get(0);
+            default:
+                return new And<>(queries);
+        }
+    }
+    
+    /**
+     * @return the part of the query to be executed as SQL,
+     * null if every row must be read
+     */
+    public Query<O> getPushdown() {
+        return pushdown;
+    }
+    
+    /**
+     * @return the part of the query to be evaluated in memory,
+     * null if the query is entirely pushed down
+     */
+    public Query<O> getResidual() {
+        return residual;
+    }
+    
+    /**
+     * @return true if the whole query is executed as SQL
+     */
+    public boolean isFullyPushedDown(){
+        return residual == null;
+    }
+}
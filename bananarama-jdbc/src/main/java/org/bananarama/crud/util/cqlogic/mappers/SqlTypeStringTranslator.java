@@ -39,7 +39,28 @@ public class SqlTypeStringTranslator {
     }
     
     public static String adapt(String o){
-        return String.format("'%s'",o);
+        //Quotes within the value must be doubled
+        return String.format("'%s'",o.replace("'", "''"));
+    }
+    
+    /**
+     * Builds a LIKE pattern matching the given value literally,
+     * wildcards within the value are escaped with <code>!</code>, which
+     * is declared explicitly since databases default to different characters.
+     * Unlike a backslash, it needs no escaping within string literals
+     * on any database (e.g. MySQL)
+     * @param prefix the wildcards before the value
+     * @param value
+     * @param suffix the wildcards after the value
+     * @return the quoted pattern followed by its <code>ESCAPE</code> clause
+     */
+    public static String adaptLike(String prefix,CharSequence value,String suffix){
+        final String escaped = value.toString()
+                .replace("!", "!!")
+                .replace("%", "!%")
+                .replace("_", "!_");
+        
+        return adapt(prefix + escaped + suffix) + " ESCAPE '!'";
     }
     
 
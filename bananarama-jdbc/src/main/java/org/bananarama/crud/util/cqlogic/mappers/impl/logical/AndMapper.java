@@ -18,6 +18,8 @@ package org.bananarama.crud.util.cqlogic.mappers.impl.logical;
 import com.googlecode.cqengine.query.logical.And;
 import com.googlecode.cqengine.query.logical.LogicalQuery;
 import com.googlecode.cqengine.query.simple.SimpleQuery;
+import java.util.ArrayList;
+import java.util.List;
 import org.bananarama.crud.util.cqlogic.CQE2SQL;
 import org.bananarama.crud.util.cqlogic.mappers.Mapper;
 
@@ -32,32 +34,31 @@ public class AndMapper implements Mapper<And<?>>{
     
     @Override @SuppressWarnings("unchecked")
     public String map(And<?> q) {
-        StringBuilder sb = new StringBuilder();
-        
-        //Open parenthesis
-        sb.append(SC);
+        final List<String> conditions = new ArrayList<>();
         
         //Prepare first block from logical child queries, if any
-        if(q.hasLogicalQueries())
-            sb.append(q.getLogicalQueries()
-                    .stream()
-                    .map(lq -> CQE2SQL.getMapper((Class<LogicalQuery>) lq.getClass()).map((LogicalQuery) lq))
-                    .reduce( (a,b) -> a+AND+b).get());
-        
-        if(q.hasLogicalQueries() && q.hasSimpleQueries())
-            sb.append(AND);//Connect the logical block and simple block of child queries
+        q.getLogicalQueries()
+                .stream()
+                .map(lq -> CQE2SQL.getMapper((Class<LogicalQuery>) lq.getClass()).map((LogicalQuery) lq))
+                .forEach(conditions::add);
         
         //Prepare second block from simple child queries, if any
-        if(q.hasSimpleQueries())
-           sb.append(q.getSimpleQueries()
-                    .stream()
-                    .map(sq -> CQE2SQL.getMapper((Class<SimpleQuery<?,?>>)sq.getClass()).map((SimpleQuery<?, ?>) sq))
-                    .reduce( (a,b) -> a+AND+b).get());
-            
-        //Close parenthesis
-        sb.append(TC);
+        q.getSimpleQueries()
+                .stream()
+                .map(sq -> CQE2SQL.getMapper((Class<SimpleQuery<?,?>>)sq.getClass()).map((SimpleQuery<?, ?>) sq))
+                .forEach(conditions::add);
+        
+        //Prune constant conditions
+        if(conditions.contains(CQE2SQL.FALSE))
+            return CQE2SQL.FALSE;
+        
+        conditions.removeIf(CQE2SQL.TRUE::equals);
+        
+        if(conditions.isEmpty())
+            return CQE2SQL.TRUE;
         
-        return sb.toString();
+        //Enclose within parentheses
+        return SC + String.join(AND, conditions) + TC;
     }
     
 }
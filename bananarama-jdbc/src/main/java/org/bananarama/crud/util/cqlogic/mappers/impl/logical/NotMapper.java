@@ -17,8 +17,10 @@ package org.bananarama.crud.util.cqlogic.mappers.impl.logical;
 
 import com.googlecode.cqengine.query.Query;
 import com.googlecode.cqengine.query.logical.Not;
+import com.googlecode.cqengine.query.simple.In;
 import org.bananarama.crud.util.cqlogic.CQE2SQL;
 import org.bananarama.crud.util.cqlogic.mappers.Mapper;
+import org.bananarama.crud.util.cqlogic.mappers.impl.simple.InMapper;
 
 /**
  *
@@ -28,12 +30,24 @@ public class NotMapper implements Mapper<Not<?>>{
         private static final String NOT = " NOT ";
         private static final String TC = " ) ";
         private static final String SC = " ( ";
+        private static final InMapper IN = new InMapper();
 
     @Override @SuppressWarnings("unchecked")
     public String map(Not<?> q) {
         Query<?> negated = q.getNegatedQuery();
-
-        return NOT + SC + CQE2SQL.getMapper((Class<Query<?>>)negated.getClass()).map(negated) + TC;
+        
+        if(negated instanceof In)
+            return IN.map((In<?,?>)negated, true);
+        
+        final String condition = CQE2SQL.getMapper((Class<Query<?>>)negated.getClass()).map(negated);
+        
+        //Constant conditions are simply flipped
+        if(CQE2SQL.TRUE.equals(condition))
+            return CQE2SQL.FALSE;
+        if(CQE2SQL.FALSE.equals(condition))
+            return CQE2SQL.TRUE;
+        
+        return NOT + SC + condition + TC;
     }
     
 }
@@ -17,6 +17,7 @@ package org.bananarama.crud.util.cqlogic.mappers.impl.simple;
 
 import com.googlecode.cqengine.query.simple.Between;
 import org.bananarama.crud.util.cqlogic.mappers.Mapper;
+import static org.bananarama.crud.util.cqlogic.CQE2SQL.columnOf;
 import static org.bananarama.crud.util.cqlogic.mappers.SqlTypeStringTranslator.*;
 
 /**
@@ -29,7 +30,7 @@ public class BetweenMapper implements Mapper<Between<?,?>> {
     public String map(Between<?,?> q) {
         StringBuilder b = new StringBuilder();
         
-        b.append(q.getAttributeName());
+        b.append(columnOf(q.getAttribute()));
         b.append(" ");
         
         b.append(">");
@@ -39,7 +40,7 @@ public class BetweenMapper implements Mapper<Between<?,?>> {
         b.append(adapt(q.getLowerValue()));
         
         b.append(" AND ");
-        b.append(q.getAttributeName());
+        b.append(columnOf(q.getAttribute()));
         b.append(" ");
         
         b.append("<");
@@ -17,6 +17,7 @@ package org.bananarama.crud.util.cqlogic.mappers.impl.simple;
 
 import com.googlecode.cqengine.query.simple.Equal;
 import org.bananarama.crud.util.cqlogic.mappers.Mapper;
+import static org.bananarama.crud.util.cqlogic.CQE2SQL.columnOf;
 import static org.bananarama.crud.util.cqlogic.mappers.SqlTypeStringTranslator.*;
 /**
  *
@@ -27,9 +28,9 @@ public class EqualMapper implements Mapper<Equal<?,?>>{
     @Override
     public String map(Equal<?,?> q) {     
         if(q.getValue() != null)
-            return String.format("%s = %s",q.getAttributeName(),adapt(q.getValue()));
+            return String.format("%s = %s",columnOf(q.getAttribute()),adapt(q.getValue()));
         else
-            return String.format("%s is null",q.getAttributeName());
+            return String.format("%s is null",columnOf(q.getAttribute()));
     }
     
 }
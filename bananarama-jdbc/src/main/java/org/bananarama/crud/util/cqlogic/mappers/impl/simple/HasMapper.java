@@ -4,6 +4,7 @@
 package org.bananarama.crud.util.cqlogic.mappers.impl.simple;
 
 import org.bananarama.crud.util.cqlogic.mappers.Mapper;
+import static org.bananarama.crud.util.cqlogic.CQE2SQL.columnOf;
 
 import com.googlecode.cqengine.query.simple.Has;
 
@@ -20,7 +21,7 @@ public class HasMapper implements Mapper<Has<?,?>> {
     */
     @Override
     public String map(Has q) {
-        return String.format("%s is not null",q.getAttributeName());
+        return String.format("%s is not null",columnOf(q.getAttribute()));
     }
 
 }
@@ -17,6 +17,7 @@ package org.bananarama.crud.util.cqlogic.mappers.impl.simple;
 
 import com.googlecode.cqengine.query.simple.LessThan;
 import org.bananarama.crud.util.cqlogic.mappers.Mapper;
+import static org.bananarama.crud.util.cqlogic.CQE2SQL.columnOf;
 import static org.bananarama.crud.util.cqlogic.mappers.SqlTypeStringTranslator.*;
 /**
  *
@@ -28,7 +29,7 @@ public class LessThanMapper implements Mapper<LessThan<?,?>>{
     public String map(LessThan<?,?> q) {
         StringBuilder b = new StringBuilder();
         
-        b.append(q.getAttributeName());
+        b.append(columnOf(q.getAttribute()));
         b.append(" ");
         
         b.append("<");
@@ -20,6 +20,7 @@ import org.bananarama.crud.sql.annotation.Convert;
 import org.bananarama.crud.sql.annotation.ConvertWith;
 import org.bananarama.crud.sql.annotation.Id;
 import org.bananarama.crud.sql.annotation.Table;
+import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
@@ -30,7 +31,7 @@ import java.util.Map;
  */
 @Table(name = "pojo")
 @Convert(type = LocalDateTime.class,with = LocalDateTimeConverter.class)
-public class Pojo {
+public class Pojo implements Serializable{
     @Id 
     private int id;
 
@@ -17,15 +17,40 @@ package sql.basic;
 
 import org.bananarama.BananaRama;
 import org.bananarama.crud.CreateOperation;
+import org.bananarama.crud.Page;
+import org.bananarama.crud.Projection;
 import org.bananarama.crud.DeleteOperation;
 import org.bananarama.crud.ReadOperation;
 import org.bananarama.crud.UpdateOperation;
+import org.bananarama.crud.sql.SqlAdapter;
+import org.bananarama.crud.sql.SqlOperationOptions;
+import org.bananarama.io.SpillingDataCollector;
 import java.io.IOException;
+import java.time.Instant;
+import com.googlecode.cqengine.attribute.Attribute;
+import com.googlecode.cqengine.attribute.SimpleAttribute;
+import com.googlecode.cqengine.query.Query;
+import com.googlecode.cqengine.query.option.QueryOptions;
+import static com.googlecode.cqengine.query.QueryFactory.and;
+import static com.googlecode.cqengine.query.QueryFactory.descending;
+import static com.googlecode.cqengine.query.QueryFactory.equal;
+import static com.googlecode.cqengine.query.QueryFactory.in;
+import static com.googlecode.cqengine.query.QueryFactory.lessThan;
+import static com.googlecode.cqengine.query.QueryFactory.matchesRegex;
+import static com.googlecode.cqengine.query.QueryFactory.or;
+import static com.googlecode.cqengine.query.QueryFactory.orderBy;
+import static com.googlecode.cqengine.query.QueryFactory.not;
+import static com.googlecode.cqengine.query.QueryFactory.queryOptions;
+import static com.googlecode.cqengine.query.QueryFactory.startsWith;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import org.h2.jdbcx.JdbcConnectionPool;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -60,6 +85,623 @@ public class SqlTest {
         testBatchMultiId(100);     
     }
     
+    @Test
+    public void testChunkedFromKeys(){
+        final String table = "kpojo";
+        final QueryOptions options = queryOptions(SqlOperationOptions.tableName(table));
+        
+        adap.doUpdate("CREATE TABLE kpojo (" +
+                "id integer not null, " +
+                "xyz double," +
+                "toa timestamp," +
+                "attrs char(128)," +
+                "name char(128)," +
+                "primary key (id));");
+        
+        adap.create(Pojo.class).from(IntStream.range(0, 2000).mapToObj(Pojo::newInstance), options);
+        
+        for(int n : new int[]{1, 7, 9, 512, 513, 1500}){
+            final List<Integer> keys = IntStream.range(0, n)
+                    .mapToObj(Integer::valueOf)
+                    .collect(Collectors.toList());
+            //Duplicates are read only once
+            keys.addAll(keys.subList(0, n/2));
+            
+            final List<Integer> read = adap.read(Pojo.class)
+                    .fromKeys(keys, options)
+                    .map(Pojo::getId)
+                    .sorted()
+                    .collect(Collectors.toList());
+            
+            Assert.assertEquals(keys.subList(0, n), read);
+        }
+        
+        Assert.assertEquals(0, adap.read(Pojo.class).fromKeys(new ArrayList<>(), options).count());
+        Assert.assertEquals(1, adap.read(Pojo.class).keyParallelism(1)
+                .fromKeys(Arrays.asList(5, 5000), options).count());
+        
+        adap.doUpdate("DROP TABLE kpojo;");
+    }
+    
+    @Test
+    public void testSetBasedWrites(){
+        final QueryOptions options = queryOptions(SqlOperationOptions.SET_BASED.withTableName("spojo"));
+        
+        adap.doUpdate("CREATE TABLE spojo (" +
+                "id integer not null, " +
+                "xyz double," +
+                "toa timestamp," +
+                "attrs char(128)," +
+                "name char(128)," +
+                "primary key (id));");
+        
+        final List<Pojo> pojos = IntStream.range(0, 3000)
+                .mapToObj(Pojo::newInstance)
+                .collect(Collectors.toList());
+        adap.create(Pojo.class).from(pojos.stream(), options);
+        
+        final List<Pojo> updated = pojos.subList(0, 2500);
+        updated.forEach(pojo -> pojo.setLaBel("UPDATE|" + pojo.getId()));
+        //The last copy of a record is the one which is written
+        final Pojo stale = Pojo.newInstance(0);
+        adap.update(Pojo.class).from(Stream.concat(Stream.of(stale), updated.stream()), options);
+        
+        final List<Pojo> read = adap.read(Pojo.class).all(options)
+                .sorted((a,b) -> a.getId() - b.getId())
+                .collect(Collectors.toList());
+        
+        Assert.assertEquals(pojos, read);
+        Assert.assertEquals(2500, read.stream().filter(pojo -> pojo.getLaBel().startsWith("UPDATE|")).count());
+        Assert.assertEquals(pojos.get(7).getXyz(), read.get(7).getXyz());
+        
+        adap.delete(Pojo.class).from(Stream.concat(pojos.subList(0, 2000).stream(), pojos.subList(0, 10).stream()), options);
+        Assert.assertEquals(1000, adap.read(Pojo.class).all(options).count());
+        Assert.assertFalse(adap.read(Pojo.class).all(options).anyMatch(pojo -> pojo.getId() < 2000));
+        
+        adap.doUpdate("DROP TABLE spojo;");
+    }
+    
+    @Test
+    public void testSetBasedWritesMultiId(){
+        final QueryOptions options = queryOptions(SqlOperationOptions.SET_BASED.withTableName("smpojo"));
+        
+        adap.doUpdate("CREATE TABLE smpojo (" +
+                "id integer not null, " +
+                "textid char(64) not null, " +
+                "xyz double," +
+                "toa timestamp," +
+                "attrs char(128)," +
+                "name char(128)," +
+                "primary key (id,textid));");
+        
+        final List<MultipleIdColPojo> pojos = IntStream.range(0, 300)
+                .mapToObj(MultipleIdColPojo::newInstance)
+                .collect(Collectors.toList());
+        adap.create(MultipleIdColPojo.class).from(pojos.stream(), options);
+        
+        pojos.forEach(pojo -> pojo.setLaBel("UPDATE|" + pojo.getId()));
+        adap.update(MultipleIdColPojo.class).from(pojos.stream(), options);
+        
+        Assert.assertTrue(adap.read(MultipleIdColPojo.class).all(options)
+                .allMatch(pojo -> pojo.getLaBel().equals("UPDATE|" + pojo.getId())));
+        
+        adap.delete(MultipleIdColPojo.class).from(pojos.subList(0, 150).stream(), options);
+        Assert.assertEquals(150, adap.read(MultipleIdColPojo.class).all(options).count());
+        
+        adap.doUpdate("DROP TABLE smpojo;");
+    }
+    
+    @Test
+    public void testMultiRowInsert(){
+        final SqlOperationOptions setBased = SqlOperationOptions.SET_BASED.withTableName("ipojo");
+        
+        adap.doUpdate("CREATE TABLE ipojo (" +
+                "id integer not null, " +
+                "xyz double," +
+                "toa timestamp," +
+                "attrs char(128)," +
+                "name char(128)," +
+                "primary key (id));");
+        
+        //The default limit and a tiny one, which forces chunks of 8 rows
+        for(QueryOptions options : Arrays.asList(queryOptions(setBased), queryOptions(setBased.withMaxParameters(40))))
+            for(int n : new int[]{1, 7, 1037}){
+                final List<Pojo> pojos = IntStream.range(0, n)
+                        .mapToObj(Pojo::newInstance)
+                        .collect(Collectors.toList());
+                
+                adap.create(Pojo.class).from(pojos.stream(), options);
+                
+                Assert.assertEquals(pojos, adap.read(Pojo.class).all(options)
+                        .sorted((a,b) -> a.getId() - b.getId())
+                        .collect(Collectors.toList()));
+                
+                adap.delete(Pojo.class).where(null, options);
+            }
+        
+        adap.doUpdate("DROP TABLE ipojo;");
+    }
+    
+    @Test
+    public void testChangedColumnsUpdate(){
+        adap.doUpdate("CREATE TABLE tpojo (" +
+                "id integer not null, " +
+                "xyz double," +
+                "name char(128)," +
+                "primary key (id));");
+        
+        final List<TrackedPojo> pojos = IntStream.range(0, 30)
+                .mapToObj(TrackedPojo::newInstance)
+                .collect(Collectors.toList());
+        adap.create(TrackedPojo.class).from(pojos.stream());
+        pojos.forEach(TrackedPojo::clearChangedFields);
+        
+        for(TrackedPojo pojo : pojos){
+            if(pojo.getId() % 3 == 0)
+                pojo.setLabel("UPDATE|" + pojo.getId());
+            else{
+                if(pojo.getId() % 3 == 1)
+                    pojo.setXyz(-1.0);
+                
+                //Untracked changes are not written
+                pojo.sneakLabel("SNEAKY");
+            }
+        }
+        
+        adap.update(TrackedPojo.class).from(pojos.stream());
+        
+        Assert.assertTrue(pojos.stream().allMatch(pojo -> pojo.getChangedFields().isEmpty()));
+        
+        adap.read(TrackedPojo.class).all().forEach(pojo -> {
+            switch(pojo.getId() % 3){
+                case 0:
+                    Assert.assertEquals("UPDATE|" + pojo.getId(), pojo.getLabel().trim());
+                    Assert.assertEquals(pojo.getId() + 0.5, pojo.getXyz(), 0);
+                    break;
+                case 1:
+                    Assert.assertEquals("TRACKED:id=" + pojo.getId(), pojo.getLabel().trim());
+                    Assert.assertEquals(-1.0, pojo.getXyz(), 0);
+                    break;
+                default:
+                    Assert.assertEquals("TRACKED:id=" + pojo.getId(), pojo.getLabel().trim());
+                    Assert.assertEquals(pojo.getId() + 0.5, pojo.getXyz(), 0);
+            }
+        });
+        
+        adap.doUpdate("DROP TABLE tpojo;");
+    }
+    
+    @Test
+    public void testUpsert(){
+        final QueryOptions options = queryOptions(SqlOperationOptions.tableName("upojo"));
+        
+        adap.doUpdate("CREATE TABLE upojo (" +
+                "id integer not null, " +
+                "xyz double," +
+                "toa timestamp," +
+                "attrs char(128)," +
+                "name char(128)," +
+                "primary key (id));");
+        
+        adap.create(Pojo.class).from(IntStream.range(0, 100).mapToObj(Pojo::newInstance), options);
+        
+        final List<Pojo> upserted = IntStream.range(50, 150)
+                .mapToObj(Pojo::newInstance)
+                .collect(Collectors.toList());
+        upserted.forEach(pojo -> pojo.setLaBel("UPSERT|" + pojo.getId()));
+        
+        adap.upsert(Pojo.class).from(upserted.stream(), options);
+        
+        final List<Pojo> read = adap.read(Pojo.class).all(options)
+                .sorted((a,b) -> a.getId() - b.getId())
+                .collect(Collectors.toList());
+        
+        Assert.assertEquals(150, read.size());
+        
+        for(Pojo pojo : read)
+            Assert.assertEquals((pojo.getId() < 50 ? "POJO:id=" : "UPSERT|") + pojo.getId(), pojo.getLaBel());
+        
+        adap.doUpdate("DROP TABLE upojo;");
+    }
+    
+    private static final Attribute<Pojo,Integer> ID = new SimpleAttribute<Pojo,Integer>("id"){
+        @Override
+        public Integer getValue(Pojo pojo, QueryOptions qo) {
+            return pojo.getId();
+        }
+    };
+    
+    private static final Attribute<Pojo,Double> XYZ = new SimpleAttribute<Pojo,Double>("xyz"){
+        @Override
+        public Double getValue(Pojo pojo, QueryOptions qo) {
+            return pojo.getXyz();
+        }
+    };
+    
+    private static final Attribute<StampedPojo,Instant> STAMP = new SimpleAttribute<StampedPojo,Instant>("stamp"){
+        @Override
+        public Instant getValue(StampedPojo pojo, QueryOptions qo) {
+            return pojo.getStamp();
+        }
+    };
+    
+    private static final Attribute<Pojo,String> LABEL = new SimpleAttribute<Pojo,String>("name"){
+        @Override
+        public String getValue(Pojo pojo, QueryOptions qo) {
+            return pojo.getLaBel();
+        }
+    };
+    
+    //Named after the field, mapped to its column
+    private static final Attribute<Pojo,String> LA_BEL = new SimpleAttribute<Pojo,String>("laBel"){
+        @Override
+        public String getValue(Pojo pojo, QueryOptions qo) {
+            return pojo.getLaBel();
+        }
+    };
+    
+    private static List<Integer> readPages(Query<Pojo> query,int pageSize,QueryOptions options,List<Integer> pageSizes){
+        final List<Integer> ids = new ArrayList<>();
+        final ReadOperation<Pojo> read = adap.read(Pojo.class);
+        Integer token = null;
+        
+        do{
+            Page<Pojo,Integer> page = read.page(query, ID, pageSize, token, options);
+            page.getItems().forEach(pojo -> ids.add(pojo.getId()));
+            pageSizes.add(page.getItems().size());
+            token = page.getNextToken();
+        }
+        while(token != null);
+        
+        return ids;
+    }
+    
+    @Test
+    public void testSpillingRead() throws IOException{
+        final QueryOptions options = queryOptions(SqlOperationOptions.tableName("lpojo"));
+        
+        adap.doUpdate("CREATE TABLE lpojo (" +
+                "id integer not null, " +
+                "xyz double," +
+                "toa timestamp," +
+                "attrs char(128)," +
+                "name char(128)," +
+                "primary key (id));");
+        
+        adap.create(Pojo.class).from(IntStream.range(0, 250).mapToObj(Pojo::newInstance), options);
+        
+        //Rows are fed to the collector while they are read
+        try(SpillingDataCollector<Pojo> collector = new SpillingDataCollector<>(100)){
+            adap.read(Pojo.class).all(collector, options);
+            Assert.assertEquals(2, collector.getSpilledChunks());
+            
+            try(Stream<Pojo> dumped = collector.dump()){
+                Assert.assertEquals(IntStream.range(0, 250).boxed().collect(Collectors.toList()),
+                        dumped.map(Pojo::getId).sorted().collect(Collectors.toList()));
+            }
+        }
+        
+        try(Stream<Pojo> read = adap.read(Pojo.class).all(options)){
+            Assert.assertEquals(10, read.limit(10).count());
+        }
+        
+        adap.doUpdate("DROP TABLE lpojo;");
+    }
+    
+    @Test
+    public void testConnectionsReleased(){
+        final QueryOptions options = queryOptions(SqlOperationOptions.tableName("cpojo"));
+        //Same in-memory database, at most 2 connections
+        final JdbcConnectionPool pool = JdbcConnectionPool.create("jdbc:h2:mem:testdb", "", "");
+        pool.setMaxConnections(2);
+        pool.setLoginTimeout(1);
+        
+        adap.doUpdate("CREATE TABLE cpojo (" +
+                "id integer not null, " +
+                "xyz double," +
+                "toa timestamp," +
+                "attrs char(128)," +
+                "name char(128)," +
+                "primary key (id));");
+        
+        try{
+            final SqlAdapter pooled = new SqlAdapter(pool){};
+            pooled.create(Pojo.class).from(IntStream.range(0, 20).mapToObj(Pojo::newInstance), options);
+            
+            //Partially consumed streams must not hold their connection
+            for(int i=0;i<5;i++){
+                Assert.assertTrue(pooled.read(Pojo.class).exists(matchesRegex(LABEL, "POJO.*"), options));
+                Assert.assertTrue(pooled.read(Pojo.class).all(options).findFirst().isPresent());
+            }
+            
+            Assert.assertEquals(0, pool.getActiveConnections());
+            Assert.assertEquals(3, pooled.read(Pojo.class)
+                    .where(matchesRegex(LABEL, "POJO.*"), queryOptions(SqlOperationOptions.tableName("cpojo").withLimit(3)))
+                    .count());
+        }
+        finally{
+            pool.dispose();
+            adap.doUpdate("DROP TABLE cpojo;");
+        }
+    }
+    
+    @Test
+    public void testKeysetPagination(){
+        final QueryOptions options = queryOptions(SqlOperationOptions.tableName("ppojo"));
+        
+        adap.doUpdate("CREATE TABLE ppojo (" +
+                "id integer not null, " +
+                "xyz double," +
+                "toa timestamp," +
+                "attrs char(128)," +
+                "name char(128)," +
+                "primary key (id));");
+        
+        //Insert in reverse order, pages must follow the ordering attribute anyway
+        adap.create(Pojo.class).from(IntStream.range(0, 95).map(i -> 94 - i).mapToObj(Pojo::newInstance), options);
+        
+        final List<Integer> sizes = new ArrayList<>();
+        
+        Assert.assertEquals(IntStream.range(0, 95).boxed().collect(Collectors.toList()), readPages(null, 10, options, sizes));
+        Assert.assertEquals(Arrays.asList(10,10,10,10,10,10,10,10,10,5), sizes);
+        
+        sizes.clear();
+        
+        //The last full page is followed by an empty one
+        Assert.assertEquals(IntStream.range(0, 80).boxed().collect(Collectors.toList()), readPages(lessThan(XYZ, 80.0), 20, options, sizes));
+        Assert.assertEquals(Arrays.asList(20,20,20,20,0), sizes);
+        
+        adap.doUpdate("DROP TABLE ppojo;");
+    }
+    
+    @Test
+    public void testPageOnConvertedColumn(){
+        adap.doUpdate("CREATE TABLE stpojo (" +
+                "id integer not null, " +
+                "stamp timestamp," +
+                "primary key (id));");
+        
+        final Instant base = Instant.parse("2016-01-01T00:00:00Z");
+        adap.create(StampedPojo.class).from(IntStream.range(0, 25)
+                .mapToObj(i -> new StampedPojo(i, base.minusSeconds(60 * i))));
+        
+        //Tokens are bound through the converter of the column
+        final List<Integer> ids = new ArrayList<>();
+        Instant token = null;
+        
+        do{
+            Page<StampedPojo,Instant> page = adap.read(StampedPojo.class).page(null, STAMP, 10, token);
+            page.getItems().forEach(pojo -> ids.add(pojo.getId()));
+            token = page.getNextToken();
+        }
+        while(token != null);
+        
+        Assert.assertEquals(IntStream.range(0, 25).map(i -> 24 - i).boxed().collect(Collectors.toList()), ids);
+        
+        adap.doUpdate("DROP TABLE stpojo;");
+    }
+    
+    @Test
+    public void testAggregates(){
+        final QueryOptions options = queryOptions(SqlOperationOptions.tableName("apojo"));
+        
+        adap.doUpdate("CREATE TABLE apojo (" +
+                "id integer not null, " +
+                "xyz double," +
+                "toa timestamp," +
+                "attrs char(128)," +
+                "name char(128)," +
+                "primary key (id));");
+        
+        adap.create(Pojo.class).from(IntStream.range(0, 50)
+                .mapToObj(Pojo::newInstance)
+                .peek(pojo -> pojo.setLaBel(pojo.getId() % 5 == 0 ? "five" : "other")), options);
+        
+        final ReadOperation<Pojo> read = adap.read(Pojo.class);
+        
+        Assert.assertEquals(50, read.count(null, options));
+        Assert.assertEquals(10, read.count(lessThan(XYZ, 10.0), options));
+        Assert.assertTrue(read.exists(equal(LABEL, "five"), options));
+        Assert.assertFalse(read.exists(lessThan(XYZ, 0.0), options));
+        
+        Assert.assertEquals(Integer.valueOf(0), read.min(ID, null, options).get());
+        Assert.assertEquals(Integer.valueOf(9), read.max(ID, lessThan(XYZ, 10.0), options).get());
+        Assert.assertFalse(read.max(ID, lessThan(XYZ, 0.0), options).isPresent());
+        
+        Assert.assertEquals(50.0, read.sum(XYZ, lessThan(XYZ, 10.0), options), 0.0);
+        Assert.assertEquals(0.0, read.sum(XYZ, lessThan(XYZ, 0.0), options), 0.0);
+        Assert.assertEquals(24.5, read.avg(ID, null, options).getAsDouble(), 0.0);
+        Assert.assertFalse(read.avg(ID, lessThan(XYZ, 0.0), options).isPresent());
+        
+        final Map<String,Long> expected = new HashMap<>();
+        expected.put("five", 10L);
+        expected.put("other", 40L);
+        Assert.assertEquals(expected, read.countBy(LABEL, null, options));
+        
+        expected.put("five", 2L);
+        expected.put("other", 8L);
+        Assert.assertEquals(expected, read.countBy(LABEL, lessThan(XYZ, 10.0), options));
+        
+        adap.doUpdate("DROP TABLE apojo;");
+    }
+    
+    @Test
+    public void testResidualQuery(){
+        final SqlOperationOptions sqlOpts = SqlOperationOptions.tableName("rpojo");
+        final QueryOptions options = queryOptions(sqlOpts);
+        
+        adap.doUpdate("CREATE TABLE rpojo (" +
+                "id integer not null, " +
+                "xyz double," +
+                "toa timestamp," +
+                "attrs char(128)," +
+                "name char(128)," +
+                "primary key (id));");
+        
+        adap.create(Pojo.class).from(IntStream.range(0, 30).mapToObj(Pojo::newInstance), options);
+        
+        //Regular expressions are not translated to SQL, they filter the rows below 20
+        final Query<Pojo> query = and(lessThan(XYZ, 20.0), matchesRegex(LABEL, "POJO:id=1.*"));
+        
+        Assert.assertEquals(Arrays.asList(1,10,11,12,13,14,15,16,17,18,19), adap.read(Pojo.class).where(query, options)
+                .map(Pojo::getId)
+                .sorted()
+                .collect(Collectors.toList()));
+        
+        //The limit is applied after the residual filter
+        Assert.assertEquals(Arrays.asList(19,18,17), adap.read(Pojo.class)
+                .where(query, queryOptions(sqlOpts.withLimit(3), orderBy(descending(ID))))
+                .map(Pojo::getId)
+                .collect(Collectors.toList()));
+        
+        Assert.assertEquals(11, adap.read(Pojo.class).count(query, options));
+        Assert.assertEquals(3, adap.read(Pojo.class).count(or(equal(ID, 2), matchesRegex(LABEL, ".*=2[89]")), options));
+        
+        adap.doUpdate("DROP TABLE rpojo;");
+    }
+    
+    @Test
+    public void testExtendedQueries(){
+        final QueryOptions options = queryOptions(SqlOperationOptions.tableName("qpojo"));
+        
+        adap.doUpdate("CREATE TABLE qpojo (" +
+                "id integer not null, " +
+                "xyz double," +
+                "toa timestamp," +
+                "attrs char(128)," +
+                "name char(128)," +
+                "primary key (id));");
+        
+        adap.create(Pojo.class).from(IntStream.range(0, 30)
+                .mapToObj(Pojo::newInstance)
+                .peek(pojo -> pojo.setLaBel(pojo.getId() == 7 ? "it's 50%" : pojo.getLaBel()))
+                .peek(pojo -> pojo.setLaBel(pojo.getId() == 9 ? "wow!_5\\" : pojo.getLaBel())), options);
+        
+        final ReadOperation<Pojo> read = adap.read(Pojo.class);
+        
+        Assert.assertEquals(Arrays.asList(3,5,8), read.where(in(ID, 3, 5, 8, 99), options)
+                .map(Pojo::getId).sorted().collect(Collectors.toList()));
+        Assert.assertEquals(27, read.count(not(in(ID, 3, 5, 8)), options));
+        
+        //The field name is translated to the column name
+        Assert.assertEquals(Arrays.asList(2,20,21,22,23,24,25,26,27,28,29), read.where(startsWith(LA_BEL, "POJO:id=2"), options)
+                .map(Pojo::getId).sorted().collect(Collectors.toList()));
+        Assert.assertEquals(Arrays.asList(7), read.where(startsWith(LA_BEL, "it's 5"), options)
+                .map(Pojo::getId).collect(Collectors.toList()));
+        Assert.assertEquals(0, read.count(startsWith(LA_BEL, "it_s"), options));
+        //The escape character and backslashes are matched literally
+        Assert.assertEquals(Arrays.asList(9), read.where(startsWith(LA_BEL, "wow!_5\\"), options)
+                .map(Pojo::getId).collect(Collectors.toList()));
+        Assert.assertEquals(0, read.count(startsWith(LA_BEL, "wow!!"), options));
+        
+        adap.doUpdate("DROP TABLE qpojo;");
+    }
+    
+    public interface PojoLabel {
+        int getId();
+        String getLaBel();
+    }
+    
+    @Test
+    public void testProjection(){
+        final QueryOptions options = queryOptions(SqlOperationOptions.tableName("jpojo"));
+        
+        adap.doUpdate("CREATE TABLE jpojo (" +
+                "id integer not null, " +
+                "xyz double," +
+                "toa timestamp," +
+                "attrs char(128)," +
+                "name char(128)," +
+                "primary key (id));");
+        
+        adap.create(Pojo.class).from(IntStream.range(0, 20).mapToObj(Pojo::newInstance), options);
+        
+        final QueryOptions projected = Projection.of("id","laBel").addTo(options);
+        
+        //Fields left out of the projection are not read
+        adap.read(Pojo.class).all(projected).forEach(pojo -> {
+            Assert.assertEquals("POJO:id=" + pojo.getId(), pojo.getLaBel());
+            Assert.assertNull(pojo.getXyz());
+            Assert.assertNull(pojo.getToa());
+        });
+        
+        final List<Pojo> byKeys = adap.read(Pojo.class).fromKeys(Arrays.asList(3,4), projected).collect(Collectors.toList());
+        Assert.assertEquals(2, byKeys.size());
+        byKeys.forEach(pojo -> Assert.assertNull(pojo.getXyz()));
+        
+        //Full reads of the same keys are not affected by the projected statement
+        adap.read(Pojo.class).fromKeys(Arrays.asList(3,4), options)
+                .forEach(pojo -> Assert.assertEquals(pojo.getId() + 0.5, pojo.getXyz(), 0.0));
+        
+        final List<PojoLabel> views = adap.read(Pojo.class)
+                .project(PojoLabel.class, lessThan(XYZ, 5.0), options)
+                .collect(Collectors.toList());
+        
+        Assert.assertEquals(5, views.size());
+        views.forEach(view -> Assert.assertEquals("POJO:id=" + view.getId(), view.getLaBel()));
+        
+        try{
+            adap.read(Pojo.class).all(Projection.of("id","missing").addTo(options));
+            Assert.fail("Unknown fields must be rejected");
+        }
+        catch(IllegalArgumentException ex){
+            Assert.assertTrue(ex.getMessage().contains("missing"));
+        }
+        
+        adap.doUpdate("DROP TABLE jpojo;");
+    }
+    
+    @Test
+    public void testProjectionWithResidual(){
+        final QueryOptions options = queryOptions(SqlOperationOptions.tableName("prpojo"));
+        
+        adap.doUpdate("CREATE TABLE prpojo (" +
+                "id integer not null, " +
+                "xyz double," +
+                "toa timestamp," +
+                "attrs char(128)," +
+                "name char(128)," +
+                "primary key (id));");
+        
+        adap.create(Pojo.class).from(IntStream.range(0, 20).mapToObj(Pojo::newInstance), options);
+        
+        final ReadOperation<Pojo> read = adap.read(Pojo.class);
+        
+        //The residual query reads the label even if it's not projected
+        final List<Pojo> matching = read.where(and(lessThan(ID, 5), matchesRegex(LABEL, ".*=[13]")), Projection.of("id").addTo(options))
+                .collect(Collectors.toList());
+        
+        Assert.assertEquals(Arrays.asList(1, 3), matching.stream().map(Pojo::getId).sorted().collect(Collectors.toList()));
+        Assert.assertNull(matching.get(0).getXyz());
+        
+        //So do tokens, with and without residual predicates
+        final QueryOptions labels = Projection.of("laBel").addTo(options);
+        
+        for(Query<Pojo> query : Arrays.<Query<Pojo>>asList(null, matchesRegex(LABEL, "POJO.*"))){
+            final Page<Pojo,Integer> page = read.page(query, ID, 15, null, labels);
+            
+            Assert.assertEquals(Integer.valueOf(14), page.getNextToken());
+            Assert.assertEquals(5, read.page(query, ID, 15, page.getNextToken(), labels).getItems().size());
+        }
+        
+        final Attribute<Pojo,Integer> computed = new SimpleAttribute<Pojo,Integer>("twice"){
+            @Override
+            public Integer getValue(Pojo pojo, QueryOptions qo) {
+                return pojo.getId() * 2;
+            }
+        };
+        
+        try{
+            read.page(null, computed, 5, null, labels);
+            Assert.fail("Attributes without column can't be read on a projection");
+        }
+        catch(IllegalArgumentException ex){
+            Assert.assertTrue(ex.getMessage().contains("twice"));
+        }
+        
+        adap.doUpdate("DROP TABLE prpojo;");
+    }
+    
     @Test
     public void testInheritance(){
         //Create table;;
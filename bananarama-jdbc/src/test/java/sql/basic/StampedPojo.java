@@ -0,0 +1,55 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sql.basic;
+
+import java.time.Instant;
+import org.bananarama.crud.sql.annotation.ConvertWith;
+import org.bananarama.crud.sql.annotation.Id;
+import org.bananarama.crud.sql.annotation.Table;
+
+@Table(name = "stpojo")
+public class StampedPojo {
+    @Id
+    private int id;
+    
+    @ConvertWith(InstantConverter.class)
+    private Instant stamp;
+    
+    public StampedPojo(){
+    }
+
+    public StampedPojo(int id, Instant stamp) {
+        this.id = id;
+        this.stamp = stamp;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public Instant getStamp() {
+        return stamp;
+    }
+
+    public void setStamp(Instant stamp) {
+        this.stamp = stamp;
+    }
+    
+}
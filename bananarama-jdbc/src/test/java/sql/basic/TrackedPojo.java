@@ -0,0 +1,91 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sql.basic;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.bananarama.crud.sql.ChangeTracking;
+import org.bananarama.crud.sql.annotation.Column;
+import org.bananarama.crud.sql.annotation.Id;
+import org.bananarama.crud.sql.annotation.Table;
+import org.bananarama.crud.sql.annotation.Transient;
+
+@Table(name = "tpojo")
+public class TrackedPojo implements ChangeTracking{
+    @Id
+    private int id;
+    
+    @Column(name = "name")
+    private String label;
+    
+    private Double xyz;
+    
+    @Transient
+    private final Set<String> changed = new HashSet<>();
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+        changed.add("id");
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+        changed.add("label");
+    }
+
+    public Double getXyz() {
+        return xyz;
+    }
+
+    public void setXyz(Double xyz) {
+        this.xyz = xyz;
+        changed.add("xyz");
+    }
+    
+    /**
+     * Changes the label without tracking it
+     * @param label
+     */
+    public void sneakLabel(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public Set<String> getChangedFields() {
+        return changed;
+    }
+
+    @Override
+    public void clearChangedFields() {
+        changed.clear();
+    }
+    
+    public static TrackedPojo newInstance(int id){
+        TrackedPojo pojo = new TrackedPojo();
+        pojo.setId(id);
+        pojo.setLabel("TRACKED:id=" + id);
+        pojo.setXyz(id + 0.5);
+        return pojo;
+    }
+}
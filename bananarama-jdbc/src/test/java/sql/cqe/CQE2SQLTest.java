@@ -22,6 +22,8 @@ import static com.googlecode.cqengine.query.QueryFactory.*;
 import com.googlecode.cqengine.query.option.QueryOptions;
 import org.bananarama.crud.sql.SqlOperationOptions;
 import org.bananarama.crud.util.cqlogic.CQE2SQL;
+import org.bananarama.crud.util.cqlogic.QueryPlan;
+import org.bananarama.crud.sql.annotation.Column;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -83,6 +85,33 @@ public class CQE2SQLTest {
         
     }
     
+    private static class Oompa extends UmpaLumpa{
+        @Column(name = "nick_name")
+        private String nickName;
+        
+        protected Oompa(int id,String label){
+            super(id, label);
+        }
+        
+        public static final Attribute<Oompa, String> NICK_NAME = new SimpleAttribute<Oompa, String>("nickName") {
+            
+            @Override
+            public String getValue(Oompa obj, QueryOptions queryOptions) {
+                
+                return obj.nickName;
+            }
+        };
+        
+        public static final Attribute<Oompa, Integer> ID = new SimpleAttribute<Oompa, Integer>("id") {
+            
+            @Override
+            public Integer getValue(Oompa obj, QueryOptions queryOptions) {
+                
+                return obj.getClass() == Oompa.class ? 0 : 1;
+            }
+        };
+    }
+    
     @Test
     public void testOrderBy() {
         Query<UmpaLumpa> query = equal(UmpaLumpa.LABEL, "uno");
@@ -112,4 +141,82 @@ public class CQE2SQLTest {
         assertEquals(whereClause, " ORDER BY id DESC LIMIT 100");
         
     }
+    
+    @Test
+    public void testQueryPlan() {
+        Query<UmpaLumpa> supported = and(equal(UmpaLumpa.ID, 1), lessThan(UmpaLumpa.LABEL, "z"));
+        Query<UmpaLumpa> regex = matchesRegex(UmpaLumpa.LABEL, "u.*");
+        
+        assertTrue(CQE2SQL.isSupported(supported));
+        assertFalse(CQE2SQL.isSupported(regex));
+        assertFalse(CQE2SQL.isSupported(or(equal(UmpaLumpa.ID, 1), regex)));
+        
+        QueryPlan<UmpaLumpa> plan = QueryPlan.of(supported);
+        assertTrue(plan.isFullyPushedDown());
+        assertEquals(supported, plan.getPushdown());
+        
+        //Children of a conjunction are split
+        plan = QueryPlan.of(and(equal(UmpaLumpa.ID, 1), regex, lessThan(UmpaLumpa.ID, 5)));
+        assertEquals(and(equal(UmpaLumpa.ID, 1), lessThan(UmpaLumpa.ID, 5)), plan.getPushdown());
+        assertEquals(regex, plan.getResidual());
+        
+        //Nested conjunctions too
+        plan = QueryPlan.of(and(equal(UmpaLumpa.ID, 1), and(regex, lessThan(UmpaLumpa.ID, 5))));
+        assertEquals(and(equal(UmpaLumpa.ID, 1), lessThan(UmpaLumpa.ID, 5)), plan.getPushdown());
+        assertEquals(regex, plan.getResidual());
+        
+        //Disjunctions can't be split
+        Query<UmpaLumpa> disjunction = or(equal(UmpaLumpa.ID, 1), regex);
+        plan = QueryPlan.of(and(disjunction, equal(UmpaLumpa.LABEL, "uno")));
+        assertEquals(equal(UmpaLumpa.LABEL, "uno"), plan.getPushdown());
+        assertEquals(disjunction, plan.getResidual());
+        
+        plan = QueryPlan.of(disjunction);
+        assertNull(plan.getPushdown());
+        assertEquals(disjunction, plan.getResidual());
+    }
+    
+    @Test
+    public void testInAndLike() {
+        assertEquals(" WHERE id IN (1, 2, 3)", CQE2SQL.convertCqQuery(in(UmpaLumpa.ID, 1, 2, 3)));
+        assertEquals(" WHERE id NOT IN (1, 2)", CQE2SQL.convertCqQuery(not(in(UmpaLumpa.ID, 1, 2))));
+        assertEquals(" WHERE label IN ('it''s', 'x')", CQE2SQL.convertCqQuery(in(UmpaLumpa.LABEL, "it's", "x")));
+        
+        assertEquals(" WHERE label LIKE 'un%' ESCAPE '!'", CQE2SQL.convertCqQuery(startsWith(UmpaLumpa.LABEL, "un")));
+        assertEquals(" WHERE label LIKE '%no' ESCAPE '!'", CQE2SQL.convertCqQuery(endsWith(UmpaLumpa.LABEL, "no")));
+        assertEquals(" WHERE label LIKE '%n!_o!%%' ESCAPE '!'", CQE2SQL.convertCqQuery(contains(UmpaLumpa.LABEL, "n_o%")));
+        
+        assertTrue(CQE2SQL.isSupported(or(in(UmpaLumpa.ID, 1, 2), startsWith(UmpaLumpa.LABEL, "u"))));
+    }
+    
+    @Test
+    public void testLikeEscape() {
+        //The escape character is declared on every pattern and escaped within the value too
+        assertEquals(" WHERE label LIKE 'a!!b%' ESCAPE '!'", CQE2SQL.convertCqQuery(startsWith(UmpaLumpa.LABEL, "a!b")));
+        assertEquals(" WHERE label LIKE 'a\\b%' ESCAPE '!'", CQE2SQL.convertCqQuery(startsWith(UmpaLumpa.LABEL, "a\\b")));
+        assertEquals(" WHERE  ( id IN (1, 2) AND label LIKE '%it''s!_%' ESCAPE '!' ) ", 
+                CQE2SQL.convertCqQuery(and(in(UmpaLumpa.ID, 1, 2), contains(UmpaLumpa.LABEL, "it's_"))));
+    }
+    
+    @Test
+    public void testConstantPruning() {
+        assertEquals("", CQE2SQL.convertCqQuery(all(UmpaLumpa.class)));
+        assertEquals(" WHERE 1 = 0", CQE2SQL.convertCqQuery(none(UmpaLumpa.class)));
+        assertEquals("", CQE2SQL.convertCqQuery(not(none(UmpaLumpa.class))));
+        
+        assertEquals(" WHERE  ( id = 1 ) ", CQE2SQL.convertCqQuery(and(all(UmpaLumpa.class), equal(UmpaLumpa.ID, 1))));
+        assertEquals(" WHERE 1 = 0", CQE2SQL.convertCqQuery(and(none(UmpaLumpa.class), equal(UmpaLumpa.ID, 1))));
+        assertEquals("", CQE2SQL.convertCqQuery(or(all(UmpaLumpa.class), equal(UmpaLumpa.ID, 1))));
+        assertEquals(" WHERE  ( id = 1 OR id = 2 ) ", CQE2SQL.convertCqQuery(or(none(UmpaLumpa.class), equal(UmpaLumpa.ID, 1), equal(UmpaLumpa.ID, 2))));
+    }
+    
+    @Test
+    public void testColumnNames() {
+        assertEquals("nick_name", CQE2SQL.columnOf(Oompa.NICK_NAME));
+        //Fields are looked up in superclasses too
+        assertEquals("id", CQE2SQL.columnOf(Oompa.ID));
+        
+        assertEquals(" WHERE nick_name = 'x' ORDER BY nick_name DESC", 
+                CQE2SQL.convertCqQuery(equal(Oompa.NICK_NAME, "x"), queryOptions(orderBy(descending(Oompa.NICK_NAME)))));
+    }
 }
@@ -0,0 +1,255 @@
+/* 
+ * Copyright 2016 BananaRama.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sql.sharding;
+
+import com.googlecode.cqengine.attribute.Attribute;
+import com.googlecode.cqengine.attribute.SimpleAttribute;
+import static com.googlecode.cqengine.query.QueryFactory.*;
+import com.googlecode.cqengine.query.option.QueryOptions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.bananarama.crud.Adapter;
+import org.bananarama.crud.Page;
+import org.bananarama.crud.ReadOperation;
+import org.bananarama.crud.sql.SqlOperationOptions;
+import org.bananarama.crud.util.ShardFunction;
+import org.bananarama.crud.util.ShardingAdapter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import sql.basic.Pojo;
+
+public class ShardingTest {
+    
+    private static final String CREATE_TABLE = "CREATE TABLE pojo (" +
+                "id integer not null, " +
+                "xyz double," +
+                "toa timestamp," +
+                "attrs char(128)," +
+                "name char(128)," +
+                "primary key (id));";
+    
+    private List<H2Shard> shards;
+    
+    @Before
+    public void prepare(){
+        shards = IntStream.range(0, 3)
+                .mapToObj(i -> new H2Shard("shard" + i))
+                .collect(Collectors.toList());
+        shards.forEach(shard -> shard.doUpdate(CREATE_TABLE));
+    }
+    
+    @After
+    public void destroy(){
+        shards.forEach(shard -> shard.doUpdate("DROP TABLE pojo;"));
+    }
+    
+    private ShardingAdapter<Object> newAdapter(ShardFunction function){
+        return new ShardingAdapter<Object>(shards.toArray(new Adapter[shards.size()])) {
+            @Override
+            protected Object keyOf(Object obj) {
+                return ((Pojo)obj).getId();
+            }
+
+            @Override
+            protected ShardFunction shardFunction() {
+                return function;
+            }
+        };
+    }
+    
+    private static List<Pojo> newPojos(int n){
+        return IntStream.range(0, n)
+                .mapToObj(Pojo::newInstance)
+                .collect(Collectors.toList());
+    }
+    
+    @Test
+    public void testHashSharding(){
+        final ShardFunction hash = ShardFunction.hash();
+        final ShardingAdapter<Object> adapter = newAdapter(hash);
+        final List<Pojo> pojos = newPojos(100);
+        
+        adapter.create(Pojo.class).from(pojos.stream());
+        
+        //Each pojo is stored only on its own shard
+        for(int i=0;i<shards.size();i++){
+            final int shard = i;
+            final List<Integer> ids = shards.get(i).read(Pojo.class).all()
+                    .map(Pojo::getId)
+                    .collect(Collectors.toList());
+            
+            assertFalse(ids.isEmpty());
+            assertTrue(ids.stream().allMatch(id -> hash.shardFor(id, 3) == shard));
+        }
+        
+        assertEquals(100, adapter.read(Pojo.class).all().count());
+        assertEquals(10, adapter.read(Pojo.class).where(" WHERE id >= 90").count());
+        
+        //Keys spanning several shards are routed and merged
+        final List<Pojo> updated = pojos.subList(10, 20);
+        updated.forEach(pojo -> pojo.setLaBel("UPDATE|" + pojo.getId()));
+        adapter.update(Pojo.class).from(updated.stream());
+        
+        final List<Pojo> read = adapter.read(Pojo.class)
+                .fromKeys(IntStream.range(10, 20).boxed().collect(Collectors.toList()))
+                .collect(Collectors.toList());
+        
+        assertEquals(10, read.size());
+        read.forEach(pojo -> assertEquals("UPDATE|" + pojo.getId(), pojo.getLaBel()));
+        
+        adapter.delete(Pojo.class).from(pojos.subList(0, 50).stream());
+        assertEquals(50, adapter.read(Pojo.class).all().count());
+        
+        adapter.delete(Pojo.class).all();
+        assertEquals(0, adapter.read(Pojo.class).all().count());
+    }
+    
+    @Test
+    public void testRangeSharding(){
+        final ShardingAdapter<Object> adapter = newAdapter(ShardFunction.range(30, 60));
+        
+        adapter.create(Pojo.class).from(newPojos(100).stream());
+        
+        assertEquals(30, shards.get(0).read(Pojo.class).all().count());
+        assertEquals(30, shards.get(1).read(Pojo.class).all().count());
+        assertEquals(40, shards.get(2).read(Pojo.class).all().count());
+        assertEquals(60, shards.get(2).read(Pojo.class).fromKeys(Arrays.asList(60)).findAny().get().getId());
+        
+        assertEquals(Arrays.asList(29, 30, 99), adapter.read(Pojo.class)
+                .fromKeys(Arrays.asList(99, 30, 29))
+                .map(Pojo::getId)
+                .collect(Collectors.toList()));
+    }
+    
+    @Test
+    public void testUpsert(){
+        final ShardingAdapter<Object> adapter = newAdapter(ShardFunction.range(30, 60));
+        
+        adapter.create(Pojo.class).from(newPojos(50).stream());
+        
+        final List<Pojo> upserted = IntStream.range(25, 75)
+                .mapToObj(Pojo::newInstance)
+                .collect(Collectors.toList());
+        upserted.forEach(pojo -> pojo.setLaBel("UPSERT|" + pojo.getId()));
+        
+        adapter.upsert(Pojo.class).from(upserted.stream());
+        
+        //Each object is upserted on its own shard only
+        assertEquals(30, shards.get(0).read(Pojo.class).all().count());
+        assertEquals(30, shards.get(1).read(Pojo.class).all().count());
+        assertEquals(15, shards.get(2).read(Pojo.class).all().count());
+        assertEquals(50, adapter.read(Pojo.class).all()
+                .filter(pojo -> ("UPSERT|" + pojo.getId()).equals(pojo.getLaBel()))
+                .count());
+    }
+    
+    private static final Attribute<Pojo,Integer> ID = new SimpleAttribute<Pojo,Integer>("id"){
+        @Override
+        public Integer getValue(Pojo pojo, QueryOptions qo) {
+            return pojo.getId();
+        }
+    };
+    
+    private static final Attribute<Pojo,Double> XYZ = new SimpleAttribute<Pojo,Double>("xyz"){
+        @Override
+        public Double getValue(Pojo pojo, QueryOptions qo) {
+            return pojo.getXyz();
+        }
+    };
+    
+    @Test
+    public void testAggregates(){
+        final ShardingAdapter<Object> adapter = newAdapter(ShardFunction.range(30, 60));
+        
+        adapter.create(Pojo.class).from(newPojos(100).stream());
+        
+        final ReadOperation<Pojo> read = adapter.read(Pojo.class);
+        
+        assertEquals(100, read.count(null, noQueryOptions()));
+        assertEquals(50, read.count(lessThan(XYZ, 50.0), noQueryOptions()));
+        assertTrue(read.exists(greaterThan(ID, 95), noQueryOptions()));
+        assertFalse(read.exists(greaterThan(ID, 99), noQueryOptions()));
+        assertEquals(Integer.valueOf(0), read.min(ID, null, noQueryOptions()).get());
+        assertEquals(Integer.valueOf(49), read.max(ID, lessThan(XYZ, 50.0), noQueryOptions()).get());
+        assertEquals(50.0, read.sum(XYZ, lessThan(XYZ, 10.0), noQueryOptions()), 0.0);
+        assertEquals(49.5, read.avg(ID, null, noQueryOptions()).getAsDouble(), 0.0);
+        assertFalse(read.avg(ID, greaterThan(ID, 99), noQueryOptions()).isPresent());
+        assertEquals(Long.valueOf(1), read.countBy(ID, lessThan(XYZ, 50.0), noQueryOptions()).get(40));
+    }
+    
+    @Test
+    public void testAverageOfNullableValues(){
+        final ShardingAdapter<Object> adapter = newAdapter(ShardFunction.range(30, 60));
+        final List<Pojo> pojos = newPojos(100);
+        
+        pojos.stream().filter(pojo -> pojo.getId() % 2 == 0).forEach(pojo -> pojo.setXyz(null));
+        adapter.create(Pojo.class).from(pojos.stream());
+        
+        //Objects without a value are left out, as on a single adapter
+        assertEquals(50.5, adapter.read(Pojo.class).avg(XYZ, null, noQueryOptions()).getAsDouble(), 1e-9);
+        assertEquals(45.5, shards.get(1).read(Pojo.class).avg(XYZ, null, noQueryOptions()).getAsDouble(), 1e-9);
+        assertEquals(20.5, adapter.read(Pojo.class).avg(XYZ, lessThan(ID, 40), noQueryOptions()).getAsDouble(), 1e-9);
+    }
+    
+    @Test
+    public void testPages(){
+        final ShardingAdapter<Object> adapter = newAdapter(ShardFunction.range(30, 60));
+        
+        adapter.create(Pojo.class).from(newPojos(100).stream());
+        
+        final List<Integer> ids = new ArrayList<>();
+        Integer token = null;
+        
+        do{
+            //Pages span several shards
+            final Page<Pojo,Integer> page = adapter.read(Pojo.class).page(lessThan(XYZ, 80.0), ID, 7, token);
+            page.getItems().forEach(pojo -> ids.add(pojo.getId()));
+            token = page.getNextToken();
+        }
+        while(token != null);
+        
+        assertEquals(IntStream.range(0, 80).boxed().collect(Collectors.toList()), ids);
+    }
+    
+    @Test
+    public void testOrderedReads(){
+        final ShardingAdapter<Object> adapter = newAdapter(ShardFunction.hash());
+        
+        adapter.create(Pojo.class).from(newPojos(100).stream());
+        
+        //Each shard holds some of the first ids, the merged results must be sorted and limited
+        assertEquals(Arrays.asList(10, 11, 12, 13, 14), adapter.read(Pojo.class)
+                .where(greaterThanOrEqualTo(ID, 10), queryOptions(orderBy(ascending(ID)), SqlOperationOptions.limit(5)))
+                .map(Pojo::getId)
+                .collect(Collectors.toList()));
+        
+        assertEquals(Arrays.asList(99, 98, 97), adapter.read(Pojo.class)
+                .all(queryOptions(orderBy(descending(ID)), SqlOperationOptions.limit(3)))
+                .map(Pojo::getId)
+                .collect(Collectors.toList()));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testRangeMismatch(){
+        newAdapter(ShardFunction.range(50))
+                .create(Pojo.class).from(newPojos(1).stream());
+    }
+}